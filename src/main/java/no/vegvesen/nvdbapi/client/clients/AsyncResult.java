@@ -1,103 +1,283 @@
 package no.vegvesen.nvdbapi.client.clients;
 
-import com.google.gson.*;
-import com.google.gson.internal.Streams;
-import com.google.gson.stream.JsonReader;
+import com.google.gson.JsonObject;
 import no.vegvesen.nvdbapi.client.clients.util.JerseyHelper;
-import no.vegvesen.nvdbapi.client.gson.GsonUtil;
+import no.vegvesen.nvdbapi.client.clients.util.RequestGovernor;
+import no.vegvesen.nvdbapi.client.clients.util.RetryHandler;
+import no.vegvesen.nvdbapi.client.gson.JsonReaderParser;
 import no.vegvesen.nvdbapi.client.model.Page;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.InvocationCallback;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Response;
-import java.io.BufferedInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import static no.vegvesen.nvdbapi.client.clients.GenericResultSet.applyPage;
+import static no.vegvesen.nvdbapi.client.clients.GenericResultSet.readPage;
 
 public class AsyncResult<T> {
     private static final Logger logger = LoggerFactory.getLogger(GenericResultSet.class);
 
     private final WebTarget baseTarget;
-    private final Function<JsonObject, T> parser;
+    private final JsonReaderParser<T> parser;
     private final Page page;
-    private final ExecutorService executorService;
-    private final Gson gson;
+    private final Scheduler scheduler;
+    private final long initialEmitted;
+    private final boolean exhausted;
+    private int prefetch = 1;
+    private Consumer<Cursor> checkpoint;
 
+    public AsyncResult(WebTarget baseTarget,
+                       Page page,
+                       JsonReaderParser<T> parser) {
+        this(baseTarget, page, parser, Schedulers.elastic());
+    }
+
+    /**
+     * @deprecated parses every object into a tree first, use the constructor taking a {@link JsonReaderParser}.
+     * A lambda passed to that one may need its parameter type, {@code (JsonReader r) -> ...}, to tell them apart.
+     */
+    @Deprecated
     public AsyncResult(WebTarget baseTarget,
                        Page page,
                        Function<JsonObject, T> parser) {
+        this(baseTarget, page, JsonReaderParser.fromTree(parser));
+    }
+
+    /**
+     * @param scheduler runs the blocking page requests of {@link #get()} and parses the pages of
+     *                  {@link #getNonBlocking()}, see {@link ClientFactory#setScheduler(Scheduler)}
+     */
+    public AsyncResult(WebTarget baseTarget,
+                       Page page,
+                       JsonReaderParser<T> parser,
+                       Scheduler scheduler) {
+        this(baseTarget, page.withCount(7500), parser, scheduler, 0, false);
+    }
+
+    /**
+     * Continues a result from a cursor passed to {@link #withCheckpoint(Consumer)}.
+     */
+    public AsyncResult(WebTarget baseTarget,
+                       Cursor cursor,
+                       JsonReaderParser<T> parser,
+                       Scheduler scheduler) {
+        this(baseTarget, Page.subPage(cursor.getPageSize().orElse(7500), cursor.getToken().orElse(null)), parser,
+             scheduler, cursor.getEmitted(), cursor.isExhausted());
+    }
+
+    private AsyncResult(WebTarget baseTarget,
+                        Page page,
+                        JsonReaderParser<T> parser,
+                        Scheduler scheduler,
+                        long initialEmitted,
+                        boolean exhausted) {
         this.baseTarget = baseTarget;
         this.parser = parser;
-        this.page = page.withCount(7500);
-        executorService = Executors.newSingleThreadExecutor();
-        gson = new Gson();
+        this.page = page;
+        this.scheduler = Objects.requireNonNull(scheduler, "Missing scheduler argument!");
+        this.initialEmitted = initialEmitted;
+        this.exhausted = exhausted;
+    }
+
+    /**
+     * Sets how many pages may be fetched ahead of the subscriber. Pages are only requested when the
+     * subscriber signals demand, so a slow subscriber holds back fetching instead of buffering objects.
+     *
+     * @param pages number of pages fetched ahead, at least 1
+     * @return {@code this}
+     */
+    public AsyncResult<T> withPrefetch(int pages) {
+        if (pages < 1) {
+            throw new IllegalArgumentException("Prefetch must be greater than 0.");
+        }
+        this.prefetch = pages;
+        return this;
+    }
+
+    /**
+     * Calls {@code checkpoint} each time all objects of a page have been emitted, with the position after them.
+     * The cursor can be saved and passed to a resume method such as
+     * {@link RoadObjectClient#resumeRoadObjectsAsync(Cursor)} to continue after a restart.
+     * Objects from a page that was cancelled before all of it was emitted are emitted again on resume.
+     *
+     * @return {@code this}
+     */
+    public AsyncResult<T> withCheckpoint(Consumer<Cursor> checkpoint) {
+        this.checkpoint = Objects.requireNonNull(checkpoint, "Missing checkpoint argument!");
+        return this;
     }
 
     public Flux<T> get() {
-        return Flux.create(sink -> executorService.execute(() -> {
+        return emit(Flux.<PageResult<T>, PagingIndicator>generate(
+                () -> new PagingIndicator(!exhausted, page),
+                (paging, sink) -> {
+                    if (!paging.hasNext) {
+                        sink.complete();
+                        return paging;
+                    }
+                    List<T> items = new ArrayList<>();
+                    PagingIndicator next = doPage(items, paging.currentPage);
+                    sink.next(new PageResult<>(items, next));
+                    return next;
+                })
+                .subscribeOn(scheduler));
+    }
+
+    /**
+     * Like {@link #get()}, but without blocking a thread per query. Page requests are sent with the async invoker
+     * of the client and complete on its executor, which {@link ClientFactory} bounds by the connection pool size.
+     * The response is buffered there and parsed on the scheduler of this result, so many concurrent queries only
+     * need the I/O threads and the parsing threads. Requests held back by the rate limit of the factory wait in a
+     * queue and on a timer, not on a thread.
+     */
+    public Flux<T> getNonBlocking() {
+        if (exhausted) {
+            return Flux.empty();
+        }
+        return emit(fetchPage(page, 1)
+                .expand(result -> result.next.hasNext ? fetchPage(result.next.currentPage, 1) : Mono.empty()));
+    }
+
+    private Flux<T> emit(Flux<PageResult<T>> pages) {
+        Consumer<Cursor> checkpoint = this.checkpoint;
+        if (checkpoint == null) {
+            return pages.concatMapIterable(result -> result.items, prefetch);
+        }
+        return Flux.defer(() -> {
+            AtomicLong emitted = new AtomicLong(initialEmitted);
+            return pages.concatMap(result -> Flux.fromIterable(result.items).doOnComplete(() -> {
+                Page next = result.next.currentPage;
+                checkpoint.accept(new Cursor(baseTarget.getUri(), next.getCount(), next.getStart().orElse(null),
+                                             emitted.addAndGet(result.items.size()), !result.next.hasNext));
+            }), prefetch);
+        });
+    }
+
+    private Mono<PageResult<T>> fetchPage(Page currentPage, int attempt) {
+        Optional<RetryHandler> retryHandler = JerseyHelper.retryHandler(baseTarget);
+        Optional<RequestGovernor> governor = JerseyHelper.governor(baseTarget);
+        // Queues for a permit without holding a thread, the permit is released when the response is buffered
+        Mono<Optional<RequestGovernor.Permit>> permit = governor
+                .map(g -> g.acquireAsync().map(Optional::of))
+                .orElseGet(() -> Mono.just(Optional.empty()));
+        Mono<PageResult<T>> result = Mono.fromRunnable(() -> retryHandler.ifPresent(RetryHandler::checkCircuit))
+                .then(permit)
+                .flatMap(p -> send(currentPage, governor, p))
+                .publishOn(scheduler)
+                .map(response -> {
+                    try (Response r = response) {
+                        List<T> items = new ArrayList<>();
+                        PagingIndicator next = readItems(r, currentPage, items);
+                        return new PageResult<>(items, next);
+                    }
+                });
+        if (!retryHandler.isPresent()) {
+            return result;
+        }
+        RetryHandler handler = retryHandler.get();
+        return result
+                .doOnNext(r -> handler.onSuccess())
+                .onErrorResume(e -> handler.retry(e, attempt)
+                        ? Mono.delay(handler.backoff(attempt)).then(fetchPage(currentPage, attempt + 1))
+                        : Mono.error(e));
+    }
+
+    private Mono<Response> send(Page currentPage, Optional<RequestGovernor> governor,
+                                Optional<RequestGovernor.Permit> permit) {
+        return Mono.create(sink -> {
+            WebTarget actualTarget = applyPage(currentPage, baseTarget);
+            logger.debug("Invoking {}", actualTarget.getUri());
+            Future<Response> future;
             try {
-                PagingIndicator pagingIndicator = doPage(sink, page);
-                while (pagingIndicator.hasNext) {
-                    pagingIndicator = doPage(sink, pagingIndicator.currentPage);
-                }
-            } catch (Exception e) {
-                sink.error(e);
-            } finally {
-                sink.complete();
-                executorService.shutdown();
+                future = actualTarget.request()
+                        .accept(JerseyHelper.MEDIA_TYPE)
+                        .async()
+                        .get(new InvocationCallback<Response>() {
+                            @Override
+                            public void completed(Response response) {
+                                governor.ifPresent(g -> g.onResponse(response.getStatus()));
+                                try {
+                                    response.bufferEntity();
+                                } catch (ProcessingException e) {
+                                    response.close();
+                                    sink.error(e);
+                                    return;
+                                } finally {
+                                    permit.ifPresent(RequestGovernor.Permit::release);
+                                }
+                                sink.success(response);
+                            }
+
+                            @Override
+                            public void failed(Throwable throwable) {
+                                permit.ifPresent(RequestGovernor.Permit::release);
+                                sink.error(throwable);
+                            }
+                        });
+            } catch (RuntimeException e) {
+                permit.ifPresent(RequestGovernor.Permit::release);
+                throw e;
             }
-        }));
+            sink.onCancel(() -> {
+                future.cancel(true);
+                permit.ifPresent(RequestGovernor.Permit::release);
+            });
+        });
     }
 
-    private PagingIndicator doPage(FluxSink<T> sink, Page currentPage) throws IOException {
+    private PagingIndicator doPage(List<T> items, Page currentPage) {
         WebTarget actualTarget = applyPage(currentPage, baseTarget);
 
         logger.debug("Invoking {}", actualTarget.getUri());
-        Invocation inv = actualTarget.request()
-                .accept(JerseyHelper.MEDIA_TYPE)
-                .buildGet();
-        try(Response response = JerseyHelper.execute(inv, Response.class)) {
-
-            if (!JerseyHelper.isSuccess(response)) {
-                sink.error(JerseyHelper.parseError(response));
-                return new PagingIndicator(false, currentPage);
+        return JerseyHelper.execute(actualTarget, () -> {
+            // Drop what a failed attempt read before fetching the page again
+            items.clear();
+            Invocation inv = actualTarget.request()
+                    .accept(JerseyHelper.MEDIA_TYPE)
+                    .buildGet();
+            try(Response response = JerseyHelper.execute(inv, Response.class)) {
+                return readItems(response, currentPage, items);
             }
+        });
+    }
 
-            try(JsonReader reader = gson.newJsonReader(
-                    new InputStreamReader(
-                            new BufferedInputStream(
-                            (InputStream) response.getEntity())))) {
-                reader.beginObject();
-                reader.nextName();
-                reader.beginArray();
-                while (reader.hasNext()) {
-                    sink.next(
-                            parser.apply(
-                                    Streams.parse(reader).getAsJsonObject()));
-                }
-                reader.endArray();
-                reader.nextName();
-                JsonObject metadata = Streams.parse(reader).getAsJsonObject();
-                String nextToken = GsonUtil.getNode(metadata, "neste.start")
-                        .map(JsonElement::getAsString)
-                        .orElse(null);
-                String token = currentPage.getStart().orElse(null);
-                logger.debug("last token: {} next token: {}", token, nextToken);
-                // no next page if last token and next token are equal
-                boolean hasNext = nextToken != null && (!nextToken.equals(token));
-                reader.endObject();
-                return new PagingIndicator(hasNext, currentPage.withStart(nextToken));
-            }
+    private PagingIndicator readItems(Response response, Page currentPage, List<T> items) {
+        if (!JerseyHelper.isSuccess(response)) {
+            throw JerseyHelper.parseError(response);
+        }
+
+        GenericResultSet.PageMetadata metadata = readPage(response, parser, items::add);
+        String nextToken = metadata.nextToken;
+        String token = currentPage.getStart().orElse(null);
+        logger.debug("last token: {} next token: {}", token, nextToken);
+        // no next page if last token and next token are equal
+        boolean hasNext = nextToken != null && (!nextToken.equals(token));
+        return new PagingIndicator(hasNext, currentPage.withStart(nextToken));
+    }
+
+    private static class PageResult<T> {
+        final List<T> items;
+        final PagingIndicator next;
+
+        PageResult(List<T> items, PagingIndicator next) {
+            this.items = items;
+            this.next = next;
         }
     }
 
@@ -25,25 +25,39 @@
 
 package no.vegvesen.nvdbapi.client.clients;
 
+import com.google.gson.JsonObject;
 import no.vegvesen.nvdbapi.client.clients.filters.RequestHeaderFilter;
+import no.vegvesen.nvdbapi.client.clients.util.RequestGovernor;
+import no.vegvesen.nvdbapi.client.clients.util.RetryHandler;
 import no.vegvesen.nvdbapi.client.gson.GsonMessageBodyHandler;
 import no.vegvesen.nvdbapi.client.model.datakatalog.Datakatalog;
+import no.vegvesen.nvdbapi.client.model.datakatalog.Version;
 import no.vegvesen.nvdbapi.client.util.LoggingFilter;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.glassfish.jersey.apache.connector.ApacheClientProperties;
-//import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
 import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.client.ClientProperties;
 import org.glassfish.jersey.message.DeflateEncoder;
 import org.glassfish.jersey.message.GZipEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import javax.ws.rs.Priorities;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public final class ClientFactory implements AutoCloseable {
     private final String baseUrl;
@@ -54,10 +68,19 @@ public final class ClientFactory implements AutoCloseable {
     private final ProxyConfig proxyConfig;
 
     private Datakatalog datakatalog;
+    private DatakatalogCache datakatalogCache;
+    private ResponseCache responseCache;
+    private final RetryHandler retryHandler = new RetryHandler(RetryPolicy.NONE);
+    private final RequestGovernor governor = new RequestGovernor(RateLimitConfig.NONE);
     private List<AbstractJerseyClient> clients;
     private boolean isClosed;
     private final Logger debugLogger;
-    private PoolingHttpClientConnectionManager connectionManager;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final ScheduledExecutorService connectionEvictor;
+    private final ExecutorService ioExecutor;
+    private final int asyncThreads;
+    private Scheduler scheduler;
+    private boolean ownsScheduler;
 
     public ClientFactory(String baseUrl, String userAgent, String xClientName) {
         this(baseUrl, userAgent, xClientName, null, null);
@@ -68,6 +91,12 @@ public final class ClientFactory implements AutoCloseable {
     }
 
     public ClientFactory(String baseUrl, String userAgent, String xClientName, String debugLogName, ProxyConfig proxyConfig) {
+        this(baseUrl, userAgent, xClientName, debugLogName, proxyConfig, ConnectionPoolConfig.DEFAULT);
+    }
+
+    public ClientFactory(String baseUrl, String userAgent, String xClientName, String debugLogName, ProxyConfig proxyConfig,
+                         ConnectionPoolConfig poolConfig) {
+        Objects.requireNonNull(poolConfig, "Missing poolConfig argument!");
         this.baseUrl = baseUrl;
         this.userAgent = userAgent;
         this.xClientName = xClientName;
@@ -76,10 +105,42 @@ public final class ClientFactory implements AutoCloseable {
                                    .map(LoggerFactory::getLogger)
                                    .orElse(null);
         this.clients = new ArrayList<>();
-        this.connectionManager = new PoolingHttpClientConnectionManager();
+        this.connectionManager = createConnectionManager(poolConfig);
+        this.connectionEvictor = startConnectionEvictor(connectionManager, poolConfig);
+        this.asyncThreads = poolConfig.getMaxTotal();
+        this.ioExecutor = Executors.newFixedThreadPool(asyncThreads, r -> {
+            Thread t = new Thread(r, "nvdb-io");
+            t.setDaemon(true);
+            return t;
+        });
         this.proxyConfig = proxyConfig;
     }
 
+    private static PoolingHttpClientConnectionManager createConnectionManager(ConnectionPoolConfig poolConfig) {
+        PoolingHttpClientConnectionManager manager =
+                new PoolingHttpClientConnectionManager(poolConfig.getTimeToLive().toMillis(), TimeUnit.MILLISECONDS);
+        manager.setMaxTotal(poolConfig.getMaxTotal());
+        manager.setDefaultMaxPerRoute(poolConfig.getMaxPerRoute());
+        manager.setValidateAfterInactivity((int) poolConfig.getValidateAfterInactivity().toMillis());
+        return manager;
+    }
+
+    private static ScheduledExecutorService startConnectionEvictor(PoolingHttpClientConnectionManager manager,
+                                                                   ConnectionPoolConfig poolConfig) {
+        ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "nvdb-connection-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = poolConfig.getEvictionInterval().toMillis();
+        long maxIdle = poolConfig.getMaxIdleTime().toMillis();
+        evictor.scheduleWithFixedDelay(() -> {
+            manager.closeExpiredConnections();
+            manager.closeIdleConnections(maxIdle, TimeUnit.MILLISECONDS);
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        return evictor;
+    }
+
     public ClientFactory(String baseUrl) {
         this(baseUrl, null, null, null, null);
     }
@@ -95,12 +156,50 @@ public final class ClientFactory implements AutoCloseable {
         return c;
     }
 
+    /**
+     * @return current usage of the connection pool shared by the clients of this factory
+     */
+    public ConnectionPoolStats getConnectionPoolStats() {
+        PoolStats stats = connectionManager.getTotalStats();
+        return new ConnectionPoolStats(stats.getLeased(), stats.getPending(), stats.getAvailable(), stats.getMax());
+    }
+
     private void assertIsOpen() {
         if (isClosed) {
             throw new IllegalStateException("Client factory is closed! Create new instance to continue.");
         }
     }
 
+    /**
+     * Sets the scheduler running the page requests of async results, such as
+     * {@link RoadObjectClient#getRoadObjectsAsync(int, RoadObjectRequest)}. Applies to clients created afterwards.
+     * The caller is responsible for disposing it.
+     */
+    public void setScheduler(Scheduler scheduler) {
+        Objects.requireNonNull(scheduler, "Missing scheduler argument!");
+        if (ownsScheduler) {
+            this.scheduler.dispose();
+        }
+        this.scheduler = scheduler;
+        this.ownsScheduler = false;
+    }
+
+    /**
+     * @return the scheduler shared by async results. Unless one is set, it is a pool with one thread per connection
+     * in the pool, so concurrent queries queue up instead of starting new threads.
+     */
+    public Scheduler getScheduler() {
+        if (scheduler == null) {
+            scheduler = Schedulers.fromExecutorService(Executors.newFixedThreadPool(asyncThreads, r -> {
+                Thread t = new Thread(r, "nvdb-async");
+                t.setDaemon(true);
+                return t;
+            }));
+            ownsScheduler = true;
+        }
+        return scheduler;
+    }
+
     public DatakatalogClient createDatakatalogClient() {
         assertIsOpen();
         DatakatalogClient c = new DatakatalogClient(baseUrl, createClient(null));
@@ -108,9 +207,62 @@ public final class ClientFactory implements AutoCloseable {
         return c;
     }
 
+    /**
+     * Keep the datakatalog in {@code directory} between runs. When set, {@link #getDatakatalog()} only asks
+     * the API for the current version, and downloads the full datakatalog when that version is not cached.
+     *
+     * @param directory where cached datakatalog files are stored, or {@code null} to disable caching
+     */
+    public void setDatakatalogCacheDirectory(Path directory) {
+        this.datakatalogCache = Optional.ofNullable(directory).map(DatakatalogCache::new).orElse(null);
+    }
+
+    /**
+     * Sets how failed requests are retried. Applies to all clients of this factory, also those already created.
+     * The circuit breaker is shared by all clients, since they call the same API.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        retryHandler.setPolicy(retryPolicy);
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryHandler.getPolicy();
+    }
+
+    /**
+     * Limits the rate and concurrency of requests from all clients of this factory, also those already created.
+     */
+    public void setRateLimit(RateLimitConfig rateLimit) {
+        governor.setConfig(rateLimit);
+    }
+
+    public RateLimitConfig getRateLimit() {
+        return governor.getConfig();
+    }
+
+    /**
+     * Caches responses that carry an {@code ETag} or {@code Last-Modified} header, and revalidates them with
+     * conditional requests. Applies to clients created afterwards.
+     *
+     * @param responseCache the cache, or {@code null} to stop caching
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
     public Datakatalog getDatakatalog() {
         if (datakatalog == null) {
-            datakatalog = createDatakatalogClient().getDatakalog();
+            DatakatalogClient client = createDatakatalogClient();
+            if (datakatalogCache == null) {
+                datakatalog = client.getDatakalog();
+            } else {
+                Version version = client.getVersion();
+                datakatalog = datakatalogCache.load(version).orElseGet(() -> {
+                    JsonObject fetched = client.getDatakatalogJson();
+                    datakatalogCache.store(fetched);
+                    return DatakatalogClient.parseDatakatalog(fetched);
+                });
+            }
         }
         return datakatalog;
     }
@@ -124,21 +276,21 @@ public final class ClientFactory implements AutoCloseable {
 
     public RoadObjectClient createRoadObjectClient() {
         assertIsOpen();
-        RoadObjectClient c = new RoadObjectClient(baseUrl, createClient(getDatakatalog().getVersion().getVersion()), getDatakatalog());
+        RoadObjectClient c = new RoadObjectClient(baseUrl, createClient(getDatakatalog().getVersion().getVersion()), getDatakatalog(), getScheduler());
         clients.add(c);
         return c;
     }
 
     public PositionClient createPlacementClient() {
         assertIsOpen();
-        PositionClient c = new PositionClient(baseUrl, createClient(getDatakatalog().getVersion().getVersion()));
+        PositionClient c = new PositionClient(baseUrl, createClient(getDatakatalog().getVersion().getVersion()), getScheduler());
         clients.add(c);
         return c;
     }
 
     public RoadPlacementClient createRoadPlacementClient() {
         assertIsOpen();
-        RoadPlacementClient c = new RoadPlacementClient(baseUrl, createClient(getDatakatalog().getVersion().getVersion()));
+        RoadPlacementClient c = new RoadPlacementClient(baseUrl, createClient(getDatakatalog().getVersion().getVersion()), getScheduler());
         clients.add(c);
         return c;
     }
@@ -163,11 +315,18 @@ public final class ClientFactory implements AutoCloseable {
         if (debugLogger != null) {
             config.register(new LoggingFilter(debugLogger, true));
         }
-       // config.connectorProvider(new ApacheConnectorProvider());
+        config.connectorProvider(new ApacheConnectorProvider());
 
         config.property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager);
+        // The pool is owned by the factory, closing a single client must not shut it down
+        config.property(ApacheClientProperties.CONNECTION_MANAGER_SHARED, true);
         config.register(GsonMessageBodyHandler.class);
+        config.property(RetryHandler.PROPERTY, retryHandler);
+        config.property(RequestGovernor.PROPERTY, governor);
         config.register(new RequestHeaderFilter(userAgent, xClientName, datakatalogVersion, enableCompression, apiRevision));
+        if (responseCache != null) {
+            config.register(new ResponseCacheFilter(responseCache), Priorities.USER + 100);
+        }
 
         if (proxyConfig != null) {
             config.property(ClientProperties.PROXY_URI, proxyConfig.getUrl());
@@ -176,7 +335,8 @@ public final class ClientFactory implements AutoCloseable {
                 config.property(ClientProperties.PROXY_PASSWORD, proxyConfig.getPassword());
             }
         }
-        return ClientBuilder.newBuilder().withConfig(config).build();
+        // Async invocations, see AsyncResult#getNonBlocking(), share one executor bounded by the pool size
+        return ClientBuilder.newBuilder().withConfig(config).executorService(ioExecutor).build();
     }
 
     @Override
@@ -188,6 +348,11 @@ public final class ClientFactory implements AutoCloseable {
                 }
             }
         }
+        if (ownsScheduler) {
+            scheduler.dispose();
+        }
+        ioExecutor.shutdownNow();
+        connectionEvictor.shutdownNow();
         connectionManager.close();
         isClosed = true;
     }
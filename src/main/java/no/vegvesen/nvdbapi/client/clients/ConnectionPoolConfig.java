@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.clients;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Settings for the pooled HTTP transport shared by all clients created from one {@link ClientFactory}.
+ */
+public final class ConnectionPoolConfig {
+
+    public static final ConnectionPoolConfig DEFAULT = newBuilder().build();
+
+    private final int maxTotal;
+    private final int maxPerRoute;
+    private final Duration timeToLive;
+    private final Duration maxIdleTime;
+    private final Duration evictionInterval;
+    private final Duration validateAfterInactivity;
+
+    private ConnectionPoolConfig(Builder b) {
+        maxTotal = b.maxTotal;
+        maxPerRoute = b.maxPerRoute;
+        timeToLive = b.timeToLive;
+        maxIdleTime = b.maxIdleTime;
+        evictionInterval = b.evictionInterval;
+        validateAfterInactivity = b.validateAfterInactivity;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    /**
+     * @return how long a pooled connection is kept alive before it is closed, regardless of use
+     */
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * @return how long a connection may sit unused in the pool before it is evicted
+     */
+    public Duration getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    public Duration getEvictionInterval() {
+        return evictionInterval;
+    }
+
+    public Duration getValidateAfterInactivity() {
+        return validateAfterInactivity;
+    }
+
+    public static class Builder {
+        private int maxTotal = 20;
+        private int maxPerRoute = 10;
+        private Duration timeToLive = Duration.ofMinutes(5);
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        private Duration evictionInterval = Duration.ofSeconds(10);
+        private Duration validateAfterInactivity = Duration.ofSeconds(2);
+
+        private Builder() {
+        }
+
+        public ConnectionPoolConfig build() {
+            if (maxPerRoute > maxTotal) {
+                throw new IllegalArgumentException("Max per route cannot be greater than max total.");
+            }
+            return new ConnectionPoolConfig(this);
+        }
+
+        public Builder withMaxTotal(int maxTotal) {
+            if (maxTotal < 1) {
+                throw new IllegalArgumentException("Max total must be greater than 0.");
+            }
+            this.maxTotal = maxTotal;
+            return this;
+        }
+
+        public Builder withMaxPerRoute(int maxPerRoute) {
+            if (maxPerRoute < 1) {
+                throw new IllegalArgumentException("Max per route must be greater than 0.");
+            }
+            this.maxPerRoute = maxPerRoute;
+            return this;
+        }
+
+        public Builder withTimeToLive(Duration timeToLive) {
+            this.timeToLive = Objects.requireNonNull(timeToLive, "Missing timeToLive argument!");
+            return this;
+        }
+
+        public Builder withMaxIdleTime(Duration maxIdleTime) {
+            this.maxIdleTime = Objects.requireNonNull(maxIdleTime, "Missing maxIdleTime argument!");
+            return this;
+        }
+
+        public Builder withEvictionInterval(Duration evictionInterval) {
+            this.evictionInterval = Objects.requireNonNull(evictionInterval, "Missing evictionInterval argument!");
+            return this;
+        }
+
+        public Builder withValidateAfterInactivity(Duration validateAfterInactivity) {
+            this.validateAfterInactivity = Objects.requireNonNull(validateAfterInactivity, "Missing validateAfterInactivity argument!");
+            return this;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.clients;
+
+import no.vegvesen.nvdbapi.client.model.Page;
+
+import javax.ws.rs.core.UriBuilder;
+import java.io.Serializable;
+import java.net.URI;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Position in a paged result: the query, the page size and the token of the next page. A cursor can be stored and
+ * used to continue the result in another process, for instance with
+ * {@link RoadObjectClient#resumeRoadObjects(Cursor)}.
+ */
+public final class Cursor implements Serializable {
+    // Cursors outlive the process that saved them, keep this unless the fields become incompatible
+    private static final long serialVersionUID = 1L;
+
+    private final String query;
+    private final Integer pageSize;
+    private final String token;
+    private final long emitted;
+    private final boolean exhausted;
+
+    Cursor(URI query, Integer pageSize, String token, long emitted, boolean exhausted) {
+        this.query = Objects.requireNonNull(query, "Missing query argument!").toString();
+        this.pageSize = pageSize;
+        this.token = token;
+        this.emitted = emitted;
+        this.exhausted = exhausted;
+    }
+
+    /**
+     * @return the request URI, with all query parameters except those for paging
+     */
+    public URI getQuery() {
+        return URI.create(query);
+    }
+
+    public Optional<Integer> getPageSize() {
+        return Optional.ofNullable(pageSize);
+    }
+
+    /**
+     * @return token of the next page, empty if no page has been fetched yet
+     */
+    public Optional<String> getToken() {
+        return Optional.ofNullable(token);
+    }
+
+    /**
+     * @return number of objects returned before this position
+     */
+    public long getEmitted() {
+        return emitted;
+    }
+
+    /**
+     * @return {@code true} if there are no more pages
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * @return the page to request next, or {@code null} to use the API defaults
+     */
+    Page nextPage() {
+        if (pageSize == null) {
+            return token == null ? null : Page.defaults().withStart(token);
+        }
+        return Page.subPage(pageSize, token);
+    }
+
+    /**
+     * Moves the query onto another base URL, so a cursor can be resumed by a client for another host or API path.
+     *
+     * @param resource regular expression for the last segments of the query path, such as {@code vegobjekter/\d+}
+     * @return the query, with everything in its path before {@code resource} replaced by {@code base}
+     * @throws IllegalArgumentException if the query path does not end with {@code resource}
+     */
+    URI rebase(UriBuilder base, String resource) {
+        URI uri = getQuery();
+        String path = Optional.ofNullable(uri.getRawPath()).orElse("");
+        Matcher matcher = Pattern.compile("(?:^|/)(" + resource + ")/?$").matcher(path);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("Cursor is not for " + resource + ": " + query);
+        }
+        return base.path(matcher.group(1)).replaceQuery(uri.getRawQuery()).build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Cursor cursor = (Cursor) o;
+        return emitted == cursor.emitted &&
+                exhausted == cursor.exhausted &&
+                Objects.equals(query, cursor.query) &&
+                Objects.equals(pageSize, cursor.pageSize) &&
+                Objects.equals(token, cursor.token);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(query, pageSize, token, emitted, exhausted);
+    }
+
+    @Override
+    public String toString() {
+        return "Cursor{" +
+                "query='" + query + '\'' +
+                ", pageSize=" + pageSize +
+                ", token='" + token + '\'' +
+                ", emitted=" + emitted +
+                ", exhausted=" + exhausted +
+                '}';
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.clients;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import no.vegvesen.nvdbapi.client.gson.DatakatalogVersionParser;
+import no.vegvesen.nvdbapi.client.model.datakatalog.Datakatalog;
+import no.vegvesen.nvdbapi.client.model.datakatalog.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps a copy of the {@link Datakatalog} on disk, one file per datakatalog version.
+ * Files hold the gzipped API responses the datakatalog is parsed from, so they do not depend on the model classes.
+ * A cache file that cannot be read is treated as missing, so the caller falls back to the API.
+ */
+public final class DatakatalogCache {
+    private static final Logger logger = LoggerFactory.getLogger(DatakatalogCache.class);
+
+    private final Path directory;
+
+    public DatakatalogCache(Path directory) {
+        this.directory = Objects.requireNonNull(directory, "Missing directory argument!");
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public Optional<Datakatalog> load(Version version) {
+        Path file = fileFor(version);
+        if (!Files.isRegularFile(file)) {
+            logger.debug("No cached datakatalog for version {}", version.getVersion());
+            return Optional.empty();
+        }
+
+        try (Reader in = new InputStreamReader(
+                new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file))), StandardCharsets.UTF_8)) {
+            Datakatalog datakatalog = DatakatalogClient.parseDatakatalog(new JsonParser().parse(in).getAsJsonObject());
+            if (!sameVersion(datakatalog.getVersion(), version)) {
+                logger.warn("Cached datakatalog {} does not match version {}, ignoring it", file, version.getVersion());
+                return Optional.empty();
+            }
+            logger.debug("Loaded datakatalog version {} from {}", version.getVersion(), file);
+            return Optional.of(datakatalog);
+        } catch (IOException | RuntimeException e) {
+            // Truncated, corrupt or otherwise unexpected content
+            logger.warn("Could not read cached datakatalog {}, ignoring it", file, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param datakatalog the responses from {@link DatakatalogClient#getDatakatalogJson()}
+     */
+    void store(JsonObject datakatalog) {
+        Version version = DatakatalogVersionParser.parseVersion(datakatalog.getAsJsonObject("versjon"));
+        Path file = fileFor(version);
+        try {
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try {
+                try (Writer out = new OutputStreamWriter(
+                        new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))), StandardCharsets.UTF_8)) {
+                    new Gson().toJson(datakatalog, out);
+                }
+                // Readers either see the previous file or the complete new one
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            logger.debug("Stored datakatalog version {} in {}", version.getVersion(), file);
+        } catch (IOException e) {
+            logger.warn("Could not store datakatalog in {}", file, e);
+        }
+    }
+
+    Path fileFor(Version version) {
+        String name = version.getId() + "-" + version.getVersion().replaceAll("[^A-Za-z0-9.]", "_");
+        return directory.resolve("datakatalog-" + name + ".json.gz");
+    }
+
+    private static boolean sameVersion(Version a, Version b) {
+        return a != null && a.getId() == b.getId() && Objects.equals(a.getVersion(), b.getVersion());
+    }
+}
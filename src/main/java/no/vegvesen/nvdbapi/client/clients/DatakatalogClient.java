@@ -27,6 +27,7 @@ package no.vegvesen.nvdbapi.client.clients;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import no.vegvesen.nvdbapi.client.clients.util.JerseyHelper;
 import no.vegvesen.nvdbapi.client.gson.AttributeTypeParser;
 import no.vegvesen.nvdbapi.client.gson.FeatureTypeParser;
@@ -113,6 +114,36 @@ public class DatakatalogClient extends AbstractJerseyClient {
         return new Datakatalog(v, featureTypes, units, dataTypes);
     }
 
+    /**
+     * The responses {@link #getDatakalog()} is built from, as one object that {@link #parseDatakatalog(JsonObject)}
+     * reads back. This is what {@link DatakatalogCache} keeps on disk.
+     */
+    JsonObject getDatakatalogJson() {
+        JsonObject json = new JsonObject();
+        json.add("versjon", JerseyHelper.execute(getClient().target(endpoint()).path("versjon")));
+        json.add("enheter", JerseyHelper.execute(getClient().target(endpoint()).path("enheter")));
+        json.add("datatyper", JerseyHelper.execute(getClient().target(endpoint()).path("datatyper")));
+        json.add("vegobjekttyper", JerseyHelper.execute(
+            getClient().target(endpoint().queryParam("inkluder", getIncludeArgument(false, Include.ALL)))));
+        return json;
+    }
+
+    static Datakatalog parseDatakatalog(JsonObject json) {
+        Version version = DatakatalogVersionParser.parseVersion(json.getAsJsonObject("versjon"));
+        List<Unit> units = StreamSupport.stream(json.getAsJsonArray("enheter").spliterator(), false)
+                                        .map(JsonElement::getAsJsonObject)
+                                        .map(AttributeTypeParser::parseUnit)
+                                        .collect(Collectors.toList());
+        Map<Integer, DataType> dataTypes = StreamSupport.stream(json.getAsJsonArray("datatyper").spliterator(), false)
+                                                        .map(JsonElement::getAsJsonObject)
+                                                        .map(AttributeTypeParser::parseDataType)
+                                                        .collect(Collectors.toMap(DataType::getId, Function.identity()));
+        List<FeatureType> featureTypes = StreamSupport.stream(json.getAsJsonArray("vegobjekttyper").spliterator(), false)
+                                                      .map(e -> FeatureTypeParser.parse(dataTypes, e.getAsJsonObject()))
+                                                      .collect(Collectors.toList());
+        return new Datakatalog(version, featureTypes, units, dataTypes);
+    }
+
     public List<FeatureType> getFeatureTypes(Map<Integer, DataType> dataTypes, Include... informationToInclude) {
         return getFeatureTypes(dataTypes, -1, informationToInclude);
     }
@@ -25,11 +25,11 @@
 
 package no.vegvesen.nvdbapi.client.clients;
 
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 import no.vegvesen.nvdbapi.client.clients.util.JerseyHelper;
 import no.vegvesen.nvdbapi.client.gson.GsonUtil;
+import no.vegvesen.nvdbapi.client.gson.JsonReaderParser;
 import no.vegvesen.nvdbapi.client.model.Page;
 import no.vegvesen.nvdbapi.client.model.ResultSet;
 import no.vegvesen.nvdbapi.client.util.ResultSetCollector;
@@ -39,35 +39,98 @@ import org.slf4j.LoggerFactory;
 import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-public class GenericResultSet<T> implements ResultSet<T> {
+public class GenericResultSet<T> implements ResultSet<T>, AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(GenericResultSet.class);
 
     private final WebTarget baseTarget;
-    private final Function<JsonObject, T> parser;
+    private final JsonReaderParser<T> parser;
     private Page currentPage;
     private String token;
     private boolean hasNext = true;
+    private long emitted;
+    private int prefetchDepth;
+    private Prefetcher prefetcher;
 
-    protected GenericResultSet(WebTarget baseTarget, Optional<Page> currentPage, Function<JsonObject, T> parser) {
+    protected GenericResultSet(WebTarget baseTarget, Optional<Page> currentPage, JsonReaderParser<T> parser) {
         this.baseTarget = baseTarget;
         this.parser = parser;
         this.currentPage = currentPage.orElse(null);
     }
 
+    /**
+     * @deprecated parses every object into a tree first, use the constructor taking a {@link JsonReaderParser}.
+     * A lambda passed to that one may need its parameter type, {@code (JsonReader r) -> ...}, to tell them apart.
+     */
+    @Deprecated
+    protected GenericResultSet(WebTarget baseTarget, Optional<Page> currentPage, Function<JsonObject, T> parser) {
+        this(baseTarget, currentPage, JsonReaderParser.fromTree(parser));
+    }
+
+    /**
+     * Continues a result set from a cursor saved by {@link #getCursor()}.
+     */
+    protected GenericResultSet(WebTarget baseTarget, Cursor cursor, JsonReaderParser<T> parser) {
+        this(baseTarget, Optional.ofNullable(cursor.nextPage()), parser);
+        this.token = cursor.getToken().orElse(null);
+        this.hasNext = !cursor.isExhausted();
+        this.emitted = cursor.getEmitted();
+    }
+
+    /**
+     * Enables fetching of pages in the background. While the caller consumes one page, up to {@code depth}
+     * following pages are requested and parsed on a separate thread.
+     * Close the result set if it is abandoned before it is exhausted.
+     *
+     * @param depth number of pages to fetch ahead, 0 disables prefetching
+     * @return {@code this}
+     */
+    public GenericResultSet<T> withPrefetch(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Prefetch depth cannot be negative.");
+        }
+        if (prefetcher != null) {
+            throw new IllegalStateException("Prefetching has already started!");
+        }
+        this.prefetchDepth = depth;
+        return this;
+    }
+
     public List<T> getAll() {
         return ResultSetCollector.getAll(this);
     }
 
+    /**
+     * Streams the result set lazily. Pages are fetched as the stream is consumed, so only the current page
+     * (plus any prefetched pages) is held in memory, and short-circuiting operations such as
+     * {@code limit} or {@code findFirst} stop further requests. Closing the stream closes the result set.
+     *
+     * @return a sequential stream over the remaining objects
+     */
     public Stream<T> stream() {
-        return getAll().stream();
+        return StreamSupport.stream(new PageSpliterator(), false)
+                            .onClose(this::close);
     }
 
     @Override
@@ -81,51 +144,154 @@ public class GenericResultSet<T> implements ResultSet<T> {
             throw new IllegalStateException("No more results!");
         }
 
+        FetchedPage<T> page;
+        if (prefetchDepth > 0) {
+            if (prefetcher == null) {
+                prefetcher = new Prefetcher(currentPage, token);
+            }
+            try {
+                page = prefetcher.take();
+            } catch (RuntimeException e) {
+                // Start over from the last consumed page on the next call
+                prefetcher.close();
+                prefetcher = null;
+                throw e;
+            }
+        } else {
+            page = fetch(currentPage, token);
+        }
+
+        token = page.token;
+        currentPage = page.nextPage;
+        hasNext = page.hasNext;
+        emitted += page.items.size();
+        if (!hasNext) {
+            logger.debug("Result set exhausted.");
+        }
+        return page.items;
+    }
+
+    private FetchedPage<T> fetch(Page page, String lastToken) {
         // Setup and execute request
         WebTarget actualTarget = baseTarget;
-        if (currentPage != null) actualTarget = applyPage(currentPage, baseTarget);
+        if (page != null) actualTarget = applyPage(page, baseTarget);
         logger.debug("Invoking {}", actualTarget.getUri());
-        Invocation inv = actualTarget.request().accept(JerseyHelper.MEDIA_TYPE).buildGet();
-        Response response = JerseyHelper.execute(inv, Response.class);
+        WebTarget target = actualTarget;
 
-        if (!JerseyHelper.isSuccess(response)) {
-            throw JerseyHelper.parseError(response);
-        }
+        // A failed page is fetched again with the same token, so paging continues where it stopped
+        return JerseyHelper.execute(target, () -> {
+            Invocation inv = target.request().accept(JerseyHelper.MEDIA_TYPE).buildGet();
+
+            try (Response response = JerseyHelper.execute(inv, Response.class)) {
+                if (!JerseyHelper.isSuccess(response)) {
+                    throw JerseyHelper.parseError(response);
+                }
+
+                // Consume and parse response
+                List<T> items = new ArrayList<>();
+                PageMetadata metadata = readPage(response, parser, items::add);
+                logger.debug("Page size returned was {}.", metadata.returned);
 
-        // Consume and parse response
-        String json = response.readEntity(String.class);
-        JsonObject currentResponse = new JsonParser().parse(json).getAsJsonObject();
+                // Prepare next request
+                String nextToken = metadata.nextToken;
+                logger.debug("last token: {} next token: {}", lastToken, nextToken);
+                // no next page if last token and next token are equal
+                boolean hasNextPage = nextToken != null && (lastToken == null || !nextToken.equals(lastToken));
+                logger.debug("Got {} features.", items.size());
+                return new FetchedPage<>(items, nextToken, Page.subPage(metadata.returned, nextToken), hasNextPage);
+            }
+        });
+    }
 
-        int pageSizeParam = GsonUtil.parseIntMember(currentResponse, "metadata.returnert");
-        logger.debug("Page size returned was {}.", pageSizeParam);
+    public String nextToken() {
+        return token;
+    }
 
-        if (logger.isTraceEnabled()){
-            logger.trace("Response: {}", currentResponse.toString());
+    /**
+     * @return the position after the objects returned so far. Pages fetched ahead by prefetching are not included,
+     * so resuming from the cursor fetches them again.
+     */
+    public Cursor getCursor() {
+        return new Cursor(baseTarget.getUri(), currentPage == null ? null : currentPage.getCount(), token, emitted,
+                          !hasNext);
+    }
+
+    /**
+     * Stops any background fetching. The result set cannot be used after it is closed.
+     */
+    @Override
+    public void close() {
+        if (prefetcher != null) {
+            prefetcher.close();
+            prefetcher = null;
         }
-        List<JsonObject> l = StreamSupport.stream(currentResponse.getAsJsonArray("objekter").spliterator(), false)
-                                           .map(JsonElement::getAsJsonObject)
-                                           .collect(Collectors.toList());
+        hasNext = false;
+    }
 
-        // Prepare next request
-        String nextToken = GsonUtil.getNode(currentResponse, "metadata.neste.start")
-                                   .map(JsonElement::getAsString)
-                                   .orElse(null);
-        logger.debug("last token: {} next token: {}",token, nextToken);
-        // no next page if last token and next token are equal
-        hasNext = nextToken != null && (token == null || !nextToken.equals(token));
-        token = nextToken;
-        currentPage = Page.subPage(pageSizeParam, token);
-        logger.debug("Got {} features.", l.size());
-        if (!hasNext) {
-            logger.debug("Result set exhausted.");
+    /**
+     * Reads a page response straight from the entity stream, handing each object to {@code consumer}
+     * as soon as it is parsed.
+     */
+    static <T> PageMetadata readPage(Response response, JsonReaderParser<T> parser, Consumer<? super T> consumer) {
+        return readPage(new InputStreamReader(response.readEntity(InputStream.class), StandardCharsets.UTF_8),
+                        parser, consumer);
+    }
+
+    static <T> PageMetadata readPage(Reader entity, JsonReaderParser<T> parser, Consumer<? super T> consumer) {
+        Integer returned = null;
+        String nextToken = null;
+        try (JsonReader reader = new JsonReader(entity)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "objekter":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            consumer.accept(parser.parse(reader));
+                        }
+                        reader.endArray();
+                        break;
+                    case "metadata":
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            switch (reader.nextName()) {
+                                case "returnert":
+                                    returned = GsonUtil.nextInt(reader, "metadata.returnert");
+                                    break;
+                                case "neste":
+                                    nextToken = readNextToken(reader);
+                                    break;
+                                default:
+                                    reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read page response", e);
         }
-        return l.stream()
-                .map(parser)
-                .collect(Collectors.toList());
+        return new PageMetadata(returned, nextToken);
     }
 
-    public String nextToken() {
-        return token;
+    private static String readNextToken(JsonReader reader) throws IOException {
+        if (GsonUtil.nextNullIfPresent(reader)) return null;
+
+        String nextToken = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("start")) {
+                nextToken = GsonUtil.nextString(reader, "metadata.neste.start");
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return nextToken;
     }
 
     static WebTarget applyPage(Page page, WebTarget target) {
@@ -139,4 +305,124 @@ public class GenericResultSet<T> implements ResultSet<T> {
         return target;
     }
 
+    /**
+     * Walks the objects of one page at a time, fetching the next page when the current one is used up.
+     */
+    private final class PageSpliterator extends Spliterators.AbstractSpliterator<T> {
+        private Iterator<T> current;
+
+        PageSpliterator() {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (current == null || !current.hasNext()) {
+                if (!hasNext()) {
+                    current = null;
+                    return false;
+                }
+                current = next().iterator();
+            }
+            action.accept(current.next());
+            return true;
+        }
+    }
+
+    static final class PageMetadata {
+        final Integer returned;
+        final String nextToken;
+
+        PageMetadata(Integer returned, String nextToken) {
+            this.returned = returned;
+            this.nextToken = nextToken;
+        }
+    }
+
+    private static final class FetchedPage<T> {
+        final List<T> items;
+        final String token;
+        final Page nextPage;
+        final boolean hasNext;
+        final RuntimeException error;
+
+        FetchedPage(List<T> items, String token, Page nextPage, boolean hasNext) {
+            this.items = items;
+            this.token = token;
+            this.nextPage = nextPage;
+            this.hasNext = hasNext;
+            this.error = null;
+        }
+
+        FetchedPage(RuntimeException error) {
+            this.items = null;
+            this.token = null;
+            this.nextPage = null;
+            this.hasNext = false;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Fetches pages on a background thread into a bounded queue. The queue capacity
+     * limits how far ahead of the consumer the fetching can get.
+     */
+    private final class Prefetcher {
+        private final BlockingQueue<FetchedPage<T>> queue;
+        private final ExecutorService executor;
+        private volatile boolean closed;
+
+        Prefetcher(Page startPage, String startToken) {
+            this.queue = new ArrayBlockingQueue<>(prefetchDepth);
+            this.executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "nvdb-prefetch");
+                t.setDaemon(true);
+                return t;
+            });
+            executor.execute(() -> run(startPage, startToken));
+        }
+
+        private void run(Page page, String lastToken) {
+            try {
+                boolean more = true;
+                while (more && !closed) {
+                    FetchedPage<T> fetched;
+                    try {
+                        fetched = fetch(page, lastToken);
+                    } catch (RuntimeException e) {
+                        fetched = new FetchedPage<>(e);
+                    }
+                    queue.put(fetched);
+                    more = fetched.error == null && fetched.hasNext;
+                    page = fetched.nextPage;
+                    lastToken = fetched.token;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        FetchedPage<T> take() {
+            FetchedPage<T> page;
+            try {
+                page = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for next page", e);
+            }
+            if (page.error != null) {
+                throw page.error;
+            }
+            if (!page.hasNext) {
+                close();
+            }
+            return page;
+        }
+
+        void close() {
+            closed = true;
+            executor.shutdownNow();
+            queue.clear();
+        }
+    }
 }
@@ -28,24 +28,127 @@ package no.vegvesen.nvdbapi.client.clients;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import no.vegvesen.nvdbapi.client.clients.util.JerseyHelper;
+import no.vegvesen.nvdbapi.client.exceptions.ClientException;
 import no.vegvesen.nvdbapi.client.gson.PlacementParser;
 import no.vegvesen.nvdbapi.client.model.Position;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.UriBuilder;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 public class PositionClient extends AbstractJerseyClient {
+    /**
+     * Number of recent lookups {@link #getPlacements(Publisher, int, double)} remembers to skip duplicates.
+     */
+    static final int DEDUPLICATION_WINDOW = 10_000;
+
+    private final Scheduler scheduler;
 
     public PositionClient(String baseurl, Client client) {
+        this(baseurl, client, Schedulers.elastic());
+    }
+
+    public PositionClient(String baseurl, Client client, Scheduler scheduler) {
         super(baseurl, client);
+        this.scheduler = Objects.requireNonNull(scheduler, "Missing scheduler argument!");
     }
 
     public Position getPlacement(PositionRequest req) {
+        return getPlacement(getClient().target(placementUrl(req)));
+    }
+
+    /**
+     * Looks up many positions, with up to {@code concurrency} requests in flight.
+     * A position with no road nearby gives a {@link Position} without results. Any other failed lookup gives a
+     * {@link Position#failed(RuntimeException) failed} one, and is tried again if the same position comes up later.
+     *
+     * @param requests positions to look up
+     * @param concurrency max number of concurrent requests
+     * @return one result per request, in the same order as {@code requests}
+     */
+    public Flux<Position> getPlacements(Publisher<PositionRequest> requests, int concurrency) {
+        return getPlacements(Flux.from(requests), concurrency, r -> r);
+    }
+
+    /**
+     * Like {@link #getPlacements(Publisher, int)}, but coordinates are first rounded to a grid. Points within the
+     * same grid cell, such as GPS readings from a vehicle standing still, are only looked up once.
+     *
+     * @param gridSize cell size, in the unit of the coordinates
+     */
+    public Flux<Position> getPlacements(Publisher<PositionRequest> requests, int concurrency, double gridSize) {
+        if (!(gridSize > 0)) {
+            throw new IllegalArgumentException("Grid size must be greater than 0.");
+        }
+        return getPlacements(Flux.from(requests), concurrency, r -> r.roundedTo(gridSize));
+    }
+
+    private Flux<Position> getPlacements(Flux<PositionRequest> requests, int concurrency,
+                                         Function<PositionRequest, PositionRequest> normalizer) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be greater than 0.");
+        }
+        return Flux.defer(() -> {
+            // Identical requests share one lookup, as long as they are not too far apart in the input
+            Map<String, Mono<Position>> recent = new LinkedHashMap<String, Mono<Position>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Mono<Position>> eldest) {
+                    return size() > DEDUPLICATION_WINDOW;
+                }
+            };
+            return requests.flatMapSequential(req -> {
+                UriBuilder url = placementUrl(normalizer.apply(req));
+                synchronized (recent) {
+                    return recent.computeIfAbsent(url.build().toString(), k -> lookup(url, () -> {
+                        // Only successful lookups are shared, a failed one is tried again
+                        synchronized (recent) {
+                            recent.remove(k);
+                        }
+                    }));
+                }
+            }, concurrency);
+        });
+    }
+
+    private Mono<Position> lookup(UriBuilder url, Runnable onFailure) {
+        return Mono.fromCallable(() -> getPlacement(getClient().target(url)))
+                   .onErrorResume(RuntimeException.class, e -> {
+                       if (e instanceof ClientException && ((ClientException) e).getStatusCode() == 404) {
+                           return Mono.just(new Position(Collections.emptyList()));
+                       }
+                       onFailure.run();
+                       return Mono.just(Position.failed(e));
+                   })
+                   .subscribeOn(scheduler)
+                   .cache();
+    }
+
+    private Position getPlacement(WebTarget target) {
+        JsonArray results = JerseyHelper.execute(target).getAsJsonArray();
+
+        List<Position.Result> collect =
+                StreamSupport.stream(results.spliterator(), false)
+                             .map(JsonElement::getAsJsonObject)
+                             .map(PlacementParser::parsePosition)
+                             .collect(Collectors.toList());
+        return new Position(collect);
+    }
+
+    private UriBuilder placementUrl(PositionRequest req) {
         UriBuilder url = getPositionEndpoint();
 
         req.getNorth().ifPresent(v -> url.queryParam("nord", v));
@@ -58,17 +161,7 @@ public class PositionClient extends AbstractJerseyClient {
         req.getConnectionLinks().ifPresent(v -> url.queryParam("konnekteringslenker", v));
         req.getDetailedLinks().ifPresent(v -> url.queryParam("detaljerte_lenker", v));
         req.getRoadRefFilters().ifPresent(v -> url.queryParam("vegreferanse", v));
-
-        WebTarget target = getClient().target(url);
-
-        JsonArray results = JerseyHelper.execute(target).getAsJsonArray();
-
-        List<Position.Result> collect =
-                StreamSupport.stream(results.spliterator(), false)
-                             .map(JsonElement::getAsJsonObject)
-                             .map(PlacementParser::parsePosition)
-                             .collect(Collectors.toList());
-        return new Position(collect);
+        return url;
     }
 
     private UriBuilder getPositionEndpoint() {
@@ -103,6 +103,32 @@ public class PositionRequest {
         return roadRefFilters;
     }
 
+    /**
+     * @param gridSize cell size, in the unit of the coordinates
+     * @return a copy of this request with the coordinates rounded to the nearest multiple of {@code gridSize}
+     */
+    public PositionRequest roundedTo(double gridSize) {
+        if (!(gridSize > 0)) {
+            throw new IllegalArgumentException("Grid size must be greater than 0.");
+        }
+        Builder b = new Builder();
+        b.north = north.map(v -> round(v, gridSize));
+        b.east = east.map(v -> round(v, gridSize));
+        b.lat = lat.map(v -> round(v, gridSize));
+        b.lon = lon.map(v -> round(v, gridSize));
+        b.projection = projection;
+        b.maxDistance = maxDistance;
+        b.maxResults = maxResults;
+        b.connectionLinks = connectionLinks;
+        b.detailedLinks = detailedLinks;
+        b.roadRefFilters = roadRefFilters;
+        return b.build();
+    }
+
+    private static double round(double value, double gridSize) {
+        return Math.round(value / gridSize) * gridSize;
+    }
+
     public static class Builder {
         private Optional<Double> north = Optional.empty();
         private Optional<Double> east = Optional.empty();
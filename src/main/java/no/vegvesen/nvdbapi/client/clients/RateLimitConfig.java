@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.clients;
+
+/**
+ * Limits the requests sent by all clients of a {@link ClientFactory}: how many may be in flight at once, and how
+ * many may be started per second. When the API answers 429 or 503 the request rate is halved, then it climbs back
+ * towards the configured rate as requests succeed.
+ *
+ * @see ClientFactory#setRateLimit(RateLimitConfig)
+ */
+public final class RateLimitConfig {
+
+    /**
+     * No limits.
+     */
+    public static final RateLimitConfig NONE = newBuilder().build();
+
+    private final double requestsPerSecond;
+    private final double minRequestsPerSecond;
+    private final int burst;
+    private final int maxInFlight;
+
+    private RateLimitConfig(Builder b) {
+        requestsPerSecond = b.requestsPerSecond;
+        minRequestsPerSecond = Math.min(b.minRequestsPerSecond, b.requestsPerSecond);
+        burst = b.burst;
+        maxInFlight = b.maxInFlight;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    /**
+     * @return lowest rate the limiter slows down to when the API throttles
+     */
+    public double getMinRequestsPerSecond() {
+        return minRequestsPerSecond;
+    }
+
+    /**
+     * @return number of requests that may be sent at once after a quiet period
+     */
+    public int getBurst() {
+        return burst;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public boolean isUnlimited() {
+        return Double.isInfinite(requestsPerSecond) && maxInFlight == Integer.MAX_VALUE;
+    }
+
+    public static class Builder {
+        private double requestsPerSecond = Double.POSITIVE_INFINITY;
+        private double minRequestsPerSecond = 1;
+        private int burst = 1;
+        private int maxInFlight = Integer.MAX_VALUE;
+
+        private Builder() {
+        }
+
+        public RateLimitConfig build() {
+            return new RateLimitConfig(this);
+        }
+
+        public Builder withRequestsPerSecond(double requestsPerSecond) {
+            if (!(requestsPerSecond > 0)) {
+                throw new IllegalArgumentException("Requests per second must be greater than 0.");
+            }
+            this.requestsPerSecond = requestsPerSecond;
+            return this;
+        }
+
+        public Builder withMinRequestsPerSecond(double minRequestsPerSecond) {
+            if (!(minRequestsPerSecond > 0)) {
+                throw new IllegalArgumentException("Min requests per second must be greater than 0.");
+            }
+            this.minRequestsPerSecond = minRequestsPerSecond;
+            return this;
+        }
+
+        public Builder withBurst(int burst) {
+            if (burst < 1) {
+                throw new IllegalArgumentException("Burst must be greater than 0.");
+            }
+            this.burst = burst;
+            return this;
+        }
+
+        public Builder withMaxInFlight(int maxInFlight) {
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("Max in flight must be greater than 0.");
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.clients;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores GET responses carrying an {@code ETag} or {@code Last-Modified} header, so they can be revalidated with
+ * conditional requests instead of being downloaded again. Entries are kept in memory up to a total size, least
+ * recently used first out. If a disk directory is set, entries evicted from memory are written there, also up to
+ * a total size.
+ *
+ * @see ClientFactory#setResponseCache(ResponseCache)
+ */
+public final class ResponseCache {
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+    private static final int FILE_FORMAT = 0x4e564431;
+
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final Path diskDirectory;
+    private final long maxDiskBytes;
+
+    // Guarded by this
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    // Guarded by itself. Held while renaming and deleting files, so they stay in line with the index, but not
+    // while reading or writing them. File name -> file size, least recently used first
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private ResponseCache(Builder b) {
+        maxBytes = b.maxBytes;
+        maxEntryBytes = b.maxEntryBytes;
+        diskDirectory = b.diskDirectory;
+        maxDiskBytes = b.maxDiskBytes;
+        if (diskDirectory != null) {
+            indexDisk();
+        }
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * @return largest response body that is cached, bigger responses are passed through
+     */
+    int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    Optional<Entry> get(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = memory.get(key);
+        }
+        if (entry == null && diskDirectory != null) {
+            entry = readFromDisk(key);
+            if (entry != null) {
+                store(key, entry);
+            }
+        }
+        return Optional.ofNullable(entry);
+    }
+
+    void put(String key, Entry entry) {
+        Objects.requireNonNull(entry, "Missing entry argument!");
+        if (entry.body.length > maxEntryBytes) {
+            return;
+        }
+        store(key, entry);
+    }
+
+    void hit() {
+        hits.incrementAndGet();
+    }
+
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * @return number of responses served from the cache after the server answered {@code 304 Not Modified}
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of cacheable responses downloaded in full
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * @return size of the files in the disk directory, 0 if there is none
+     */
+    public long getDiskBytes() {
+        synchronized (disk) {
+            return diskBytes;
+        }
+    }
+
+    public void clear() {
+        synchronized (this) {
+            memory.clear();
+            memoryBytes = 0;
+        }
+        synchronized (disk) {
+            disk.keySet().forEach(this::deleteFile);
+            disk.clear();
+            diskBytes = 0;
+        }
+    }
+
+    /**
+     * Puts the entry in memory, and moves what no longer fits there to disk after releasing the lock.
+     */
+    private void store(String key, Entry entry) {
+        List<Map.Entry<String, Entry>> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = memory.put(key, entry);
+            if (previous != null) {
+                memoryBytes -= previous.body.length;
+            }
+            memoryBytes += entry.body.length;
+
+            Iterator<Map.Entry<String, Entry>> it = memory.entrySet().iterator();
+            while (memoryBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Entry> eldest = it.next();
+                it.remove();
+                memoryBytes -= eldest.getValue().body.length;
+                evicted.add(eldest);
+            }
+        }
+        if (diskDirectory != null) {
+            evicted.forEach(e -> writeToDisk(e.getKey(), e.getValue()));
+        }
+    }
+
+    private Entry readFromDisk(String key) {
+        String name = fileName(key);
+        synchronized (disk) {
+            if (!disk.containsKey(name)) {
+                return null;
+            }
+        }
+        Path file = diskDirectory.resolve(name);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_FORMAT) {
+                throw new IOException("Unknown file format");
+            }
+            String storedKey = in.readUTF();
+            String etag = readOptional(in);
+            String lastModified = readOptional(in);
+            String contentType = readOptional(in);
+            String contentEncoding = readOptional(in);
+            int length = in.readInt();
+            if (length < 0 || length > maxEntryBytes) {
+                throw new IOException("Bad body length " + length);
+            }
+            byte[] body = new byte[length];
+            in.readFully(body);
+            // A different key is a hash collision, which leaves the file for its own key
+            return storedKey.equals(key) ? new Entry(etag, lastModified, contentType, contentEncoding, body) : null;
+        } catch (IOException e) {
+            logger.warn("Could not read cached response {}, ignoring it", file, e);
+            synchronized (disk) {
+                removeFromDisk(name);
+                deleteFile(name);
+            }
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Entry entry) {
+        String name = fileName(key);
+        Path file = diskDirectory.resolve(name);
+        try {
+            Path tmp = Files.createTempFile(diskDirectory, name, ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                    out.writeInt(FILE_FORMAT);
+                    out.writeUTF(key);
+                    writeOptional(out, entry.etag);
+                    writeOptional(out, entry.lastModified);
+                    writeOptional(out, entry.contentType);
+                    writeOptional(out, entry.contentEncoding);
+                    out.writeInt(entry.body.length);
+                    out.write(entry.body);
+                }
+                long size = Files.size(tmp);
+                synchronized (disk) {
+                    // Readers either see the previous file or the complete new one
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    removeFromDisk(name);
+                    disk.put(name, size);
+                    diskBytes += size;
+                    evictFromDisk();
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not store cached response in {}", file, e);
+        }
+    }
+
+    private void evictFromDisk() {
+        // Entry values only, a get() would reorder the map while iterating
+        Iterator<Map.Entry<String, Long>> it = disk.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            diskBytes -= eldest.getValue();
+            deleteFile(eldest.getKey());
+        }
+    }
+
+    private static void writeOptional(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readOptional(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private void removeFromDisk(String name) {
+        Long size = disk.remove(name);
+        if (size != null) {
+            diskBytes -= size;
+        }
+    }
+
+    private void deleteFile(String name) {
+        try {
+            Files.deleteIfExists(diskDirectory.resolve(name));
+        } catch (IOException e) {
+            logger.warn("Could not delete cached response {}", name, e);
+        }
+    }
+
+    private void indexDisk() {
+        try {
+            Files.createDirectories(diskDirectory);
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(diskDirectory, "*.response")) {
+                stream.forEach(files::add);
+            }
+            // Oldest first, so they are the first to go
+            files.sort(Comparator.comparingLong(ResponseCache::lastModified));
+            for (Path file : files) {
+                long size = Files.size(file);
+                disk.put(file.getFileName().toString(), size);
+                diskBytes += size;
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read response cache directory {}", diskDirectory, e);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.append(".response").toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A stored response. The body is kept as received, before any content decoding.
+     */
+    static final class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final String contentType;
+        private final String contentEncoding;
+        private final byte[] body;
+
+        Entry(String etag, String lastModified, String contentType, String contentEncoding, byte[] body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.contentEncoding = contentEncoding;
+            this.body = Objects.requireNonNull(body, "Missing body argument!");
+        }
+
+        Optional<String> getEtag() {
+            return Optional.ofNullable(etag);
+        }
+
+        Optional<String> getLastModified() {
+            return Optional.ofNullable(lastModified);
+        }
+
+        Optional<String> getContentType() {
+            return Optional.ofNullable(contentType);
+        }
+
+        Optional<String> getContentEncoding() {
+            return Optional.ofNullable(contentEncoding);
+        }
+
+        byte[] getBody() {
+            return body;
+        }
+    }
+
+    public static class Builder {
+        private long maxBytes = 32 * 1024 * 1024;
+        private int maxEntryBytes = 4 * 1024 * 1024;
+        private Path diskDirectory;
+        private long maxDiskBytes = 512 * 1024 * 1024;
+
+        private Builder() {
+        }
+
+        public ResponseCache build() {
+            if (maxEntryBytes > maxBytes) {
+                throw new IllegalArgumentException("Max entry bytes cannot be greater than max bytes.");
+            }
+            return new ResponseCache(this);
+        }
+
+        public Builder withMaxBytes(long maxBytes) {
+            if (maxBytes < 1) {
+                throw new IllegalArgumentException("Max bytes must be greater than 0.");
+            }
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        public Builder withMaxEntryBytes(int maxEntryBytes) {
+            if (maxEntryBytes < 1) {
+                throw new IllegalArgumentException("Max entry bytes must be greater than 0.");
+            }
+            this.maxEntryBytes = maxEntryBytes;
+            return this;
+        }
+
+        public Builder withDiskDirectory(Path diskDirectory) {
+            this.diskDirectory = Objects.requireNonNull(diskDirectory, "Missing diskDirectory argument!");
+            return this;
+        }
+
+        public Builder withMaxDiskBytes(long maxDiskBytes) {
+            if (maxDiskBytes < 1) {
+                throw new IllegalArgumentException("Max disk bytes must be greater than 0.");
+            }
+            this.maxDiskBytes = maxDiskBytes;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.clients;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Optional;
+
+/**
+ * Revalidates cached responses with conditional requests, and answers {@code 304 Not Modified} with the cached body.
+ * Must run after {@link no.vegvesen.nvdbapi.client.clients.filters.RequestHeaderFilter}, so the cache key includes
+ * the negotiated headers.
+ */
+class ResponseCacheFilter implements ClientRequestFilter, ClientResponseFilter {
+    private static final String KEY_PROPERTY = ResponseCacheFilter.class.getName() + ".key";
+    private static final String ENTRY_PROPERTY = ResponseCacheFilter.class.getName() + ".entry";
+
+    private final ResponseCache cache;
+
+    ResponseCacheFilter(ResponseCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext) {
+        if (!HttpMethod.GET.equals(requestContext.getMethod())) {
+            return;
+        }
+        String key = key(requestContext);
+        requestContext.setProperty(KEY_PROPERTY, key);
+
+        cache.get(key).ifPresent(entry -> {
+            MultivaluedMap<String, Object> headers = requestContext.getHeaders();
+            entry.getEtag().ifPresent(v -> headers.putSingle(HttpHeaders.IF_NONE_MATCH, v));
+            entry.getLastModified().ifPresent(v -> headers.putSingle(HttpHeaders.IF_MODIFIED_SINCE, v));
+            requestContext.setProperty(ENTRY_PROPERTY, entry);
+        });
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) throws IOException {
+        String key = (String) requestContext.getProperty(KEY_PROPERTY);
+        if (key == null) {
+            return;
+        }
+        ResponseCache.Entry cached = (ResponseCache.Entry) requestContext.getProperty(ENTRY_PROPERTY);
+
+        if (responseContext.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode() && cached != null) {
+            cache.hit();
+            MultivaluedMap<String, String> headers = responseContext.getHeaders();
+            cached.getContentType().ifPresent(v -> headers.putSingle(HttpHeaders.CONTENT_TYPE, v));
+            cached.getContentEncoding().ifPresent(v -> headers.putSingle(HttpHeaders.CONTENT_ENCODING, v));
+            headers.putSingle(HttpHeaders.CONTENT_LENGTH, Integer.toString(cached.getBody().length));
+            responseContext.setStatus(Response.Status.OK.getStatusCode());
+            responseContext.setEntityStream(new ByteArrayInputStream(cached.getBody()));
+            return;
+        }
+
+        if (responseContext.getStatus() != Response.Status.OK.getStatusCode() || !isCacheable(responseContext)) {
+            return;
+        }
+        InputStream entity = responseContext.getEntityStream();
+        if (entity == null) {
+            return;
+        }
+
+        // Read at most one byte more than fits, a larger body is passed on without being cached
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        int limit = cache.getMaxEntryBytes() + 1;
+        byte[] chunk = new byte[8192];
+        int n;
+        while (buffer.size() < limit && (n = entity.read(chunk, 0, Math.min(chunk.length, limit - buffer.size()))) != -1) {
+            buffer.write(chunk, 0, n);
+        }
+        byte[] body = buffer.toByteArray();
+        if (body.length >= limit) {
+            responseContext.setEntityStream(new SequenceInputStream(new ByteArrayInputStream(body), entity));
+            return;
+        }
+        entity.close();
+
+        cache.miss();
+        cache.put(key, new ResponseCache.Entry(
+                responseContext.getHeaderString(HttpHeaders.ETAG),
+                responseContext.getHeaderString(HttpHeaders.LAST_MODIFIED),
+                responseContext.getHeaderString(HttpHeaders.CONTENT_TYPE),
+                responseContext.getHeaderString(HttpHeaders.CONTENT_ENCODING),
+                body));
+        responseContext.setEntityStream(new ByteArrayInputStream(body));
+    }
+
+    private static boolean isCacheable(ClientResponseContext responseContext) {
+        boolean validator = responseContext.getHeaderString(HttpHeaders.ETAG) != null
+                || responseContext.getHeaderString(HttpHeaders.LAST_MODIFIED) != null;
+        boolean noStore = Optional.ofNullable(responseContext.getHeaderString(HttpHeaders.CACHE_CONTROL))
+                                  .map(v -> v.contains("no-store"))
+                                  .orElse(false);
+        return validator && !noStore;
+    }
+
+    private static String key(ClientRequestContext requestContext) {
+        return requestContext.getUri() + "\n"
+                + Optional.ofNullable(requestContext.getHeaderString(HttpHeaders.ACCEPT)).orElse("") + "\n"
+                + Optional.ofNullable(requestContext.getHeaderString(HttpHeaders.ACCEPT_ENCODING)).orElse("");
+    }
+}
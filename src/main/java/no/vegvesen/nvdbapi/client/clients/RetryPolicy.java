@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.clients;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * How failed GET requests are retried, and when to stop calling the API altogether. Requests are retried on
+ * connection errors, timeouts and responses with status 429 or 5xx (except 501), waiting an exponentially growing,
+ * jittered delay between attempts. After a number of consecutive failed attempts the circuit breaker opens, and
+ * requests fail immediately with a {@link no.vegvesen.nvdbapi.client.exceptions.CircuitOpenException} until the
+ * break has passed.
+ *
+ * @see ClientFactory#setRetryPolicy(RetryPolicy)
+ */
+public final class RetryPolicy {
+
+    /**
+     * Never retries and never opens the circuit breaker.
+     */
+    public static final RetryPolicy NONE = newBuilder().withMaxAttempts(1).withFailureThreshold(Integer.MAX_VALUE).build();
+
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final double multiplier;
+    private final double jitter;
+    private final int failureThreshold;
+    private final Duration openDuration;
+
+    private RetryPolicy(Builder b) {
+        maxAttempts = b.maxAttempts;
+        initialBackoff = b.initialBackoff;
+        maxBackoff = b.maxBackoff;
+        multiplier = b.multiplier;
+        jitter = b.jitter;
+        failureThreshold = b.failureThreshold;
+        openDuration = b.openDuration;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * @return max number of times a request is sent, including the first one
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public Duration getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * @return share of each delay that is randomized, between 0 and 1
+     */
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * @return number of consecutive failed attempts that opens the circuit breaker
+     */
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * @return how long the circuit breaker stays open before requests are let through again
+     */
+    public Duration getOpenDuration() {
+        return openDuration;
+    }
+
+    /**
+     * @param attempt the attempt that failed, starting at 1
+     * @param random value between 0 and 1
+     * @return how long to wait before the next attempt
+     */
+    public Duration backoff(int attempt, double random) {
+        double delay = initialBackoff.toMillis() * Math.pow(multiplier, attempt - 1);
+        delay = Math.min(delay, maxBackoff.toMillis());
+        return Duration.ofMillis((long) (delay * (1 - jitter * random)));
+    }
+
+    public static class Builder {
+        private int maxAttempts = 5;
+        private Duration initialBackoff = Duration.ofMillis(500);
+        private Duration maxBackoff = Duration.ofSeconds(30);
+        private double multiplier = 2;
+        private double jitter = 0.5;
+        private int failureThreshold = 20;
+        private Duration openDuration = Duration.ofSeconds(30);
+
+        private Builder() {
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+
+        public Builder withMaxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("Max attempts must be greater than 0.");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public Builder withInitialBackoff(Duration initialBackoff) {
+            this.initialBackoff = Objects.requireNonNull(initialBackoff, "Missing initialBackoff argument!");
+            return this;
+        }
+
+        public Builder withMaxBackoff(Duration maxBackoff) {
+            this.maxBackoff = Objects.requireNonNull(maxBackoff, "Missing maxBackoff argument!");
+            return this;
+        }
+
+        public Builder withMultiplier(double multiplier) {
+            if (multiplier < 1) {
+                throw new IllegalArgumentException("Multiplier must be at least 1.");
+            }
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        public Builder withJitter(double jitter) {
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("Jitter must be between 0 and 1.");
+            }
+            this.jitter = jitter;
+            return this;
+        }
+
+        public Builder withFailureThreshold(int failureThreshold) {
+            if (failureThreshold < 1) {
+                throw new IllegalArgumentException("Failure threshold must be greater than 0.");
+            }
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        public Builder withOpenDuration(Duration openDuration) {
+            this.openDuration = Objects.requireNonNull(openDuration, "Missing openDuration argument!");
+            return this;
+        }
+    }
+}
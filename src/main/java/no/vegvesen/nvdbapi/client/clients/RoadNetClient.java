@@ -26,6 +26,7 @@
 package no.vegvesen.nvdbapi.client.clients;
 
 import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonReader;
 import no.vegvesen.nvdbapi.client.clients.util.JerseyHelper;
 import no.vegvesen.nvdbapi.client.gson.LinkParser;
 import no.vegvesen.nvdbapi.client.model.Page;
@@ -44,11 +45,20 @@ import java.util.stream.StreamSupport;
 
 public class RoadNetClient extends AbstractJerseyClient {
     private static final Logger LOG = LoggerFactory.getLogger(RoadNetClient.class);
+    private volatile boolean skipGeometry;
 
     public RoadNetClient(String baseUrl, Client client) {
         super(baseUrl, client);
     }
 
+    /**
+     * Skips link geometries when parsing paged results, leaving them {@code null}.
+     * Applies to results created after the call.
+     */
+    public void setSkipGeometry(boolean skipGeometry) {
+        this.skipGeometry = skipGeometry;
+    }
+
     public List<Link> getLinks(int id) {
         UriBuilder path = endpoint().path("/lenker").path(Integer.toString(id));
 
@@ -76,7 +86,15 @@ public class RoadNetClient extends AbstractJerseyClient {
         request.getRoadRefFilter().ifPresent(v -> path.queryParam("vegreferanse", v));
 
         WebTarget target = getClient().target(path);
-        return new LinkResult(target, request.getPage());
+        return new LinkResult(target, request.getPage(), skipGeometry);
+    }
+
+    /**
+     * Continues a result from {@link GenericResultSet#getCursor()}, for instance after a restart.
+     */
+    public LinkResult resumeLinks(Cursor cursor) {
+        Objects.requireNonNull(cursor, "Missing cursor argument!");
+        return new LinkResult(getClient().target(cursor.rebase(start(), "vegnett/lenker")), cursor, skipGeometry);
     }
 
     private static String join(List<Integer> list) {
@@ -94,8 +112,12 @@ public class RoadNetClient extends AbstractJerseyClient {
 
     public final class LinkResult extends GenericResultSet<Link> {
 
-        protected LinkResult(WebTarget baseTarget, Optional<Page> currentPage) {
-            super(baseTarget, currentPage, LinkParser::parse);
+        protected LinkResult(WebTarget baseTarget, Optional<Page> currentPage, boolean skipGeometry) {
+            super(baseTarget, currentPage, (JsonReader r) -> LinkParser.parse(r, skipGeometry));
+        }
+
+        protected LinkResult(WebTarget baseTarget, Cursor cursor, boolean skipGeometry) {
+            super(baseTarget, cursor, r -> LinkParser.parse(r, skipGeometry));
         }
     }
 }
@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.clients;
+
+import no.vegvesen.nvdbapi.client.model.Change;
+import no.vegvesen.nvdbapi.client.model.Geometry;
+import no.vegvesen.nvdbapi.client.model.roadobjects.Association;
+import no.vegvesen.nvdbapi.client.model.roadobjects.Attribute;
+import no.vegvesen.nvdbapi.client.model.roadobjects.RoadObject;
+import no.vegvesen.nvdbapi.client.model.roadobjects.Segment;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * In-memory cache for {@link RoadObjectClient#getRoadObject(int, long, RoadObjectRequest)}. Entries are spread over
+ * a number of independently locked stripes, each evicting its least recently used objects when it exceeds its share
+ * of the max object count or max weight. The weight of an object is a rough estimate of its size in bytes.
+ * <p>
+ * Objects are cached until evicted, so stale objects must be removed with {@link #invalidate(Change)}, for instance
+ * by polling {@link RoadObjectClient#getChanges(int, java.time.LocalDateTime, no.vegvesen.nvdbapi.client.model.Page, Change.Type)}.
+ *
+ * @see RoadObjectClient#setCache(RoadObjectCache)
+ */
+public final class RoadObjectCache {
+    private final Stripe[] stripes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private RoadObjectCache(Builder b) {
+        stripes = new Stripe[b.stripes];
+        long maxObjects = Math.max(1, b.maxObjects / b.stripes);
+        long maxWeight = Math.max(1, b.maxWeight / b.stripes);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(maxObjects, maxWeight);
+        }
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the cached object, or loads and caches it. The loader is called outside the lock, so concurrent
+     * misses for the same object may load it more than once.
+     */
+    RoadObject get(int typeId, long featureId, String variant, Supplier<RoadObject> loader) {
+        Key key = new Key(typeId, featureId);
+        Stripe stripe = stripeFor(key);
+        RoadObject cached = stripe.get(key, variant);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        RoadObject loaded = loader.get();
+        if (loaded != null) {
+            stripe.put(key, variant, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Removes all cached representations of an object.
+     */
+    public void invalidate(int typeId, long featureId) {
+        Key key = new Key(typeId, featureId);
+        stripeFor(key).remove(key);
+    }
+
+    /**
+     * Removes the changed object, unless the change carries the same version as the cached one.
+     */
+    public void invalidate(Change change) {
+        Key key = new Key(change.getTypeId(), change.getFeatureId());
+        Integer version = change.getRoadObject().map(RoadObject::getVersion).orElse(null);
+        if (change.getType() == Change.Type.DELETED || version == null) {
+            stripeFor(key).remove(key);
+        } else {
+            stripeFor(key).removeUnlessVersion(key, version);
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    public long getWeight() {
+        long weight = 0;
+        for (Stripe stripe : stripes) {
+            weight += stripe.weight();
+        }
+        return weight;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private Stripe stripeFor(Key key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return stripes[(h & 0x7fffffff) % stripes.length];
+    }
+
+    /**
+     * @return estimated size of the object in bytes
+     */
+    static long weigh(RoadObject ro) {
+        long weight = 128;
+        weight += weigh(ro.getGeometry());
+        List<Attribute> attributes = ro.getAttributes();
+        if (attributes != null) {
+            for (Attribute a : attributes) {
+                weight += 96 + stringWeight(a.getTypeName());
+                Object value = a.getValue();
+                weight += value instanceof String ? stringWeight((String) value) : 24;
+            }
+        }
+        List<Segment> segments = ro.getSegments();
+        if (segments != null) {
+            for (Segment s : segments) {
+                weight += 192 + weigh(s.getGeometry());
+            }
+        }
+        weight += weigh(ro.getChildren()) + weigh(ro.getParents());
+        if (ro.getLocation() != null) {
+            weight += 256;
+        }
+        return weight;
+    }
+
+    private static long weigh(Geometry geometry) {
+        return geometry == null ? 0 : 64 + stringWeight(geometry.getWkt());
+    }
+
+    private static long weigh(List<Association> associations) {
+        if (associations == null) {
+            return 0;
+        }
+        long weight = 0;
+        for (Association a : associations) {
+            weight += 48;
+            for (RoadObject ro : a.getFeatures()) {
+                weight += weigh(ro);
+            }
+        }
+        return weight;
+    }
+
+    private static long stringWeight(String s) {
+        return s == null ? 0 : 40 + 2L * s.length();
+    }
+
+    private static final class Key {
+        private final int typeId;
+        private final long featureId;
+
+        Key(int typeId, long featureId) {
+            this.typeId = typeId;
+            this.featureId = featureId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return typeId == key.typeId && featureId == key.featureId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * typeId + Long.hashCode(featureId);
+        }
+    }
+
+    /**
+     * The representations of one object, one per distinct request.
+     */
+    private static final class Node {
+        final Map<String, RoadObject> variants = new HashMap<>(2);
+        long weight;
+    }
+
+    private static final class Stripe {
+        private final long maxObjects;
+        private final long maxWeight;
+        private final LinkedHashMap<Key, Node> nodes = new LinkedHashMap<>(16, 0.75f, true);
+        private long weight;
+
+        Stripe(long maxObjects, long maxWeight) {
+            this.maxObjects = maxObjects;
+            this.maxWeight = maxWeight;
+        }
+
+        synchronized RoadObject get(Key key, String variant) {
+            Node node = nodes.get(key);
+            return node == null ? null : node.variants.get(variant);
+        }
+
+        synchronized void put(Key key, String variant, RoadObject ro) {
+            Node node = nodes.computeIfAbsent(key, k -> new Node());
+            long w = weigh(ro);
+            RoadObject previous = node.variants.put(variant, ro);
+            if (previous != null) {
+                long pw = weigh(previous);
+                node.weight -= pw;
+                weight -= pw;
+            }
+            node.weight += w;
+            weight += w;
+
+            Iterator<Node> it = nodes.values().iterator();
+            while ((nodes.size() > maxObjects || weight > maxWeight) && it.hasNext()) {
+                Node eldest = it.next();
+                // Keep the object just added, even if it alone exceeds the weight
+                if (eldest == node) {
+                    break;
+                }
+                it.remove();
+                weight -= eldest.weight;
+            }
+        }
+
+        synchronized void remove(Key key) {
+            Node node = nodes.remove(key);
+            if (node != null) {
+                weight -= node.weight;
+            }
+        }
+
+        synchronized void removeUnlessVersion(Key key, int version) {
+            Node node = nodes.get(key);
+            if (node != null && !node.variants.values().stream().allMatch(ro -> Objects.equals(ro.getVersion(), version))) {
+                remove(key);
+            }
+        }
+
+        synchronized void clear() {
+            nodes.clear();
+            weight = 0;
+        }
+
+        synchronized int size() {
+            return nodes.size();
+        }
+
+        synchronized long weight() {
+            return weight;
+        }
+    }
+
+    public static class Builder {
+        private long maxObjects = 100_000;
+        private long maxWeight = 256L * 1024 * 1024;
+        private int stripes = 16;
+
+        private Builder() {
+        }
+
+        public RoadObjectCache build() {
+            return new RoadObjectCache(this);
+        }
+
+        public Builder withMaxObjects(long maxObjects) {
+            if (maxObjects < 1) {
+                throw new IllegalArgumentException("Max objects must be greater than 0.");
+            }
+            this.maxObjects = maxObjects;
+            return this;
+        }
+
+        /**
+         * @param maxWeight max total estimated size of the cached objects, in bytes
+         */
+        public Builder withMaxWeight(long maxWeight) {
+            if (maxWeight < 1) {
+                throw new IllegalArgumentException("Max weight must be greater than 0.");
+            }
+            this.maxWeight = maxWeight;
+            return this;
+        }
+
+        /**
+         * @param stripes number of independently locked parts, more stripes mean less contention
+         */
+        public Builder withStripes(int stripes) {
+            if (stripes < 1) {
+                throw new IllegalArgumentException("Stripes must be greater than 0.");
+            }
+            this.stripes = stripes;
+            return this;
+        }
+    }
+}
@@ -28,7 +28,9 @@ package no.vegvesen.nvdbapi.client.clients;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 import no.vegvesen.nvdbapi.client.clients.util.JerseyHelper;
+import no.vegvesen.nvdbapi.client.exceptions.ClientException;
 import no.vegvesen.nvdbapi.client.gson.ChangesParser;
 import no.vegvesen.nvdbapi.client.gson.RoadObjectParser;
 import no.vegvesen.nvdbapi.client.model.Change;
@@ -40,7 +42,14 @@ import no.vegvesen.nvdbapi.client.model.roadobjects.RoadObject;
 import no.vegvesen.nvdbapi.client.model.roadobjects.Statistics;
 import no.vegvesen.nvdbapi.client.util.ArgUtil;
 import org.slf4j.Logger;
+import org.reactivestreams.Publisher;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.WebTarget;
@@ -49,6 +58,7 @@ import javax.ws.rs.core.UriBuilder;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -58,16 +68,42 @@ import static no.vegvesen.nvdbapi.client.clients.RoadObjectRequestBuilder.conver
 public class RoadObjectClient extends AbstractJerseyClient {
     private static final Logger logger = LoggerFactory.getLogger(RoadObjectClient.class);
     private final Datakatalog datakatalog;
+    private final Scheduler scheduler;
+    private volatile RoadObjectCache cache;
+    private volatile boolean skipGeometry;
 
     protected RoadObjectClient(String baseUrl, Client client, Datakatalog datakatalog) {
+        this(baseUrl, client, datakatalog, Schedulers.elastic());
+    }
+
+    protected RoadObjectClient(String baseUrl, Client client, Datakatalog datakatalog, Scheduler scheduler) {
         super(baseUrl, client);
         this.datakatalog = datakatalog;
+        this.scheduler = scheduler;
     }
 
     public Datakatalog getDatakatalog() {
         return datakatalog;
     }
 
+    /**
+     * Serves {@link #getRoadObject(int, long, RoadObjectRequest)} from the cache when possible.
+     *
+     * @param cache the cache, or {@code null} to always fetch from the API
+     */
+    public void setCache(RoadObjectCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Skips all geometries when parsing paged results, for callers that only need attributes and placements.
+     * Geometries are then {@code null} in road objects, locations, segments and related objects.
+     * Applies to results created after the call.
+     */
+    public void setSkipGeometry(boolean skipGeometry) {
+        this.skipGeometry = skipGeometry;
+    }
+
     public Attribute getAttribute(int featureTypeId, long featureId, int attributeTypeId) {
         UriBuilder path = start()
                 .path(String.format("/vegobjekter/%d/%d/egenskaper/%d", featureTypeId, featureId, attributeTypeId));
@@ -81,6 +117,68 @@ public class RoadObjectClient extends AbstractJerseyClient {
         return featureIds.map(id -> getAttribute(featureTypeId, id, attributeTypeId));
     }
 
+    /**
+     * Fetches one attribute from many road objects, with up to {@code concurrency} requests in flight.
+     * Objects that do not exist or lack the attribute are left out.
+     *
+     * @param ordered if {@code true}, attributes are emitted in the order of {@code featureIds}. Otherwise they are
+     *                emitted as soon as they arrive, so one slow request does not hold back the others.
+     * @return pairs of feature id and attribute
+     */
+    public Flux<Tuple2<Long, Attribute>> getAttributes(int featureTypeId, Publisher<Long> featureIds,
+                                                       int attributeTypeId, int concurrency, boolean ordered) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be greater than 0.");
+        }
+        Function<Long, Mono<Tuple2<Long, Attribute>>> fetch =
+                id -> Mono.fromCallable(() -> getAttribute(featureTypeId, id, attributeTypeId))
+                          .subscribeOn(scheduler)
+                          .onErrorResume(ClientException.class,
+                                         e -> e.getStatusCode() == 404 ? Mono.empty() : Mono.error(e))
+                          .map(a -> Tuples.of(id, a));
+        return ordered
+                ? Flux.from(featureIds).flatMapSequential(fetch, concurrency)
+                : Flux.from(featureIds).flatMap(fetch, concurrency);
+    }
+
+    /**
+     * Like {@link #getAttributes(int, Publisher, int, int, boolean)}, but coalesces the ids into road object queries
+     * with up to {@code batchSize} ids each. This needs far fewer requests when there are many ids.
+     * Attributes are emitted in the order of {@code featureIds}.
+     */
+    public Flux<Tuple2<Long, Attribute>> getAttributesCoalesced(int featureTypeId, Publisher<Long> featureIds,
+                                                                int attributeTypeId, int batchSize, int concurrency) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be greater than 0.");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be greater than 0.");
+        }
+        return Flux.from(featureIds)
+                   .buffer(batchSize)
+                   .flatMapSequential(ids -> Mono.fromCallable(() -> fetchAttributeBatch(featureTypeId, ids, attributeTypeId))
+                                                 .subscribeOn(scheduler), concurrency)
+                   .concatMapIterable(attributes -> attributes);
+    }
+
+    private List<Tuple2<Long, Attribute>> fetchAttributeBatch(int featureTypeId, List<Long> ids, int attributeTypeId) {
+        RoadObjectRequest request = RoadObjectRequest.newBuilder()
+                                                     .withIds(ids)
+                                                     .withIncludes(Include.ATTRIBUTES)
+                                                     .build();
+        Map<Long, Attribute> byId = new HashMap<>();
+        try (RoadObjectsResult result = getRoadObjects(featureTypeId, request)) {
+            result.stream().forEach(ro -> ro.getAttributes().stream()
+                                            .filter(a -> a.getTypeId() == attributeTypeId)
+                                            .findFirst()
+                                            .ifPresent(a -> byId.put(ro.getId(), a)));
+        }
+        return ids.stream()
+                  .filter(byId::containsKey)
+                  .map(id -> Tuples.of(id, byId.get(id)))
+                  .collect(Collectors.toList());
+    }
+
     public Statistics getStats(int featureTypeId, RoadObjectRequest request) {
         UriBuilder path = start()
                 .path(String.format("/vegobjekter/%d/statistikk", featureTypeId));
@@ -110,7 +208,25 @@ public class RoadObjectClient extends AbstractJerseyClient {
         applyRequestParameters(path, queryParameters);
         WebTarget target = getClient().target(path);
 
-        return new RoadObjectsResult(target, extractPage(queryParameters), datakatalog);
+        return new RoadObjectsResult(target, extractPage(queryParameters), datakatalog, skipGeometry);
+    }
+
+    /**
+     * Continues a result from {@link GenericResultSet#getCursor()}, for instance after a restart.
+     */
+    public RoadObjectsResult resumeRoadObjects(Cursor cursor) {
+        Objects.requireNonNull(cursor, "Missing cursor argument!");
+        WebTarget target = getClient().target(cursor.rebase(start(), "vegobjekter/\\d+"));
+        return new RoadObjectsResult(target, cursor, datakatalog, skipGeometry);
+    }
+
+    /**
+     * Continues an async result from a cursor passed to {@link AsyncResult#withCheckpoint(java.util.function.Consumer)}.
+     */
+    public AsyncRoadObjectsResult resumeRoadObjectsAsync(Cursor cursor) {
+        Objects.requireNonNull(cursor, "Missing cursor argument!");
+        WebTarget target = getClient().target(cursor.rebase(start(), "vegobjekter/\\d+"));
+        return new AsyncRoadObjectsResult(target, cursor, datakatalog, scheduler, skipGeometry);
     }
 
     public RoadObjectsResult getRoadObjects(int featureTypeId, RoadObjectRequest request) {
@@ -120,7 +236,7 @@ public class RoadObjectClient extends AbstractJerseyClient {
         applyRequestParameters(path, convert(request));
         WebTarget target = getClient().target(path);
 
-        return new RoadObjectsResult(target, Optional.ofNullable(request.getPage()), datakatalog);
+        return new RoadObjectsResult(target, Optional.ofNullable(request.getPage()), datakatalog, skipGeometry);
     }
 
     public AsyncRoadObjectsResult getRoadObjectsAsync(int featureTypeId, MultivaluedMap<String, String> queryParameters) {
@@ -130,7 +246,7 @@ public class RoadObjectClient extends AbstractJerseyClient {
         applyRequestParameters(path, queryParameters);
         WebTarget target = getClient().target(path);
 
-        return new AsyncRoadObjectsResult(target, extractPage(queryParameters).orElse(Page.defaults()), datakatalog);
+        return new AsyncRoadObjectsResult(target, extractPage(queryParameters).orElse(Page.defaults()), datakatalog, scheduler, skipGeometry);
     }
 
     public AsyncRoadObjectsResult getRoadObjectsAsync(int featureTypeId, RoadObjectRequest request) {
@@ -140,7 +256,32 @@ public class RoadObjectClient extends AbstractJerseyClient {
         applyRequestParameters(path, convert(request));
         WebTarget target = getClient().target(path);
 
-        return new AsyncRoadObjectsResult(target, request.getPage(), datakatalog);
+        return new AsyncRoadObjectsResult(target, request.getPage(), datakatalog, scheduler, skipGeometry);
+    }
+
+    /**
+     * Harvests one feature type by fetching several disjoint partitions of a query concurrently, see
+     * {@link RoadObjectRequest#partitionByCounties(Collection)}. Objects that span partitions are emitted once,
+     * as returned by the first partition that delivered them. Use unsegmented requests if the complete
+     * extent of such objects is needed.
+     *
+     * @param featureTypeId feature type to fetch
+     * @param partitions disjoint requests covering the query
+     * @param concurrency max number of partitions fetched at the same time. Should not exceed the number
+     *                    of connections per route in the {@link ConnectionPoolConfig}
+     * @return the merged objects, in no particular order
+     */
+    public Flux<RoadObject> getRoadObjectsPartitioned(int featureTypeId,
+                                                      List<RoadObjectRequest> partitions,
+                                                      int concurrency) {
+        Objects.requireNonNull(partitions, "Missing partitions argument!");
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be greater than 0.");
+        }
+
+        return Flux.fromIterable(partitions)
+                .flatMap(p -> getRoadObjectsAsync(featureTypeId, p).get(), concurrency)
+                .distinct(RoadObject::getId);
     }
 
     private Optional<Page> extractPage(MultivaluedMap<String, String> params) {
@@ -156,11 +297,21 @@ public class RoadObjectClient extends AbstractJerseyClient {
     }
 
     public RoadObject getRoadObject(int featureTypeId, long featureId, RoadObjectRequest request) {
+        RoadObjectCache cache = this.cache;
+        if (cache != null) {
+            MultivaluedMap<String, String> params = convert(request);
+            return cache.get(featureTypeId, featureId, new TreeMap<>(params).toString(),
+                             () -> fetchRoadObject(featureTypeId, featureId, params));
+        }
+        return fetchRoadObject(featureTypeId, featureId, convert(request));
+    }
+
+    private RoadObject fetchRoadObject(int featureTypeId, long featureId, MultivaluedMap<String, String> params) {
         UriBuilder path = start()
                 .path(String.format("/vegobjekter/%d/%d", featureTypeId, featureId));
 
         logger.debug("Invoking {}", path);
-        applyRequestParameters(path, convert(request));
+        applyRequestParameters(path, params);
 
         WebTarget target = getClient().target(path);
 
@@ -258,7 +409,27 @@ public class RoadObjectClient extends AbstractJerseyClient {
         public RoadObjectsResult(WebTarget baseTarget,
                                  Optional<Page> currentPage,
                                  Datakatalog datakatalog) {
-            super(baseTarget, currentPage, o -> RoadObjectParser.parse(datakatalog.getDataTypeMap(), o));
+            this(baseTarget, currentPage, datakatalog, false);
+        }
+
+        public RoadObjectsResult(WebTarget baseTarget,
+                                 Optional<Page> currentPage,
+                                 Datakatalog datakatalog,
+                                 boolean skipGeometry) {
+            super(baseTarget, currentPage, (JsonReader o) -> RoadObjectParser.parse(datakatalog.getDataTypeMap(), o, skipGeometry));
+        }
+
+        public RoadObjectsResult(WebTarget baseTarget,
+                                 Cursor cursor,
+                                 Datakatalog datakatalog) {
+            this(baseTarget, cursor, datakatalog, false);
+        }
+
+        public RoadObjectsResult(WebTarget baseTarget,
+                                 Cursor cursor,
+                                 Datakatalog datakatalog,
+                                 boolean skipGeometry) {
+            super(baseTarget, cursor, o -> RoadObjectParser.parse(datakatalog.getDataTypeMap(), o, skipGeometry));
         }
     }
 
@@ -267,7 +438,37 @@ public class RoadObjectClient extends AbstractJerseyClient {
         public AsyncRoadObjectsResult(WebTarget baseTarget,
                                       Page currentPage,
                                       Datakatalog datakatalog) {
-            super(baseTarget, currentPage, o -> RoadObjectParser.parse(datakatalog.getDataTypeMap(), o));
+            super(baseTarget, currentPage, (JsonReader o) -> RoadObjectParser.parse(datakatalog.getDataTypeMap(), o));
+        }
+
+        public AsyncRoadObjectsResult(WebTarget baseTarget,
+                                      Page currentPage,
+                                      Datakatalog datakatalog,
+                                      Scheduler scheduler) {
+            this(baseTarget, currentPage, datakatalog, scheduler, false);
+        }
+
+        public AsyncRoadObjectsResult(WebTarget baseTarget,
+                                      Page currentPage,
+                                      Datakatalog datakatalog,
+                                      Scheduler scheduler,
+                                      boolean skipGeometry) {
+            super(baseTarget, currentPage, o -> RoadObjectParser.parse(datakatalog.getDataTypeMap(), o, skipGeometry), scheduler);
+        }
+
+        public AsyncRoadObjectsResult(WebTarget baseTarget,
+                                      Cursor cursor,
+                                      Datakatalog datakatalog,
+                                      Scheduler scheduler) {
+            this(baseTarget, cursor, datakatalog, scheduler, false);
+        }
+
+        public AsyncRoadObjectsResult(WebTarget baseTarget,
+                                      Cursor cursor,
+                                      Datakatalog datakatalog,
+                                      Scheduler scheduler,
+                                      boolean skipGeometry) {
+            super(baseTarget, cursor, o -> RoadObjectParser.parse(datakatalog.getDataTypeMap(), o, skipGeometry), scheduler);
         }
     }
 
@@ -277,7 +478,7 @@ public class RoadObjectClient extends AbstractJerseyClient {
                              int typeId,
                              WebTarget baseTarget,
                              Optional<Page> currentPage) {
-            super(baseTarget, currentPage, obj -> ChangesParser.parse(dataTypes, obj, typeId));
+            super(baseTarget, currentPage, (JsonReader obj) -> ChangesParser.parse(dataTypes, obj, typeId));
         }
     }
 }
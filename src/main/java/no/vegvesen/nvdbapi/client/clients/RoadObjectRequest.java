@@ -29,6 +29,8 @@ import no.vegvesen.nvdbapi.client.model.Page;
 import no.vegvesen.nvdbapi.client.model.Projection;
 
 import java.util.*;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
 
 public class RoadObjectRequest {
 
@@ -52,6 +54,7 @@ public class RoadObjectRequest {
     private final List<Integer> roadDepartments;
     private final List<String> contractAreas;
     private final List<String> nationalRoutes;
+    private final List<Long> ids;
 
     private RoadObjectRequest(Builder b) {
         page = b.page;
@@ -72,6 +75,7 @@ public class RoadObjectRequest {
         roadDepartments = b.roadDepartments;
         contractAreas = b.contractAreas;
         nationalRoutes = b.nationalRoutes;
+        ids = b.ids;
     }
 
     public static Builder newBuilder() {
@@ -150,6 +154,10 @@ public class RoadObjectRequest {
         return nationalRoutes;
     }
 
+    public List<Long> getIds() {
+        return ids;
+    }
+
     /**
      * This method strips any parameters that are not supported by the API
      * for statistics requests
@@ -173,6 +181,7 @@ public class RoadObjectRequest {
         b.withProjection(projection);
         b.withDistanceTolerance(distanceTolerance);
         b.withIncludes(includes);
+        b.withIncludeGeometries(includeGeometries);
         b.withAttributeFilter(attributeFilter);
         b.withBbox(bbox);
         b.withRoadRefFilter(roadRefFilter);
@@ -182,9 +191,53 @@ public class RoadObjectRequest {
         b.withCounties(counties);
         b.withRegions(regions);
         b.withRoadDepartments(roadDepartments);
+        b.withContractAreas(contractAreas.toArray(new String[0]));
+        b.withNationalRoutes(nationalRoutes.toArray(new String[0]));
+        b.withIds(ids);
         return b;
     }
 
+    /**
+     * Splits {@code this} request into one request per county. If {@code this} request already filters on
+     * counties, only those counties are kept.
+     * @param counties county numbers to partition on, e.g. from {@code AreaClient.getCountys()}
+     * @return disjoint requests that together cover {@code this} query
+     */
+    public List<RoadObjectRequest> partitionByCounties(Collection<Integer> counties) {
+        return partition(counties, this.counties, Builder::withCounty);
+    }
+
+    /**
+     * Splits {@code this} request into one request per municipality. If {@code this} request already filters on
+     * municipalities, only those municipalities are kept.
+     * @param municipalities municipality numbers to partition on
+     * @return disjoint requests that together cover {@code this} query
+     */
+    public List<RoadObjectRequest> partitionByMunicipalities(Collection<Integer> municipalities) {
+        return partition(municipalities, this.municipalities, Builder::withMunicipality);
+    }
+
+    /**
+     * Splits {@code this} request into one request per region. If {@code this} request already filters on
+     * regions, only those regions are kept.
+     * @param regions region numbers to partition on
+     * @return disjoint requests that together cover {@code this} query
+     */
+    public List<RoadObjectRequest> partitionByRegions(Collection<Integer> regions) {
+        return partition(regions, this.regions, Builder::withRegion);
+    }
+
+    private List<RoadObjectRequest> partition(Collection<Integer> areas,
+                                              List<Integer> current,
+                                              BiFunction<Builder, Integer, Builder> filter) {
+        Objects.requireNonNull(areas, "Missing areas argument!");
+        return areas.stream()
+                .distinct()
+                .filter(a -> current.isEmpty() || current.contains(a))
+                .map(a -> filter.apply(toMutable(), a).build())
+                .collect(Collectors.toList());
+    }
+
     public static class Builder {
 
         private Page page = Page.count(1000);
@@ -205,6 +258,7 @@ public class RoadObjectRequest {
         private List<Integer> roadDepartments = Collections.emptyList();
         private List<String> contractAreas = Collections.emptyList();
         private List<String> nationalRoutes = Collections.emptyList();
+        private List<Long> ids = Collections.emptyList();
 
         private Builder() {
         }
@@ -340,6 +394,19 @@ public class RoadObjectRequest {
             return this;
         }
 
+        /**
+         * Only return the road objects with these ids.
+         */
+        public Builder withIds(List<Long> ids) {
+            this.ids = ids;
+            return this;
+        }
+
+        public Builder withIds(Long... ids) {
+            this.ids = Arrays.asList(ids);
+            return this;
+        }
+
         public Builder withMunicipalities(List<Integer> municipalities) {
             this.municipalities = municipalities;
             return this;
@@ -55,6 +55,7 @@ class RoadObjectRequestBuilder {
         flatten(request.getRoadDepartments()).ifPresent(v -> map.putSingle("vegavdeling", v));
         flattenString(request.getContractAreas()).ifPresent(v -> map.putSingle("kontraktsomrade", v));
         flattenString(request.getNationalRoutes()).ifPresent(v -> map.putSingle("riksvegrute", v));
+        flatten(request.getIds()).ifPresent(v -> map.putSingle("ids", v));
 
         // Multiple parameters
         request.getOverlapFilters().forEach(f -> map.add("overlapp", f.toString()));
@@ -102,7 +103,7 @@ class RoadObjectRequestBuilder {
                 .collect(Collectors.joining(",")));
     }
 
-    private static Optional<String> flatten(List<Integer> set) {
+    private static Optional<String> flatten(List<? extends Number> set) {
         if (set.isEmpty()) {
             return Optional.empty();
         }
@@ -28,22 +28,43 @@ package no.vegvesen.nvdbapi.client.clients;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import no.vegvesen.nvdbapi.client.clients.util.JerseyHelper;
+import no.vegvesen.nvdbapi.client.exceptions.ClientException;
 import no.vegvesen.nvdbapi.client.gson.RoadPlacementParser;
 import no.vegvesen.nvdbapi.client.model.Projection;
 import no.vegvesen.nvdbapi.client.model.RoadPlacement;
 import no.vegvesen.nvdbapi.client.model.RoadPlacementBulkResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.UriBuilder;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class RoadPlacementClient extends AbstractJerseyClient {
+    /**
+     * Default limit for the length of a bulk request URL, well below the 8 KB most servers and proxies accept.
+     */
+    public static final int DEFAULT_MAX_URL_LENGTH = 4096;
+
+    private final Scheduler scheduler;
 
     protected RoadPlacementClient(String baseUrl, Client client) {
+        this(baseUrl, client, Schedulers.elastic());
+    }
+
+    protected RoadPlacementClient(String baseUrl, Client client, Scheduler scheduler) {
         super(baseUrl, client);
+        this.scheduler = scheduler;
     }
 
     /**
@@ -120,6 +141,125 @@ public class RoadPlacementClient extends AbstractJerseyClient {
         return getRoadPlacementsInBatch("veglenker", queryParam, projection);
     }
 
+    /**
+     * Looks up any number of road refs. The refs are split into requests that fit within
+     * {@link #DEFAULT_MAX_URL_LENGTH}, which are sent concurrently.
+     *
+     * @param requests road refs to look up
+     * @param projection used for coordinates in the result, may be {@code null}
+     * @param parallelism max number of concurrent requests
+     * @return one result per request, in the same order as {@code requests}. If a lookup fails, its result
+     * holds the error instead of failing the whole call.
+     */
+    public List<RoadPlacementBulkResult> findPlacementsInBulk(List<RoadRefRequest> requests, Projection projection,
+                                                              int parallelism) {
+        return findPlacementsInBulk(requests, projection, parallelism, DEFAULT_MAX_URL_LENGTH);
+    }
+
+    public List<RoadPlacementBulkResult> findPlacementsInBulk(List<RoadRefRequest> requests, Projection projection,
+                                                              int parallelism, int maxUrlLength) {
+        List<String> keys = requests.stream().map(RoadRefRequest::getQueryParam).collect(Collectors.toList());
+        return findInBulk("vegreferanser", keys, projection, parallelism, maxUrlLength);
+    }
+
+    /**
+     * Same as {@link #findPlacementsInBulk(List, Projection, int)}, but for ref links.
+     */
+    public List<RoadPlacementBulkResult> findPlacementsInBulkFromReflinks(List<RefLinkRequest> requests,
+                                                                          Projection projection, int parallelism) {
+        return findPlacementsInBulkFromReflinks(requests, projection, parallelism, DEFAULT_MAX_URL_LENGTH);
+    }
+
+    public List<RoadPlacementBulkResult> findPlacementsInBulkFromReflinks(List<RefLinkRequest> requests,
+                                                                          Projection projection, int parallelism,
+                                                                          int maxUrlLength) {
+        List<String> keys = requests.stream().map(RefLinkRequest::getQueryParam).collect(Collectors.toList());
+        return findInBulk("veglenker", keys, projection, parallelism, maxUrlLength);
+    }
+
+    private List<RoadPlacementBulkResult> findInBulk(String paramName, List<String> keys, Projection projection,
+                                                     int parallelism, int maxUrlLength) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be greater than 0.");
+        }
+        UriBuilder url = bulkEndpoint();
+        Optional.ofNullable(projection).ifPresent(p -> url.queryParam("srid", projection.getSrid()));
+        int available = maxUrlLength - url.build().toString().length() - paramName.length() - 2;
+
+        return Flux.fromIterable(chunk(keys, available))
+                   .flatMapSequential(chunk -> Mono.fromCallable(() -> getChunk(paramName, chunk, projection))
+                                                   .subscribeOn(scheduler), parallelism)
+                   .concatMapIterable(results -> results)
+                   .collectList()
+                   .block();
+    }
+
+    /**
+     * Splits keys into chunks whose encoded, comma separated length does not exceed {@code maxLength}.
+     * A key longer than {@code maxLength} gets a chunk of its own.
+     */
+    static List<List<String>> chunk(List<String> keys, int maxLength) {
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        int length = 0;
+        for (String key : keys) {
+            // separators are counted as encoded commas to stay on the safe side
+            int keyLength = encodedLength(key) + (current.isEmpty() ? 0 : 3);
+            if (!current.isEmpty() && length + keyLength > maxLength) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                length = 0;
+                keyLength = encodedLength(key);
+            }
+            current.add(key);
+            length += keyLength;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    private static int encodedLength(String key) {
+        try {
+            return URLEncoder.encode(key, "UTF-8").length();
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<RoadPlacementBulkResult> getChunk(String paramName, List<String> keys, Projection projection) {
+        try {
+            Map<String, RoadPlacementBulkResult> byKey =
+                    getRoadPlacementsInBatch(paramName, String.join(",", keys), projection).stream()
+                            .collect(Collectors.toMap(RoadPlacementBulkResult::getKey, Function.identity(), (a, b) -> a));
+            return keys.stream()
+                       .map(k -> byKey.getOrDefault(k, new RoadPlacementBulkResult(k, null)))
+                       .collect(Collectors.toList());
+        } catch (ClientException e) {
+            // A single malformed key fails the whole request, split until it is isolated.
+            // Other errors, such as 429 after the retry policy has given up, would only multiply the requests
+            if (keys.size() > 1 && isCausedByKey(e.getStatusCode())) {
+                List<RoadPlacementBulkResult> results = new ArrayList<>(keys.size());
+                int half = keys.size() / 2;
+                results.addAll(getChunk(paramName, keys.subList(0, half), projection));
+                results.addAll(getChunk(paramName, keys.subList(half, keys.size()), projection));
+                return results;
+            }
+            return failed(keys, e);
+        } catch (RuntimeException e) {
+            return failed(keys, e);
+        }
+    }
+
+    private static boolean isCausedByKey(int statusCode) {
+        return statusCode == 400 || statusCode == 414;
+    }
+
+    private static List<RoadPlacementBulkResult> failed(List<String> keys, RuntimeException e) {
+        return keys.stream().map(k -> RoadPlacementBulkResult.failed(k, e)).collect(Collectors.toList());
+    }
+
     private List<RoadPlacementBulkResult> getRoadPlacementsInBatch(String paramName, String queryParam, Projection projection) {
         UriBuilder url = bulkEndpoint();
 
@@ -42,6 +42,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 public class JerseyHelper {
     private static final Logger logger = LoggerFactory.getLogger(JerseyHelper.class);
@@ -72,16 +73,37 @@ public class JerseyHelper {
     }
 
     public static JsonElement execute(WebTarget target, String mediaType) {
-        Invocation invocation = target.request().accept(mediaType).buildGet();
-        try(Response response = execute(invocation, Response.class)) {
+        return execute(target, () -> {
+            Invocation invocation = target.request().accept(mediaType).buildGet();
+            try(Response response = execute(invocation, Response.class)) {
 
-            if (!isSuccess(response)) {
-                throw parseError(response);
+                if (!isSuccess(response)) {
+                    throw parseError(response);
+                }
+
+                return new JsonParser().parse(
+                        new InputStreamReader((InputStream) response.getEntity()));
             }
+        });
+    }
 
-            return new JsonParser().parse(
-                    new InputStreamReader((InputStream) response.getEntity()));
-        }
+    /**
+     * Runs a GET request, including reading the response, under the {@link RequestGovernor} and
+     * {@link RetryHandler} of the target's client. The call must be safe to repeat.
+     */
+    public static <T> T execute(WebTarget target, Supplier<T> call) {
+        Supplier<T> governed = governor(target).<Supplier<T>>map(g -> () -> g.call(call)).orElse(call);
+        return retryHandler(target).map(h -> h.call(governed)).orElseGet(governed);
+    }
+
+    public static Optional<RequestGovernor> governor(WebTarget target) {
+        Object governor = target.getConfiguration().getProperty(RequestGovernor.PROPERTY);
+        return governor instanceof RequestGovernor ? Optional.of((RequestGovernor) governor) : Optional.empty();
+    }
+
+    public static Optional<RetryHandler> retryHandler(WebTarget target) {
+        Object handler = target.getConfiguration().getProperty(RetryHandler.PROPERTY);
+        return handler instanceof RetryHandler ? Optional.of((RetryHandler) handler) : Optional.empty();
     }
 
     public static <T> T execute(Invocation inv, GenericType<T> responseType) {
@@ -94,6 +116,10 @@ public class JerseyHelper {
     }
 
     public static Optional<JsonElement> executeOptional(WebTarget target) {
+        return execute(target, () -> doExecuteOptional(target));
+    }
+
+    private static Optional<JsonElement> doExecuteOptional(WebTarget target) {
         Invocation inv = target.request().buildGet();
         try(Response response = execute(inv, Response.class)) {
 
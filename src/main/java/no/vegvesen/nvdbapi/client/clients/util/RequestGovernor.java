@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.clients.util;
+
+import no.vegvesen.nvdbapi.client.clients.RateLimitConfig;
+import no.vegvesen.nvdbapi.client.exceptions.ClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Enforces a {@link RateLimitConfig} with a token bucket and a limit on requests in flight, shared by all clients
+ * of a factory.
+ * Clients find it in their configuration under {@link #PROPERTY}.
+ */
+public final class RequestGovernor {
+    private static final Logger logger = LoggerFactory.getLogger(RequestGovernor.class);
+    public static final String PROPERTY = RequestGovernor.class.getName();
+
+    private volatile RateLimitConfig config;
+    private volatile InFlight inFlight;
+
+    // Token bucket, guarded by this
+    private double rate;
+    private double tokens;
+    private long refilledAt;
+
+    public RequestGovernor(RateLimitConfig config) {
+        setConfig(config);
+    }
+
+    public RateLimitConfig getConfig() {
+        return config;
+    }
+
+    public synchronized void setConfig(RateLimitConfig config) {
+        this.config = Objects.requireNonNull(config, "Missing config argument!");
+        // Requests holding a permit of the previous semaphore release it there
+        this.inFlight = config.getMaxInFlight() == Integer.MAX_VALUE ? null : new InFlight(config.getMaxInFlight());
+        this.rate = config.getRequestsPerSecond();
+        this.tokens = config.getBurst();
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * @return the current request rate, lower than the configured one while the API is throttling
+     */
+    public synchronized double getCurrentRate() {
+        return rate;
+    }
+
+    /**
+     * Runs the call once a permit is available, and adapts the rate to the outcome.
+     */
+    public <T> T call(Supplier<T> call) {
+        Permit permit = acquire();
+        try {
+            T result = call.get();
+            onResponse(200);
+            return result;
+        } catch (ClientException e) {
+            onResponse(e.getStatusCode());
+            throw e;
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * Blocks until a request may be sent.
+     *
+     * @return the permit, to be released when the response has been read
+     */
+    public Permit acquire() {
+        InFlight pool = inFlight;
+        if (pool != null) {
+            CountDownLatch granted = new CountDownLatch(1);
+            Runnable waiter = granted::countDown;
+            pool.acquire(waiter);
+            try {
+                granted.await();
+            } catch (InterruptedException e) {
+                if (!pool.remove(waiter)) {
+                    // Granted while being interrupted
+                    pool.release();
+                }
+                throw interrupted(e);
+            }
+        }
+        Permit permit = new Permit(pool);
+        long wait = reserve();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                permit.release();
+                throw interrupted(e);
+            }
+        }
+        return permit;
+    }
+
+    /**
+     * Like {@link #acquire()}, but without blocking: callers over the in-flight limit are queued, and the wait for
+     * the rate limit is a timer. The permit is released if the subscriber cancels before it is emitted.
+     *
+     * @return the permit, to be released when the response has been read
+     */
+    public Mono<Permit> acquireAsync() {
+        return Mono.create(sink -> {
+            InFlight pool = inFlight;
+            Permit permit = new Permit(pool);
+            AtomicBoolean finished = new AtomicBoolean();
+            AtomicBoolean granted = new AtomicBoolean();
+            AtomicReference<Disposable> timer = new AtomicReference<>();
+
+            Runnable emit = () -> {
+                if (finished.compareAndSet(false, true)) {
+                    sink.success(permit);
+                } else {
+                    permit.release();
+                }
+            };
+            Runnable waiter = () -> {
+                granted.set(true);
+                long wait = reserve();
+                if (wait > 0) {
+                    timer.set(Schedulers.parallel().schedule(emit, wait, TimeUnit.NANOSECONDS));
+                } else {
+                    emit.run();
+                }
+            };
+            sink.onCancel(() -> {
+                if (!finished.compareAndSet(false, true)) {
+                    return;
+                }
+                Disposable scheduled = timer.get();
+                if (scheduled != null) {
+                    scheduled.dispose();
+                }
+                // Still queued, or granted and then given back here. A waiter granted concurrently also gives it
+                // back when it finds the sink finished, releasing twice has no effect
+                if (granted.get() || (pool != null && !pool.remove(waiter))) {
+                    permit.release();
+                }
+            });
+
+            if (pool == null) {
+                waiter.run();
+            } else {
+                pool.acquire(waiter);
+            }
+        });
+    }
+
+    /**
+     * Halves the rate on 429 and 503, and otherwise lets it recover by a twentieth of the configured rate.
+     */
+    public synchronized void onResponse(int status) {
+        RateLimitConfig c = config;
+        if (Double.isInfinite(c.getRequestsPerSecond())) {
+            return;
+        }
+        if (status == 429 || status == 503) {
+            double slower = Math.max(c.getMinRequestsPerSecond(), rate / 2);
+            if (slower < rate) {
+                logger.warn("API is throttling (HTTP {}), slowing down to {} requests per second", status, slower);
+            }
+            refill();
+            rate = slower;
+        } else if (status < 400 && rate < c.getRequestsPerSecond()) {
+            refill();
+            rate = Math.min(c.getRequestsPerSecond(), rate + c.getRequestsPerSecond() / 20);
+        }
+    }
+
+    private static IllegalStateException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return new IllegalStateException("Interrupted while waiting to send request", e);
+    }
+
+    /**
+     * Takes a token, possibly one that is not there yet.
+     *
+     * @return nanoseconds to wait before the token is there
+     */
+    private synchronized long reserve() {
+        if (Double.isInfinite(rate)) {
+            return 0;
+        }
+        refill();
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        if (!Double.isInfinite(rate)) {
+            tokens = Math.min(config.getBurst(), tokens + (now - refilledAt) * rate / TimeUnit.SECONDS.toNanos(1));
+        }
+        refilledAt = now;
+    }
+
+    public static final class Permit {
+        private final InFlight pool;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(InFlight pool) {
+            this.pool = pool;
+        }
+
+        /**
+         * Gives the permit back. Calling it again has no effect.
+         */
+        public void release() {
+            if (pool != null && released.compareAndSet(false, true)) {
+                pool.release();
+            }
+        }
+    }
+
+    /**
+     * Fair counting semaphore whose waiters are callbacks, so both blocked threads and async requests can queue.
+     */
+    private static final class InFlight {
+        // Guarded by this
+        private int available;
+        private final ArrayDeque<Runnable> waiters = new ArrayDeque<>();
+
+        InFlight(int permits) {
+            this.available = permits;
+        }
+
+        /**
+         * Runs {@code waiter} when a permit is taken for it, right away if one is free.
+         */
+        void acquire(Runnable waiter) {
+            synchronized (this) {
+                if (available == 0 || !waiters.isEmpty()) {
+                    waiters.add(waiter);
+                    return;
+                }
+                available--;
+            }
+            waiter.run();
+        }
+
+        /**
+         * @return {@code false} if the waiter already got its permit
+         */
+        synchronized boolean remove(Runnable waiter) {
+            return waiters.removeFirstOccurrence(waiter);
+        }
+
+        void release() {
+            Runnable next;
+            synchronized (this) {
+                next = waiters.poll();
+                if (next == null) {
+                    available++;
+                    return;
+                }
+            }
+            next.run();
+        }
+    }
+}
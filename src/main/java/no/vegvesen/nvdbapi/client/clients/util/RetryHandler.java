@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.clients.util;
+
+import no.vegvesen.nvdbapi.client.clients.RetryPolicy;
+import no.vegvesen.nvdbapi.client.exceptions.CircuitOpenException;
+import no.vegvesen.nvdbapi.client.exceptions.ClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.ProcessingException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Applies a {@link RetryPolicy} to requests, and keeps the circuit breaker state shared by all clients of a
+ * factory. Clients find it in their configuration under {@link #PROPERTY}.
+ */
+public final class RetryHandler {
+    private static final Logger logger = LoggerFactory.getLogger(RetryHandler.class);
+    public static final String PROPERTY = RetryHandler.class.getName();
+
+    private volatile RetryPolicy policy;
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile long openUntil;
+
+    public RetryHandler(RetryPolicy policy) {
+        setPolicy(policy);
+    }
+
+    public RetryPolicy getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(RetryPolicy policy) {
+        this.policy = Objects.requireNonNull(policy, "Missing policy argument!");
+    }
+
+    /**
+     * Runs the call, retrying it as long as the policy allows.
+     */
+    public <T> T call(Supplier<T> call) {
+        for (int attempt = 1; ; attempt++) {
+            checkCircuit();
+            T result;
+            try {
+                result = call.get();
+            } catch (RuntimeException e) {
+                if (!retry(e, attempt)) {
+                    throw e;
+                }
+                sleep(backoff(attempt), e);
+                continue;
+            }
+            onSuccess();
+            return result;
+        }
+    }
+
+    /**
+     * @throws CircuitOpenException if requests should not be sent right now
+     */
+    public void checkCircuit() {
+        long remaining = openUntil - System.nanoTime();
+        if (openUntil != 0 && remaining > 0) {
+            throw new CircuitOpenException(Duration.ofNanos(remaining));
+        }
+    }
+
+    public void onSuccess() {
+        failures.set(0);
+        openUntil = 0;
+    }
+
+    /**
+     * Records a failed attempt.
+     *
+     * @param attempt the attempt that failed, starting at 1
+     * @return {@code true} if the request should be sent again after {@link #backoff(int)}
+     */
+    public boolean retry(Throwable e, int attempt) {
+        if (e instanceof CircuitOpenException) {
+            return false;
+        }
+        if (!isTransient(e)) {
+            // The API answered, so it is up
+            onSuccess();
+            return false;
+        }
+        RetryPolicy p = policy;
+        if (failures.incrementAndGet() >= p.getFailureThreshold()) {
+            logger.warn("{} failed requests in a row, pausing requests for {}", failures.get(), p.getOpenDuration());
+            openUntil = System.nanoTime() + p.getOpenDuration().toNanos();
+            return false;
+        }
+        if (attempt >= p.getMaxAttempts()) {
+            return false;
+        }
+        logger.warn("Attempt {} of {} failed: {}", attempt, p.getMaxAttempts(), e.toString());
+        return true;
+    }
+
+    public Duration backoff(int attempt) {
+        return policy.backoff(attempt, ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * @return {@code true} for errors that may go away by trying again
+     */
+    public static boolean isTransient(Throwable e) {
+        if (e instanceof ClientException) {
+            int status = ((ClientException) e).getStatusCode();
+            return status == 429 || (status >= 500 && status != 501);
+        }
+        return e instanceof ProcessingException
+                || e instanceof UncheckedIOException
+                || e.getCause() instanceof IOException;
+    }
+
+    private static void sleep(Duration delay, RuntimeException cause) {
+        try {
+            Thread.sleep(delay.toMillis());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+}
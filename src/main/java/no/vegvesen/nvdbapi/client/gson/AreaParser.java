@@ -26,14 +26,22 @@
 package no.vegvesen.nvdbapi.client.gson;
 
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 import no.vegvesen.nvdbapi.client.model.Geometry;
 import no.vegvesen.nvdbapi.client.model.areas.*;
 
+import java.io.IOException;
+
+import static no.vegvesen.nvdbapi.client.gson.GsonUtil.nextInt;
+import static no.vegvesen.nvdbapi.client.gson.GsonUtil.nextLong;
+import static no.vegvesen.nvdbapi.client.gson.GsonUtil.nextString;
 import static no.vegvesen.nvdbapi.client.gson.GsonUtil.parseIntMember;
 import static no.vegvesen.nvdbapi.client.gson.GsonUtil.parseLongMember;
 import static no.vegvesen.nvdbapi.client.gson.GsonUtil.parseStringMember;
 
 public final class AreaParser {
+    private static final JsonPath VEGOBJEKT_ID = JsonPath.of("vegobjekt.id");
+    private static final JsonPath VEGOBJEKT_TYPE = JsonPath.of("vegobjekt.type");
 
     private AreaParser() {}
 
@@ -94,11 +102,96 @@ public final class AreaParser {
         return new ContractArea(parseId(obj), number, name, type);
     }
 
+    public static Route parseRoute(JsonReader reader) throws IOException {
+        String name = null, number = null, description = null, period = null;
+        RoadObjectId id = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String member = reader.nextName();
+            switch (member) {
+                case "navn":
+                    name = nextString(reader, member);
+                    break;
+                case "nummer":
+                    number = nextString(reader, member);
+                    break;
+                case "beskrivelse":
+                    description = nextString(reader, member);
+                    break;
+                case "periode":
+                    period = nextString(reader, member);
+                    break;
+                case "vegobjekt":
+                    id = parseId(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new Route(id, number, name, description, period);
+    }
+
+    public static ContractArea parseContractArea(JsonReader reader) throws IOException {
+        String name = null, type = null;
+        Integer number = null;
+        RoadObjectId id = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String member = reader.nextName();
+            switch (member) {
+                case "navn":
+                    name = nextString(reader, member);
+                    break;
+                case "nummer":
+                    number = nextInt(reader, member);
+                    break;
+                case "type":
+                    type = nextString(reader, member);
+                    break;
+                case "vegobjekt":
+                    id = parseId(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new ContractArea(id, number, name, type);
+    }
+
+    private static RoadObjectId parseId(JsonReader reader) throws IOException {
+        Long fid = null;
+        Integer tid = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String member = reader.nextName();
+            switch (member) {
+                case "id":
+                    fid = nextLong(reader, "vegobjekt.id");
+                    break;
+                case "type":
+                    tid = nextInt(reader, "vegobjekt.type");
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new RoadObjectId(tid, fid);
+    }
+
     private static RoadObjectId parseId(JsonObject obj) {
         RoadObjectId id = null;
         if (obj.has("vegobjekt")) {
-            long fid = parseLongMember(obj, "vegobjekt.id");
-            int tid = parseIntMember(obj, "vegobjekt.type");
+            long fid = parseLongMember(obj, VEGOBJEKT_ID);
+            int tid = parseIntMember(obj, VEGOBJEKT_TYPE);
             id = new RoadObjectId(tid, fid);
         }
         return id;
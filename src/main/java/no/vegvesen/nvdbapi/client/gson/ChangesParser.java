@@ -27,10 +27,13 @@ package no.vegvesen.nvdbapi.client.gson;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import no.vegvesen.nvdbapi.client.model.Change;
 import no.vegvesen.nvdbapi.client.model.datakatalog.DataType;
 import no.vegvesen.nvdbapi.client.model.roadobjects.RoadObject;
 
+import java.io.IOException;
 import java.util.Map;
 
 import static no.vegvesen.nvdbapi.client.gson.GsonUtil.*;
@@ -55,4 +58,33 @@ public class ChangesParser {
 
         return new Change(typeId, featureId, type, roadObject);
     }
+
+    public static Change parse(Map<Integer, DataType> dataTypes, JsonReader reader, int typeId) throws IOException {
+        Change.Type type = null;
+        Long featureId = null;
+        RoadObject roadObject = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "type":
+                    type = Change.Type.from(nextString(reader, name));
+                    break;
+                case "vegobjekt":
+                    if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        roadObject = RoadObjectParser.parse(dataTypes, reader);
+                        featureId = roadObject.getId();
+                    } else {
+                        featureId = nextLong(reader, name);
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new Change(typeId, featureId, type, roadObject);
+    }
 }
@@ -27,10 +27,12 @@ package no.vegvesen.nvdbapi.client.gson;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 import no.vegvesen.nvdbapi.client.model.Geometry;
 import no.vegvesen.nvdbapi.client.model.Projection;
 import no.vegvesen.nvdbapi.client.model.Quality;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.Optional;
 
@@ -57,6 +59,52 @@ public final class GeometryParser {
         return new Geometry(wkt, srid, quality, isSimplified, isOwnGeometry);
     }
 
+    public static Geometry parse(JsonReader reader) throws IOException {
+        return parse(reader, false);
+    }
+
+    /**
+     * @param skip if {@code true}, the geometry is passed over without reading the WKT, and {@code null} is returned
+     */
+    public static Geometry parse(JsonReader reader, boolean skip) throws IOException {
+        if (skip) {
+            reader.skipValue();
+            return null;
+        }
+        if (nextNullIfPresent(reader)) return null;
+
+        String wkt = null;
+        Projection srid = null;
+        boolean isSimplified = false, isOwnGeometry = false;
+        Quality quality = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "wkt":
+                    wkt = nextString(reader, "wkt");
+                    break;
+                case "srid":
+                    srid = Optional.ofNullable(nextInt(reader, "srid")).flatMap(Projection::of).orElse(null);
+                    break;
+                case "forenklet":
+                    isSimplified = Optional.ofNullable(nextBoolean(reader, "forenklet")).orElse(false);
+                    break;
+                case "egengeometri":
+                    isOwnGeometry = Optional.ofNullable(nextBoolean(reader, "egengeometri")).orElse(false);
+                    break;
+                case "kvalitet":
+                    quality = parseQuality(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new Geometry(wkt, srid, quality, isSimplified, isOwnGeometry);
+    }
+
     public static Quality parseQuality(JsonObject qualityObj) {
         Integer method = parseIntMember(qualityObj, "målemetode");
         Integer accuracy = parseIntMember(qualityObj, "nøyaktighet");
@@ -70,6 +118,46 @@ public final class GeometryParser {
         return quality;
     }
 
+    public static Quality parseQuality(JsonReader reader) throws IOException {
+        if (nextNullIfPresent(reader)) return null;
+
+        Integer method = null, accuracy = null, heightMethod = null, heightAccuracy = null, tolerance = null, visibility = null;
+        LocalDate verifiedDate = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "målemetode":
+                    method = nextInt(reader, name);
+                    break;
+                case "nøyaktighet":
+                    accuracy = nextInt(reader, name);
+                    break;
+                case "målemetodeHøyde":
+                    heightMethod = nextInt(reader, name);
+                    break;
+                case "nøyaktighetHøyde":
+                    heightAccuracy = nextInt(reader, name);
+                    break;
+                case "toleranse":
+                    tolerance = nextInt(reader, name);
+                    break;
+                case "synbarhet":
+                    visibility = nextInt(reader, name);
+                    break;
+                case "datafangstdato":
+                    verifiedDate = nextDate(reader, name);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new Quality(method, accuracy, heightMethod, heightAccuracy, tolerance, visibility, verifiedDate);
+    }
+
     static Projection parseProjection(JsonElement e) {
         return Projection.of(e.getAsInt()).orElse(null);
     }
@@ -29,25 +29,33 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import no.vegvesen.nvdbapi.client.model.Quality;
 import no.vegvesen.nvdbapi.client.model.datakatalog.JavaType;
 import no.vegvesen.nvdbapi.client.util.Strings;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.Month;
+import java.time.Year;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public final class GsonUtil {
 
     private static final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm:ss");
     private static final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String DATE_PATTERN = "yyyy-MM-dd";
+    private static final ConcurrentMap<String, DateTimeFormatter> formatters = new ConcurrentHashMap<>();
 
     private GsonUtil() {
     }
@@ -61,96 +69,236 @@ public final class GsonUtil {
     }
 
     public static Double parseDoubleMember(JsonObject obj, String path) {
-        return getNode(obj, path).map(JsonElement::getAsDouble).orElse(null);
+        return parseDoubleMember(obj, JsonPath.of(path));
+    }
+
+    public static Double parseDoubleMember(JsonObject obj, JsonPath path) {
+        JsonElement e = path.find(obj);
+        return e == null ? null : e.getAsDouble();
     }
 
     public static Integer parseIntMember(JsonObject obj, String path) {
-        Optional<JsonPrimitive> e = getNode(obj, path).map(JsonElement::getAsJsonPrimitive);
-        if (e.isPresent() && !e.get().isNumber()) {
+        return parseIntMember(obj, JsonPath.of(path));
+    }
+
+    public static Integer parseIntMember(JsonObject obj, JsonPath path) {
+        JsonPrimitive e = findPrimitive(obj, path);
+        if (e == null) {
+            return null;
+        }
+        if (!e.isNumber()) {
             throw new IllegalArgumentException(path + " did not contain a number.");
         }
-        return e.map(JsonElement::getAsInt).orElse(null);
+        return e.getAsInt();
     }
 
     public static Long parseLongMember(JsonObject obj, String path) {
-        Optional<JsonPrimitive> e = getNode(obj, path).map(JsonElement::getAsJsonPrimitive);
-        if (e.isPresent() && !e.get().isNumber()) {
+        return parseLongMember(obj, JsonPath.of(path));
+    }
+
+    public static Long parseLongMember(JsonObject obj, JsonPath path) {
+        JsonPrimitive e = findPrimitive(obj, path);
+        if (e == null) {
+            return null;
+        }
+        if (!e.isNumber()) {
             throw new IllegalArgumentException(path + " did not contain a number.");
         }
-        return e.map(JsonElement::getAsLong).orElse(null);
+        return e.getAsLong();
     }
 
     public static String parseStringMember(JsonObject obj, String path) {
-        Optional<JsonPrimitive> e = getNode(obj, path).map(JsonElement::getAsJsonPrimitive);
-        if (e.isPresent() && !e.get().isString()) {
+        return parseStringMember(obj, JsonPath.of(path));
+    }
+
+    public static String parseStringMember(JsonObject obj, JsonPath path) {
+        JsonPrimitive e = findPrimitive(obj, path);
+        if (e == null) {
+            return null;
+        }
+        if (!e.isString()) {
             throw new IllegalArgumentException(path + " did not contain a string.");
         }
-        return e.map(JsonElement::getAsString).orElse(null);
+        return e.getAsString();
     }
 
     public static Boolean parseBooleanMember(JsonObject obj, String path) {
-        Optional<JsonPrimitive> e = getNode(obj, path).map(JsonElement::getAsJsonPrimitive);
-        if (e.isPresent() && !e.get().isBoolean()) {
+        return parseBooleanMember(obj, JsonPath.of(path));
+    }
+
+    public static Boolean parseBooleanMember(JsonObject obj, JsonPath path) {
+        JsonPrimitive e = findPrimitive(obj, path);
+        if (e == null) {
+            return null;
+        }
+        if (!e.isBoolean()) {
             throw new IllegalArgumentException(path + " did not contain a boolean.");
         }
-        return e.map(JsonElement::getAsBoolean).orElse(null);
+        return e.getAsBoolean();
     }
 
     public static LocalDateTime parseDateTimeMember(JsonObject obj, String path) {
-        return Optional.ofNullable(parseStringMember(obj, path))
-                .map(v -> v.contains("T") ? LocalDateTime.parse(v) : dateTimeFormatter.parse(v, LocalDateTime::from))
-                .orElse(null);
+        return parseDateTimeMember(obj, JsonPath.of(path));
+    }
+
+    public static LocalDateTime parseDateTimeMember(JsonObject obj, JsonPath path) {
+        String value = parseStringMember(obj, path);
+        return value == null ? null : toDateTime(value);
     }
 
     public static LocalDate parseDateMember(JsonObject obj, String path) {
-        return parseDateMember(obj, path, "yyyy-MM-dd");
+        return parseDateMember(obj, path, DATE_PATTERN);
+    }
+
+    public static LocalDate parseDateMember(JsonObject obj, JsonPath path) {
+        return parseDateMember(obj, path, DATE_PATTERN);
     }
 
     public static LocalTime parseTimeMember(JsonObject obj, String path) {
-        return Optional.ofNullable(parseStringMember(obj, path))
-                .map(v -> LocalTime.parse(v, timeFormatter)).orElse(null);
+        return parseTimeMember(obj, JsonPath.of(path));
+    }
+
+    public static LocalTime parseTimeMember(JsonObject obj, JsonPath path) {
+        String value = parseStringMember(obj, path);
+        return value == null ? null : LocalTime.parse(value, timeFormatter);
     }
 
     public static LocalDate parseDateMember(JsonObject obj, String path, String pattern) {
-        return Optional.ofNullable(parseStringMember(obj, path))
-                .map(s -> LocalDate.parse(s, DateTimeFormatter.ofPattern(pattern)))
-                .orElse(null);
+        return parseDateMember(obj, JsonPath.of(path), pattern);
+    }
+
+    public static LocalDate parseDateMember(JsonObject obj, JsonPath path, String pattern) {
+        String value = parseStringMember(obj, path);
+        return value == null ? null : toDate(value, pattern);
+    }
+
+    static LocalDate toDate(String value, String pattern) {
+        if (DATE_PATTERN.equals(pattern)) {
+            LocalDate date = parseIsoDate(value);
+            if (date != null) {
+                return date;
+            }
+        }
+        return LocalDate.parse(value, formatter(pattern));
+    }
+
+    static LocalDateTime toDateTime(String value) {
+        LocalDateTime dateTime = parseIsoDateTime(value);
+        if (dateTime != null) {
+            return dateTime;
+        }
+        return value.contains("T") ? LocalDateTime.parse(value) : dateTimeFormatter.parse(value, LocalDateTime::from);
+    }
+
+    private static DateTimeFormatter formatter(String pattern) {
+        return formatters.computeIfAbsent(pattern, DateTimeFormatter::ofPattern);
+    }
+
+    /*
+     * Fast paths for the fixed layouts the API returns, yyyy-MM-dd and yyyy-MM-dd HH:mm:ss (or with a T).
+     * They return null for anything else, including dates the formatters would adjust, so that the
+     * formatters still decide how unusual input is handled.
+     */
+
+    private static LocalDate parseIsoDate(String value) {
+        if (value.length() != 10) {
+            return null;
+        }
+        return parseDate(value);
+    }
+
+    private static LocalDateTime parseIsoDateTime(String value) {
+        if (value.length() != 19) {
+            return null;
+        }
+        char separator = value.charAt(10);
+        if ((separator != ' ' && separator != 'T') || value.charAt(13) != ':' || value.charAt(16) != ':') {
+            return null;
+        }
+        LocalDate date = parseDate(value);
+        int hour = digits(value, 11, 13), minute = digits(value, 14, 16), second = digits(value, 17, 19);
+        if (date == null || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+        return LocalDateTime.of(date.getYear(), date.getMonthValue(), date.getDayOfMonth(), hour, minute, second);
+    }
+
+    private static LocalDate parseDate(String value) {
+        if (value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return null;
+        }
+        int year = digits(value, 0, 4), month = digits(value, 5, 7), day = digits(value, 8, 10);
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year))) {
+            return null;
+        }
+        return LocalDate.of(year, month, day);
+    }
+
+    private static int digits(String value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
     }
 
     public static List<Integer> parseIntListMember(JsonObject obj, String path) {
-        return getNode(obj, path)
-                .map(JsonElement::getAsJsonArray)
-                .map(a -> StreamSupport.stream(a.spliterator(), false)
-                        .map(JsonElement::getAsInt)
-                        .collect(Collectors.toList()))
-                .orElse(Collections.emptyList());
+        return parseIntListMember(obj, JsonPath.of(path));
+    }
 
+    public static List<Integer> parseIntListMember(JsonObject obj, JsonPath path) {
+        JsonElement e = path.find(obj);
+        if (e == null) {
+            return Collections.emptyList();
+        }
+        JsonArray array = e.getAsJsonArray();
+        List<Integer> values = new ArrayList<>(array.size());
+        for (JsonElement v : array) {
+            values.add(v.getAsInt());
+        }
+        return values;
     }
 
     public static List<Long> parseLongListMember(JsonObject obj, String path) {
-        return getNode(obj, path)
-                .map(JsonElement::getAsJsonArray)
-                .map(a -> StreamSupport.stream(a.spliterator(), false)
-                        .map(JsonElement::getAsLong)
-                        .collect(Collectors.toList()))
-                .orElse(null);
+        return parseLongListMember(obj, JsonPath.of(path));
+    }
 
+    public static List<Long> parseLongListMember(JsonObject obj, JsonPath path) {
+        JsonElement e = path.find(obj);
+        if (e == null) {
+            return null;
+        }
+        JsonArray array = e.getAsJsonArray();
+        List<Long> values = new ArrayList<>(array.size());
+        for (JsonElement v : array) {
+            values.add(v.getAsLong());
+        }
+        return values;
     }
 
     public static Quality parseQualityMember(JsonObject obj, String path) {
-        return getNode(obj, path)
-                .map(JsonElement::getAsJsonObject)
-                .map(GeometryParser::parseQuality)
-                .orElse(null);
+        return parseQualityMember(obj, JsonPath.of(path));
+    }
+
+    public static Quality parseQualityMember(JsonObject obj, JsonPath path) {
+        JsonElement e = path.find(obj);
+        return e == null ? null : GeometryParser.parseQuality(e.getAsJsonObject());
     }
 
     public static Object parseAttributeValue(JsonObject obj, String path, JavaType datatype) {
-        Optional<JsonElement> node = getNode(obj, path);
-        if (!node.isPresent()) {
+        return parseAttributeValue(obj, JsonPath.of(path), datatype);
+    }
+
+    public static Object parseAttributeValue(JsonObject obj, JsonPath path, JavaType datatype) {
+        JsonElement e = path.find(obj);
+        if (e == null) {
             return null;
         }
 
-        JsonElement e = node.get();
         if (!e.isJsonPrimitive()) {
             throw new RuntimeException(path + "is not a value node.");
         }
@@ -166,27 +314,124 @@ public final class GsonUtil {
     }
 
     public static Optional<JsonElement> getNode(JsonObject start, String path) {
-        Optional<JsonElement> temp = Optional.ofNullable(start);
+        return getNode(start, JsonPath.of(path));
+    }
 
-        List<String> elements = Arrays.asList(path.split("\\."));
-        for (String p : elements) {
-            if (!temp.isPresent()) {
-                return temp;
-            }
+    public static Optional<JsonElement> getNode(JsonObject start, JsonPath path) {
+        return Optional.ofNullable(path.find(start));
+    }
 
-            if (!temp.get().isJsonObject()) {
-                throw new RuntimeException("Node " + p + "is not an object!");
-            }
+    public static Optional<JsonArray> getArray(JsonObject node, String path) {
+        return getArray(node, JsonPath.of(path));
+    }
+
+    public static Optional<JsonArray> getArray(JsonObject node, JsonPath path) {
+        return getNode(node, path).map(JsonElement::getAsJsonArray);
+    }
+
+    private static JsonPrimitive findPrimitive(JsonObject obj, JsonPath path) {
+        JsonElement e = path.find(obj);
+        return e == null ? null : e.getAsJsonPrimitive();
+    }
+
+    /*
+     * Helpers for parsing straight from a JsonReader. They mirror the semantics of the
+     * parseXxxMember methods: JSON null yields null and a value of the wrong type is rejected.
+     */
+
+    public static Integer nextInt(JsonReader reader, String name) throws IOException {
+        String number = nextNumber(reader, name);
+        return number == null ? null : new LazilyParsedNumber(number).intValue();
+    }
+
+    public static Long nextLong(JsonReader reader, String name) throws IOException {
+        String number = nextNumber(reader, name);
+        return number == null ? null : new LazilyParsedNumber(number).longValue();
+    }
 
+    public static Double nextDouble(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return Double.parseDouble(reader.nextString());
+    }
 
-            temp = temp.map(JsonElement::getAsJsonObject)
-                       .map(o -> o.get(p))
-                       .filter(o -> !o.isJsonNull());
+    public static String nextString(JsonReader reader, String name) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
         }
-        return temp;
+        if (token != JsonToken.STRING) {
+            throw new IllegalArgumentException(name + " did not contain a string.");
+        }
+        return reader.nextString();
     }
 
-    public static Optional<JsonArray> getArray(JsonObject node, String path) {
-        return getNode(node, path).map(JsonElement::getAsJsonArray);
+    public static Boolean nextBoolean(JsonReader reader, String name) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        if (token != JsonToken.BOOLEAN) {
+            throw new IllegalArgumentException(name + " did not contain a boolean.");
+        }
+        return reader.nextBoolean();
+    }
+
+    public static LocalDate nextDate(JsonReader reader, String name) throws IOException {
+        return Optional.ofNullable(nextString(reader, name)).map(s -> toDate(s, DATE_PATTERN)).orElse(null);
+    }
+
+    public static LocalDateTime nextDateTime(JsonReader reader, String name) throws IOException {
+        return Optional.ofNullable(nextString(reader, name)).map(GsonUtil::toDateTime).orElse(null);
+    }
+
+    public static List<Integer> nextIntList(JsonReader reader) throws IOException {
+        return nextList(reader, r -> new LazilyParsedNumber(r.nextString()).intValue());
+    }
+
+    /**
+     * Reads an array with the given element parser. JSON null yields an empty list.
+     */
+    public static <T> List<T> nextList(JsonReader reader, JsonReaderParser<T> elementParser) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return Collections.emptyList();
+        }
+        List<T> list = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            list.add(elementParser.parse(reader));
+        }
+        reader.endArray();
+        return list;
+    }
+
+    /**
+     * Consumes a JSON null if that is the next token.
+     *
+     * @return {@code true} if a null was consumed
+     */
+    public static boolean nextNullIfPresent(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    private static String nextNumber(JsonReader reader, String name) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        if (token != JsonToken.NUMBER) {
+            throw new IllegalArgumentException(name + " did not contain a number.");
+        }
+        return reader.nextString();
     }
 }
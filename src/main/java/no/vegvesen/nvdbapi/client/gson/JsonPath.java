@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.gson;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A dotted member path, e.g. {@code metadata.type.id}, split once so it can be kept in a constant
+ * and looked up repeatedly without parsing the path again.
+ */
+public final class JsonPath {
+    private final String path;
+    private final String[] members;
+
+    private JsonPath(String path, String[] members) {
+        this.path = path;
+        this.members = members;
+    }
+
+    public static JsonPath of(String path) {
+        Objects.requireNonNull(path, "Missing path argument!");
+        if (path.indexOf('.') < 0) {
+            return new JsonPath(path, new String[] { path });
+        }
+
+        List<String> members = new ArrayList<>();
+        int start = 0, end;
+        while ((end = path.indexOf('.', start)) >= 0) {
+            members.add(path.substring(start, end));
+            start = end + 1;
+        }
+        members.add(path.substring(start));
+        return new JsonPath(path, members.toArray(new String[0]));
+    }
+
+    /**
+     * @return the element at this path, or {@code null} if any member along the path is missing or JSON null
+     */
+    public JsonElement find(JsonObject start) {
+        JsonElement current = start;
+        for (String member : members) {
+            if (current == null) {
+                return null;
+            }
+            if (!current.isJsonObject()) {
+                throw new RuntimeException("Node " + member + "is not an object!");
+            }
+            current = current.getAsJsonObject().get(member);
+            if (current != null && current.isJsonNull()) {
+                current = null;
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return path.equals(((JsonPath) o).path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
@@ -26,6 +26,7 @@
 package no.vegvesen.nvdbapi.client.gson;
 
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 import no.vegvesen.nvdbapi.client.model.Geometry;
 import no.vegvesen.nvdbapi.client.model.roadnet.Link;
 import no.vegvesen.nvdbapi.client.model.roadnet.Ltema;
@@ -33,19 +34,22 @@ import no.vegvesen.nvdbapi.client.model.roadnet.SosiMedium;
 import no.vegvesen.nvdbapi.client.model.roadnet.TopologyLevel;
 import no.vegvesen.nvdbapi.client.model.roadobjects.RoadRef;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.Optional;
 
 import static no.vegvesen.nvdbapi.client.gson.GsonUtil.*;
 
 public final class LinkParser {
+    private static final JsonPath METADATA_STARTDATO = JsonPath.of("metadata.startdato");
+    private static final JsonPath METADATA_SLUTTDATO = JsonPath.of("metadata.sluttdato");
 
     private LinkParser() {
     }
 
     public static Link parse(JsonObject obj) {
         // Metadata
-        LocalDate fromDate = parseDateMember(obj, "metadata.startdato"), toDate = parseDateMember(obj, "metadata.sluttdato");
+        LocalDate fromDate = parseDateMember(obj, METADATA_STARTDATO), toDate = parseDateMember(obj, METADATA_SLUTTDATO);
 
         long id = parseLongMember(obj, "veglenkeid");
         Double start = parseDoubleMember(obj, "startposisjon"), end = parseDoubleMember(obj, "sluttposisjon");
@@ -82,4 +86,102 @@ public final class LinkParser {
         return new Link(id, superLinkId, start, end, startNode, endNode, fromDate, toDate, medium, ltema, level, region, county, municipality, roadDepartment, geo, roadRef, isConnectionLink);
     }
 
+    public static Link parse(JsonReader reader) throws IOException {
+        return parse(reader, false);
+    }
+
+    /**
+     * @param skipGeometry if {@code true}, the geometry of the link is skipped without being read, and left {@code null}
+     */
+    public static Link parse(JsonReader reader, boolean skipGeometry) throws IOException {
+        LocalDate fromDate = null, toDate = null;
+        Long id = null, superLinkId = null;
+        Double start = null, end = null;
+        String startNode = null, endNode = null, medium = null;
+        Boolean isConnectionLink = null;
+        Integer ltema = null, level = null;
+        Integer municipality = null, region = null, county = null, roadDepartment = null;
+        Geometry geo = null;
+        RoadRef roadRef = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "metadata":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "startdato":
+                                fromDate = nextDate(reader, "metadata.startdato");
+                                break;
+                            case "sluttdato":
+                                toDate = nextDate(reader, "metadata.sluttdato");
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                case "veglenkeid":
+                    id = nextLong(reader, name);
+                    break;
+                case "startposisjon":
+                    start = nextDouble(reader);
+                    break;
+                case "sluttposisjon":
+                    end = nextDouble(reader);
+                    break;
+                case "startnode":
+                    startNode = nextString(reader, name);
+                    break;
+                case "sluttnode":
+                    endNode = nextString(reader, name);
+                    break;
+                case "konnekteringslenke":
+                    isConnectionLink = nextBoolean(reader, name);
+                    break;
+                case "medium":
+                    medium = nextString(reader, name);
+                    break;
+                case "temakode":
+                    ltema = nextInt(reader, name);
+                    break;
+                case "topologinivå":
+                    level = nextInt(reader, name);
+                    break;
+                case "kommune":
+                    municipality = nextInt(reader, name);
+                    break;
+                case "region":
+                    region = nextInt(reader, name);
+                    break;
+                case "fylke":
+                    county = nextInt(reader, name);
+                    break;
+                case "vegavdeling":
+                    roadDepartment = nextInt(reader, name);
+                    break;
+                case "geometri":
+                    geo = GeometryParser.parse(reader, skipGeometry);
+                    break;
+                case "vegreferanse":
+                    roadRef = RoadRefParser.parse(reader);
+                    break;
+                case "foreldrelenkeid":
+                    superLinkId = nextLong(reader, name);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new Link(id, superLinkId, start, end, startNode, endNode, fromDate, toDate,
+                Optional.ofNullable(medium).map(SosiMedium::from).orElse(null),
+                Optional.ofNullable(ltema).map(Ltema::from).orElse(null),
+                Optional.ofNullable(level).map(TopologyLevel::from).orElse(null),
+                region, county, municipality, roadDepartment, geo, roadRef, isConnectionLink);
+    }
 }
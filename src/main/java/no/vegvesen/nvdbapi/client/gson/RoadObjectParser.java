@@ -28,6 +28,9 @@ package no.vegvesen.nvdbapi.client.gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import no.vegvesen.nvdbapi.client.model.Direction;
 import no.vegvesen.nvdbapi.client.model.Geometry;
 import no.vegvesen.nvdbapi.client.model.Quality;
@@ -36,7 +39,9 @@ import no.vegvesen.nvdbapi.client.model.areas.ContractArea;
 import no.vegvesen.nvdbapi.client.model.areas.Route;
 import no.vegvesen.nvdbapi.client.model.roadobjects.*;
 import no.vegvesen.nvdbapi.client.model.datakatalog.DataType;
+import no.vegvesen.nvdbapi.client.model.datakatalog.JavaType;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -46,16 +51,55 @@ import java.util.stream.StreamSupport;
 import static no.vegvesen.nvdbapi.client.gson.GsonUtil.*;
 
 public final class RoadObjectParser {
+    private static final JsonPath ID = JsonPath.of("id");
+    private static final JsonPath METADATA_TYPE_ID = JsonPath.of("metadata.type.id");
+    private static final JsonPath METADATA_VERSJON = JsonPath.of("metadata.versjon");
+    private static final JsonPath METADATA_STARTDATO = JsonPath.of("metadata.startdato");
+    private static final JsonPath METADATA_SLUTTDATO = JsonPath.of("metadata.sluttdato");
+    private static final JsonPath METADATA_SIST_MODIFISERT = JsonPath.of("metadata.sist_modifisert");
+    private static final JsonPath RELASJONER_BARN = JsonPath.of("relasjoner.barn");
+    private static final JsonPath RELASJONER_FORELDRE = JsonPath.of("relasjoner.foreldre");
+    private static final JsonPath KOMMUNER = JsonPath.of("kommuner");
+    private static final JsonPath FYLKER = JsonPath.of("fylker");
+    private static final JsonPath REGIONER = JsonPath.of("regioner");
+    private static final JsonPath VEGAVDELINGER = JsonPath.of("vegavdelinger");
+    private static final JsonPath STEDFESTINGER = JsonPath.of("stedfestinger");
+    private static final JsonPath STREKNINGSLENGDE = JsonPath.of("strekningslengde");
+    private static final JsonPath KOMMUNE = JsonPath.of("kommune");
+    private static final JsonPath FYLKE = JsonPath.of("fylke");
+    private static final JsonPath REGION = JsonPath.of("region");
+    private static final JsonPath VEGAVDELING = JsonPath.of("vegavdeling");
+    private static final JsonPath VEGLENKEID = JsonPath.of("veglenkeid");
+    private static final JsonPath POSISJON = JsonPath.of("posisjon");
+    private static final JsonPath FRA_POSISJON = JsonPath.of("fra_posisjon");
+    private static final JsonPath TIL_POSISJON = JsonPath.of("til_posisjon");
+    private static final JsonPath RETNING = JsonPath.of("retning");
+    private static final JsonPath SIDEPOSISJON = JsonPath.of("sideposisjon");
+    private static final JsonPath FELT = JsonPath.of("felt");
+    private static final JsonPath KATEGORI = JsonPath.of("kategori");
+    private static final JsonPath STATUS = JsonPath.of("status");
+    private static final JsonPath NUMMER = JsonPath.of("nummer");
+    private static final JsonPath HP = JsonPath.of("hp");
+    private static final JsonPath FRA_HP = JsonPath.of("fra_hp");
+    private static final JsonPath TIL_HP = JsonPath.of("til_hp");
+    private static final JsonPath NAVN = JsonPath.of("navn");
+    private static final JsonPath ENUM_ID = JsonPath.of("enum_id");
+    private static final JsonPath DATATYPE = JsonPath.of("datatype");
+    private static final JsonPath VERDI = JsonPath.of("verdi");
+    private static final JsonPath KVALITET = JsonPath.of("kvalitet");
+    private static final JsonPath TYPE_ID = JsonPath.of("type.id");
+    private static final JsonPath ANTALL = JsonPath.of("antall");
+
     private RoadObjectParser() {
     }
 
     public static RoadObject parse(Map<Integer, DataType> dataTypes, JsonObject obj) {
-        Integer id = parseIntMember(obj, "id");
+        Integer id = parseIntMember(obj, ID);
 
-        Integer typeId = parseIntMember(obj, "metadata.type.id");
-        Integer version = parseIntMember(obj, "metadata.versjon");
-        LocalDate startDate = parseDateMember(obj, "metadata.startdato"), endDate = parseDateMember(obj, "metadata.sluttdato");
-        LocalDateTime lastModified = parseDateTimeMember(obj, "metadata.sist_modifisert");
+        Integer typeId = parseIntMember(obj, METADATA_TYPE_ID);
+        Integer version = parseIntMember(obj, METADATA_VERSJON);
+        LocalDate startDate = parseDateMember(obj, METADATA_STARTDATO), endDate = parseDateMember(obj, METADATA_SLUTTDATO);
+        LocalDateTime lastModified = parseDateTimeMember(obj, METADATA_SIST_MODIFISERT);
 
         List<Attribute> attributes = Collections.emptyList();
         JsonArray egenskaper = obj.getAsJsonArray("egenskaper");
@@ -64,13 +108,13 @@ public final class RoadObjectParser {
         }
 
         List<Association> childrenList = Collections.emptyList();
-        JsonArray children = getArray(obj, "relasjoner.barn").orElse(null);
+        JsonArray children = getArray(obj, RELASJONER_BARN).orElse(null);
         if (children != null) {
             childrenList = StreamSupport.stream(children.spliterator(), false).map(e -> parseAssociation(dataTypes, e.getAsJsonObject())).collect(Collectors.toList());
         }
 
         List<Association> parentList = Collections.emptyList();
-        JsonArray parents = getArray(obj, "relasjoner.foreldre").orElse(null);
+        JsonArray parents = getArray(obj, RELASJONER_FORELDRE).orElse(null);
         if (parents != null) {
             parentList = StreamSupport.stream(parents.spliterator(), false).map(e -> parseAssociation(dataTypes, e.getAsJsonObject())).collect(Collectors.toList());
         }
@@ -101,10 +145,10 @@ public final class RoadObjectParser {
 
     private static Location parseLocation(JsonObject obj) {
 
-        List<Integer> municipalities = parseIntListMember(obj, "kommuner");
-        List<Integer> counties = parseIntListMember(obj, "fylker");
-        List<Integer> regions  = parseIntListMember(obj, "regioner");
-        List<Integer> departments = parseIntListMember(obj, "vegavdelinger");
+        List<Integer> municipalities = parseIntListMember(obj, KOMMUNER);
+        List<Integer> counties = parseIntListMember(obj, FYLKER);
+        List<Integer> regions  = parseIntListMember(obj, REGIONER);
+        List<Integer> departments = parseIntListMember(obj, VEGAVDELINGER);
         List<ContractArea> contractAreas = Collections.emptyList();
         if (obj.has("kontraktsområder")) {
             contractAreas = StreamSupport.stream(obj.getAsJsonArray("kontraktsområder").spliterator(), false)
@@ -128,7 +172,7 @@ public final class RoadObjectParser {
         }
 
         List<Placement> placements = Collections.emptyList();
-        JsonArray placementsArray = getArray(obj, "stedfestinger").orElse(null);
+        JsonArray placementsArray = getArray(obj, STEDFESTINGER).orElse(null);
         if (placementsArray != null) {
             placements = StreamSupport.stream(placementsArray.spliterator(), false)
                     .map(JsonElement::getAsJsonObject)
@@ -136,7 +180,7 @@ public final class RoadObjectParser {
                     .collect(Collectors.toList());
         }
 
-        Double length = parseDoubleMember(obj, "strekningslengde");
+        Double length = parseDoubleMember(obj, STREKNINGSLENGDE);
 
         return new Location(municipalities, counties, regions,
                 departments, length, placements, roadRefs,
@@ -144,10 +188,10 @@ public final class RoadObjectParser {
     }
 
     private static SegmentationFilter parseSegmentFilter(JsonObject object) {
-        List<Integer> municipalities = Optional.ofNullable(parseIntListMember(object, "kommuner")).orElse(Collections.emptyList());
-        List<Integer> counties = Optional.ofNullable(parseIntListMember(object, "fylker")).orElse(Collections.emptyList());
-        List<Integer> regions = Optional.ofNullable(parseIntListMember(object, "regioner")).orElse(Collections.emptyList());
-        List<Integer> roadDepartments = Optional.ofNullable(parseIntListMember(object, "vegavdelinger")).orElse(Collections.emptyList());
+        List<Integer> municipalities = Optional.ofNullable(parseIntListMember(object, KOMMUNER)).orElse(Collections.emptyList());
+        List<Integer> counties = Optional.ofNullable(parseIntListMember(object, FYLKER)).orElse(Collections.emptyList());
+        List<Integer> regions = Optional.ofNullable(parseIntListMember(object, REGIONER)).orElse(Collections.emptyList());
+        List<Integer> roadDepartments = Optional.ofNullable(parseIntListMember(object, VEGAVDELINGER)).orElse(Collections.emptyList());
         List<RoadRefFilter> roadRefFilters = Optional.ofNullable(parseRoadRefFilter(object)).orElse(Collections.emptyList());
 
         return new SegmentationFilter(municipalities, counties,
@@ -159,35 +203,35 @@ public final class RoadObjectParser {
 
         Geometry geo = GeometryParser.parse(obj.getAsJsonObject("geometri"));
 
-        Integer municipality = parseIntMember(obj, "kommune");
-        Integer county = parseIntMember(obj, "fylke");
-        Integer region  = parseIntMember(obj, "region");
-        Integer department = parseIntMember(obj, "vegavdeling");
+        Integer municipality = parseIntMember(obj, KOMMUNE);
+        Integer county = parseIntMember(obj, FYLKE);
+        Integer region  = parseIntMember(obj, REGION);
+        Integer department = parseIntMember(obj, VEGAVDELING);
 
         RoadRef ref = null;
         if (obj.has("vegreferanse")) {
             ref = RoadRefParser.parse(obj.get("vegreferanse").getAsJsonObject());
         }
 
-        Integer length = parseIntMember(obj, "strekningslengde");
+        Integer length = parseIntMember(obj, STREKNINGSLENGDE);
 
         return new Segment(geo, municipality, county, region, department, placement, ref, length);
     }
 
     private static Placement parsePlacement(JsonObject obj) {
-        int netElementId = parseIntMember(obj, "veglenkeid");
+        int netElementId = parseIntMember(obj, VEGLENKEID);
 
         double startPos, endPos;
         if (obj.has("posisjon")) {
-            startPos = endPos = parseDoubleMember(obj, "posisjon");
+            startPos = endPos = parseDoubleMember(obj, POSISJON);
         } else {
-            startPos = parseDoubleMember(obj, "fra_posisjon");
-            endPos = parseDoubleMember(obj, "til_posisjon");
+            startPos = parseDoubleMember(obj, FRA_POSISJON);
+            endPos = parseDoubleMember(obj, TIL_POSISJON);
         }
 
-        Direction dir = Optional.of(parseStringMember(obj, "retning")).map(Direction::from).orElse(null);
-        SidePosition sidePos = Optional.ofNullable(parseStringMember(obj, "sideposisjon")).map(SidePosition::from).orElse(null);
-        String lane = parseStringMember(obj, "felt");
+        Direction dir = Optional.of(parseStringMember(obj, RETNING)).map(Direction::from).orElse(null);
+        SidePosition sidePos = Optional.ofNullable(parseStringMember(obj, SIDEPOSISJON)).map(SidePosition::from).orElse(null);
+        String lane = parseStringMember(obj, FELT);
         return new Placement(netElementId, startPos, endPos, dir, sidePos, lane);
     }
 
@@ -200,17 +244,17 @@ public final class RoadObjectParser {
 
         return StreamSupport.stream(a.spliterator(), false).map(JsonElement::getAsJsonObject)
                 .map(o -> {
-                    Integer c = parseIntMember(o, "fylke");
-                    Integer m = parseIntMember(o, "kommune");
-                    String cat = parseStringMember(o, "kategori");
-                    String stat = parseStringMember(o, "status");
-                    Integer n = parseIntMember(o, "nummer");
+                    Integer c = parseIntMember(o, FYLKE);
+                    Integer m = parseIntMember(o, KOMMUNE);
+                    String cat = parseStringMember(o, KATEGORI);
+                    String stat = parseStringMember(o, STATUS);
+                    Integer n = parseIntMember(o, NUMMER);
                     Integer fromHp = null, toHp = null;
                     if (o.has("hp")) {
-                        fromHp = parseIntMember(o, "hp");
+                        fromHp = parseIntMember(o, HP);
                     } else {
-                        fromHp = parseIntMember(o, "fra_hp");
-                        toHp = parseIntMember(o, "til_hp");
+                        fromHp = parseIntMember(o, FRA_HP);
+                        toHp = parseIntMember(o, TIL_HP);
                     }
 
                     return new RoadRefFilter(c, m, cat, stat, n, fromHp, toHp);
@@ -219,23 +263,23 @@ public final class RoadObjectParser {
     }
 
     public static Attribute parseAttribute(Map<Integer, DataType> dataTypes, JsonObject obj) {
-        Integer id = parseIntMember(obj, "id");
-        String name = parseStringMember(obj, "navn");
-        Integer enumId = parseIntMember(obj, "enum_id");
-        int dataTypeId = parseIntMember(obj, "datatype");
+        Integer id = parseIntMember(obj, ID);
+        String name = parseStringMember(obj, NAVN);
+        Integer enumId = parseIntMember(obj, ENUM_ID);
+        int dataTypeId = parseIntMember(obj, DATATYPE);
         DataType dataType = dataTypes.get(dataTypeId);
-        Object value = parseAttributeValue(obj, "verdi", dataType.getJavaType());
+        Object value = parseAttributeValue(obj, VERDI, dataType.getJavaType());
 
         Quality quality = null;
         if (obj.has("kvalitet")) {
-            quality = parseQualityMember(obj, "kvalitet");
+            quality = parseQualityMember(obj, KVALITET);
         }
 
         return new Attribute(id, name, dataType, value, Optional.ofNullable(enumId), Optional.ofNullable(quality));
     }
 
     private static Association parseAssociation(Map<Integer, DataType> dataTypes, JsonObject obj) {
-        Integer typeId = parseIntMember(obj, "type.id");
+        Integer typeId = parseIntMember(obj, TYPE_ID);
         JsonArray objects = obj.get("vegobjekter").getAsJsonArray();
         Set<RoadObject> roadObjects = StreamSupport.stream(objects.spliterator(), false).map(e -> {
             RoadObject ro;
@@ -251,9 +295,453 @@ public final class RoadObjectParser {
     }
 
     public static Statistics parseStatistics(JsonObject obj) {
-        int numFound = parseIntMember(obj, "antall");
-        long length = parseLongMember(obj, "strekningslengde");
+        int numFound = parseIntMember(obj, ANTALL);
+        long length = parseLongMember(obj, STREKNINGSLENGDE);
 
         return new Statistics(numFound, length);
     }
+
+    /**
+     * Parses a road object straight from the reader, producing the same result as {@link #parse(Map, JsonObject)}.
+     */
+    public static RoadObject parse(Map<Integer, DataType> dataTypes, JsonReader reader) throws IOException {
+        return parse(dataTypes, reader, false);
+    }
+
+    /**
+     * @param skipGeometry if {@code true}, geometries of the object, its location, segments and related objects
+     *                     are skipped without being read, and left {@code null}
+     */
+    public static RoadObject parse(Map<Integer, DataType> dataTypes, JsonReader reader, boolean skipGeometry) throws IOException {
+        Long id = null;
+        Integer typeId = null, version = null;
+        LocalDate startDate = null, endDate = null;
+        LocalDateTime lastModified = null;
+        List<Attribute> attributes = Collections.emptyList();
+        List<Association> childrenList = Collections.emptyList();
+        List<Association> parentList = Collections.emptyList();
+        Location location = null;
+        Geometry geometry = null;
+        SegmentationFilter segFilter = null;
+        List<Segment> segments = Collections.emptyList();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = nextLong(reader, "id");
+                    break;
+                case "metadata":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "type":
+                                typeId = parseTypeId(reader);
+                                break;
+                            case "versjon":
+                                version = nextInt(reader, "metadata.versjon");
+                                break;
+                            case "startdato":
+                                startDate = nextDate(reader, "metadata.startdato");
+                                break;
+                            case "sluttdato":
+                                endDate = nextDate(reader, "metadata.sluttdato");
+                                break;
+                            case "sist_modifisert":
+                                lastModified = nextDateTime(reader, "metadata.sist_modifisert");
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                case "egenskaper":
+                    attributes = nextList(reader, r -> parseAttribute(dataTypes, r));
+                    break;
+                case "relasjoner":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "barn":
+                                childrenList = nextList(reader, r -> parseAssociation(dataTypes, r, skipGeometry));
+                                break;
+                            case "foreldre":
+                                parentList = nextList(reader, r -> parseAssociation(dataTypes, r, skipGeometry));
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                case "lokasjon":
+                    location = parseLocation(reader, skipGeometry);
+                    break;
+                case "geometri":
+                    geometry = GeometryParser.parse(reader, skipGeometry);
+                    break;
+                case "segmentering":
+                    segFilter = parseSegmentFilter(reader);
+                    break;
+                case "vegsegmenter":
+                    segments = nextList(reader, r -> parseSegment(r, skipGeometry));
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new RoadObject(id, typeId, version, startDate, endDate, segFilter, segments, location, geometry,
+                lastModified, attributes, childrenList, parentList);
+    }
+
+    private static Integer parseTypeId(JsonReader reader) throws IOException {
+        Integer typeId = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("id")) {
+                typeId = nextInt(reader, "type.id");
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return typeId;
+    }
+
+    private static Location parseLocation(JsonReader reader, boolean skipGeometry) throws IOException {
+        if (nextNullIfPresent(reader)) return null;
+
+        List<Integer> municipalities = Collections.emptyList(), counties = Collections.emptyList(),
+                regions = Collections.emptyList(), departments = Collections.emptyList();
+        List<ContractArea> contractAreas = Collections.emptyList();
+        List<Route> nationalRoutes = Collections.emptyList();
+        Geometry geometry = null;
+        List<RoadRef> roadRefs = Collections.emptyList();
+        List<Placement> placements = Collections.emptyList();
+        Double length = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "kommuner":
+                    municipalities = nextIntList(reader);
+                    break;
+                case "fylker":
+                    counties = nextIntList(reader);
+                    break;
+                case "regioner":
+                    regions = nextIntList(reader);
+                    break;
+                case "vegavdelinger":
+                    departments = nextIntList(reader);
+                    break;
+                case "kontraktsområder":
+                    contractAreas = nextList(reader, AreaParser::parseContractArea);
+                    break;
+                case "riksvegruter":
+                    nationalRoutes = nextList(reader, AreaParser::parseRoute);
+                    break;
+                case "geometri":
+                    geometry = GeometryParser.parse(reader, skipGeometry);
+                    break;
+                case "vegreferanser":
+                    roadRefs = nextList(reader, RoadRefParser::parse);
+                    break;
+                case "stedfestinger":
+                    placements = nextList(reader, RoadObjectParser::parsePlacement);
+                    break;
+                case "strekningslengde":
+                    length = nextDouble(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new Location(municipalities, counties, regions,
+                departments, length, placements, roadRefs,
+                contractAreas, nationalRoutes, geometry);
+    }
+
+    private static SegmentationFilter parseSegmentFilter(JsonReader reader) throws IOException {
+        if (nextNullIfPresent(reader)) return null;
+
+        List<Integer> municipalities = Collections.emptyList(), counties = Collections.emptyList(),
+                regions = Collections.emptyList(), roadDepartments = Collections.emptyList();
+        List<RoadRefFilter> roadRefFilters = Collections.emptyList();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "kommuner":
+                    municipalities = nextIntList(reader);
+                    break;
+                case "fylker":
+                    counties = nextIntList(reader);
+                    break;
+                case "regioner":
+                    regions = nextIntList(reader);
+                    break;
+                case "vegavdelinger":
+                    roadDepartments = nextIntList(reader);
+                    break;
+                case "vegreferanser":
+                    roadRefFilters = nextList(reader, RoadObjectParser::parseRoadRefFilter);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new SegmentationFilter(municipalities, counties,
+                regions, roadDepartments, roadRefFilters);
+    }
+
+    private static RoadRefFilter parseRoadRefFilter(JsonReader reader) throws IOException {
+        Integer c = null, m = null, n = null, hp = null, fromHp = null, toHp = null;
+        String cat = null, stat = null;
+        boolean hasHp = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "fylke":
+                    c = nextInt(reader, name);
+                    break;
+                case "kommune":
+                    m = nextInt(reader, name);
+                    break;
+                case "kategori":
+                    cat = nextString(reader, name);
+                    break;
+                case "status":
+                    stat = nextString(reader, name);
+                    break;
+                case "nummer":
+                    n = nextInt(reader, name);
+                    break;
+                case "hp":
+                    hasHp = true;
+                    hp = nextInt(reader, name);
+                    break;
+                case "fra_hp":
+                    fromHp = nextInt(reader, name);
+                    break;
+                case "til_hp":
+                    toHp = nextInt(reader, name);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (hasHp) {
+            return new RoadRefFilter(c, m, cat, stat, n, hp, null);
+        }
+        return new RoadRefFilter(c, m, cat, stat, n, fromHp, toHp);
+    }
+
+    private static Segment parseSegment(JsonReader reader, boolean skipGeometry) throws IOException {
+        Placement placement = null;
+        Geometry geo = null;
+        Integer municipality = null, county = null, region = null, department = null, length = null;
+        RoadRef ref = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "stedfesting":
+                    placement = parsePlacement(reader);
+                    break;
+                case "geometri":
+                    geo = GeometryParser.parse(reader, skipGeometry);
+                    break;
+                case "kommune":
+                    municipality = nextInt(reader, name);
+                    break;
+                case "fylke":
+                    county = nextInt(reader, name);
+                    break;
+                case "region":
+                    region = nextInt(reader, name);
+                    break;
+                case "vegavdeling":
+                    department = nextInt(reader, name);
+                    break;
+                case "vegreferanse":
+                    ref = RoadRefParser.parse(reader);
+                    break;
+                case "strekningslengde":
+                    length = nextInt(reader, name);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new Segment(geo, municipality, county, region, department, placement, ref, length);
+    }
+
+    private static Placement parsePlacement(JsonReader reader) throws IOException {
+        Integer netElementId = null;
+        Double position = null, fromPosition = null, toPosition = null;
+        boolean hasPosition = false;
+        String direction = null, sidePosition = null, lane = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "veglenkeid":
+                    netElementId = nextInt(reader, name);
+                    break;
+                case "posisjon":
+                    hasPosition = true;
+                    position = nextDouble(reader);
+                    break;
+                case "fra_posisjon":
+                    fromPosition = nextDouble(reader);
+                    break;
+                case "til_posisjon":
+                    toPosition = nextDouble(reader);
+                    break;
+                case "retning":
+                    direction = nextString(reader, name);
+                    break;
+                case "sideposisjon":
+                    sidePosition = nextString(reader, name);
+                    break;
+                case "felt":
+                    lane = nextString(reader, name);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        double startPos, endPos;
+        if (hasPosition) {
+            startPos = endPos = position;
+        } else {
+            startPos = fromPosition;
+            endPos = toPosition;
+        }
+
+        Direction dir = Optional.of(direction).map(Direction::from).orElse(null);
+        SidePosition sidePos = Optional.ofNullable(sidePosition).map(SidePosition::from).orElse(null);
+        return new Placement(netElementId, startPos, endPos, dir, sidePos, lane);
+    }
+
+    public static Attribute parseAttribute(Map<Integer, DataType> dataTypes, JsonReader reader) throws IOException {
+        Integer id = null, enumId = null, dataTypeId = null;
+        String name = null;
+        JsonToken valueToken = null;
+        String value = null;
+        Quality quality = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String member = reader.nextName();
+            switch (member) {
+                case "id":
+                    id = nextInt(reader, member);
+                    break;
+                case "navn":
+                    name = nextString(reader, member);
+                    break;
+                case "enum_id":
+                    enumId = nextInt(reader, member);
+                    break;
+                case "datatype":
+                    dataTypeId = nextInt(reader, member);
+                    break;
+                case "verdi":
+                    // The data type may come after the value, so keep the raw value until the object is read
+                    valueToken = reader.peek();
+                    if (valueToken == JsonToken.NULL) {
+                        reader.nextNull();
+                        valueToken = null;
+                    } else if (valueToken == JsonToken.BOOLEAN) {
+                        value = Boolean.toString(reader.nextBoolean());
+                    } else if (valueToken == JsonToken.STRING || valueToken == JsonToken.NUMBER) {
+                        value = reader.nextString();
+                    } else {
+                        throw new RuntimeException("verdi is not a value node.");
+                    }
+                    break;
+                case "kvalitet":
+                    quality = GeometryParser.parseQuality(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        DataType dataType = dataTypes.get(dataTypeId);
+        return new Attribute(id, name, dataType, toAttributeValue(valueToken, value, dataType.getJavaType()),
+                Optional.ofNullable(enumId), Optional.ofNullable(quality));
+    }
+
+    private static Object toAttributeValue(JsonToken token, String value, JavaType datatype) {
+        if (token == null) {
+            return null;
+        }
+
+        switch (datatype) {
+            case NUMBER:
+                return new LazilyParsedNumber(value);
+            case BOOLEAN:
+                return Boolean.parseBoolean(value);
+            default:
+                return value;
+        }
+    }
+
+    private static Association parseAssociation(Map<Integer, DataType> dataTypes, JsonReader reader, boolean skipGeometry) throws IOException {
+        Integer typeId = null;
+        List<Long> ids = new ArrayList<>();
+        List<RoadObject> objects = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type":
+                    typeId = parseTypeId(reader);
+                    break;
+                case "vegobjekter":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                            objects.add(parse(dataTypes, reader, skipGeometry));
+                        } else {
+                            ids.add(Long.parseLong(reader.nextString()));
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        Set<RoadObject> roadObjects = new TreeSet<>(Comparator.comparing(RoadObject::getId));
+        for (Long id : ids) {
+            roadObjects.add(new RoadObject(id, typeId, null, null, null, null, null, null, null, null, null, null, null));
+        }
+        roadObjects.addAll(objects);
+
+        return new Association(typeId, roadObjects);
+    }
 }
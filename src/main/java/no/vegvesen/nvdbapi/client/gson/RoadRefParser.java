@@ -26,8 +26,14 @@
 package no.vegvesen.nvdbapi.client.gson;
 
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 import no.vegvesen.nvdbapi.client.model.roadobjects.RoadRef;
 
+import java.io.IOException;
+
+import static no.vegvesen.nvdbapi.client.gson.GsonUtil.nextInt;
+import static no.vegvesen.nvdbapi.client.gson.GsonUtil.nextNullIfPresent;
+import static no.vegvesen.nvdbapi.client.gson.GsonUtil.nextString;
 import static no.vegvesen.nvdbapi.client.gson.GsonUtil.parseIntMember;
 import static no.vegvesen.nvdbapi.client.gson.GsonUtil.parseStringMember;
 
@@ -64,4 +70,71 @@ public final class RoadRefParser {
             return RoadRef.merged(county, municipality, category, status, number, fromHp, toHp, fromMeter, toMeter, shortName);
         }
     }
+
+    public static RoadRef parse(JsonReader reader) throws IOException {
+        if (nextNullIfPresent(reader)) return null;
+
+        Integer county = null, municipality = null, number = null;
+        String category = null, status = null, shortName = null;
+        Integer hp = null, fromHp = null, toHp = null, meter = null, fromMeter = null, toMeter = null;
+        boolean hasHp = false, hasFromMeter = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "fylke":
+                    county = nextInt(reader, name);
+                    break;
+                case "kommune":
+                    municipality = nextInt(reader, name);
+                    break;
+                case "kategori":
+                    category = nextString(reader, name);
+                    break;
+                case "status":
+                    status = nextString(reader, name);
+                    break;
+                case "nummer":
+                    number = nextInt(reader, name);
+                    break;
+                case "kortform":
+                    shortName = nextString(reader, name);
+                    break;
+                case "hp":
+                    hasHp = true;
+                    hp = nextInt(reader, name);
+                    break;
+                case "fra_hp":
+                    fromHp = nextInt(reader, name);
+                    break;
+                case "til_hp":
+                    toHp = nextInt(reader, name);
+                    break;
+                case "meter":
+                    meter = nextInt(reader, name);
+                    break;
+                case "fra_meter":
+                    hasFromMeter = true;
+                    fromMeter = nextInt(reader, name);
+                    break;
+                case "til_meter":
+                    toMeter = nextInt(reader, name);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (hasHp) {
+            if (hasFromMeter) {
+                return RoadRef.stretch(county, municipality, category, status, number, hp, fromMeter, toMeter, shortName);
+            } else {
+                return RoadRef.point(county, municipality, category, status, number, hp, meter, shortName);
+            }
+        } else {
+            return RoadRef.merged(county, municipality, category, status, number, fromHp, toHp, fromMeter, toMeter, shortName);
+        }
+    }
 }
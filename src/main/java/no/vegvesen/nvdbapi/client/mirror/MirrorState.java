@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.mirror;
+
+import no.vegvesen.nvdbapi.client.model.Change;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * How far the mirror of one feature type has come: when the initial download started, and how far
+ * each change feed has been read since then.
+ */
+public final class MirrorState implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int featureTypeId;
+    private final LocalDateTime since;
+    private final Map<Change.Type, String> tokens;
+
+    public MirrorState(int featureTypeId, LocalDateTime since, Map<Change.Type, String> tokens) {
+        this.featureTypeId = featureTypeId;
+        this.since = Objects.requireNonNull(since, "Missing since argument!");
+        this.tokens = tokens.isEmpty() ? new EnumMap<>(Change.Type.class) : new EnumMap<>(tokens);
+    }
+
+    public static MirrorState initial(int featureTypeId, LocalDateTime since) {
+        return new MirrorState(featureTypeId, since, Collections.emptyMap());
+    }
+
+    public int getFeatureTypeId() {
+        return featureTypeId;
+    }
+
+    /**
+     * @return the timestamp the change feeds are read from
+     */
+    public LocalDateTime getSince() {
+        return since;
+    }
+
+    /**
+     * @return paging token of the last processed page in the feed of the given change type
+     */
+    public Optional<String> getToken(Change.Type type) {
+        return Optional.ofNullable(tokens.get(type));
+    }
+
+    public Map<Change.Type, String> getTokens() {
+        return Collections.unmodifiableMap(tokens);
+    }
+
+    public MirrorState withToken(Change.Type type, String token) {
+        Map<Change.Type, String> updated = new EnumMap<>(Change.Type.class);
+        updated.putAll(tokens);
+        updated.put(type, token);
+        return new MirrorState(featureTypeId, since, updated);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MirrorState that = (MirrorState) o;
+        return featureTypeId == that.featureTypeId &&
+                Objects.equals(since, that.since) &&
+                Objects.equals(tokens, that.tokens);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(featureTypeId, since, tokens);
+    }
+
+    @Override
+    public String toString() {
+        return "MirrorState{" +
+                "featureTypeId=" + featureTypeId +
+                ", since=" + since +
+                ", tokens=" + tokens +
+                '}';
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.mirror;
+
+import no.vegvesen.nvdbapi.client.clients.RoadObjectClient;
+import no.vegvesen.nvdbapi.client.clients.RoadObjectRequest;
+import no.vegvesen.nvdbapi.client.exceptions.ClientException;
+import no.vegvesen.nvdbapi.client.model.Change;
+import no.vegvesen.nvdbapi.client.model.Page;
+import no.vegvesen.nvdbapi.client.model.roadobjects.RoadObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Keeps a {@link RoadObjectStore} in sync with NVDB. The first {@link #sync(int)} of a feature type downloads
+ * all its objects. Later calls only read the change feed ({@code endringer}) from where the previous call stopped.
+ * <p>
+ * The state is saved after every page, so an interrupted sync continues where it left off. Changes may be
+ * applied more than once, which is harmless as long as {@code put} and {@code delete} are idempotent.
+ */
+public final class RoadObjectMirror {
+    private static final Logger logger = LoggerFactory.getLogger(RoadObjectMirror.class);
+    // Timestamps without zone are read by the API as Norwegian time
+    private static final ZoneId API_ZONE = ZoneId.of("Europe/Oslo");
+
+    private final RoadObjectClient client;
+    private final RoadObjectStore store;
+    private final RoadObjectRequest request;
+    private final List<Change.Type> changeTypes;
+    private final int pageSize;
+    private final Duration overlap;
+    private final Clock clock;
+
+    private RoadObjectMirror(Builder b) {
+        client = b.client;
+        store = b.store;
+        request = b.request;
+        changeTypes = b.changeTypes;
+        pageSize = b.pageSize;
+        overlap = b.overlap;
+        clock = b.clock.withZone(API_ZONE);
+    }
+
+    public static Builder newBuilder(RoadObjectClient client, RoadObjectStore store) {
+        return new Builder(client, store);
+    }
+
+    /**
+     * Brings the local copy of the feature type up to date.
+     *
+     * @param featureTypeId feature type to sync
+     * @return number of objects written to or deleted from the store
+     */
+    public long sync(int featureTypeId) {
+        Optional<MirrorState> state = store.getState(featureTypeId);
+        if (state.isPresent()) {
+            return applyChanges(state.get());
+        }
+        return bootstrap(featureTypeId);
+    }
+
+    private long bootstrap(int featureTypeId) {
+        // Changes made while downloading are picked up by the first sync after this one
+        LocalDateTime since = LocalDateTime.now(clock).minus(overlap);
+        logger.info("Downloading all objects of type {}", featureTypeId);
+
+        long count = 0;
+        RoadObjectClient.RoadObjectsResult result = client.getRoadObjects(featureTypeId, request);
+        while (result.hasNext()) {
+            for (RoadObject roadObject : result.next()) {
+                store.put(roadObject);
+                count++;
+            }
+        }
+
+        store.saveState(MirrorState.initial(featureTypeId, since));
+        logger.info("Downloaded {} objects of type {}", count, featureTypeId);
+        return count;
+    }
+
+    private long applyChanges(MirrorState state) {
+        int featureTypeId = state.getFeatureTypeId();
+        long count = 0;
+
+        // Deletions last, so an object changed and then deleted does not come back
+        for (Change.Type type : changeTypes) {
+            Page page = state.getToken(type)
+                             .map(token -> Page.subPage(pageSize, token))
+                             .orElse(Page.count(pageSize));
+            RoadObjectClient.ChangesResult result = client.getChanges(featureTypeId, state.getSince(), page, type);
+            while (result.hasNext()) {
+                for (Change change : result.next()) {
+                    count += apply(change);
+                }
+                if (result.nextToken() != null) {
+                    state = state.withToken(type, result.nextToken());
+                    store.saveState(state);
+                }
+            }
+        }
+
+        logger.debug("Applied {} changes to type {}", count, featureTypeId);
+        return count;
+    }
+
+    private int apply(Change change) {
+        if (change.getType() == Change.Type.DELETED) {
+            store.delete(change.getTypeId(), change.getFeatureId());
+            return 1;
+        }
+
+        Optional<RoadObject> roadObject = change.getRoadObject();
+        if (!roadObject.isPresent()) {
+            roadObject = fetch(change.getTypeId(), change.getFeatureId());
+        }
+        roadObject.ifPresent(store::put);
+        return roadObject.isPresent() ? 1 : 0;
+    }
+
+    private Optional<RoadObject> fetch(int featureTypeId, long featureId) {
+        try {
+            return Optional.of(client.getRoadObject(featureTypeId, featureId, request));
+        } catch (ClientException e) {
+            if (e.getStatusCode() == 404) {
+                // Deleted after it was changed, the deletion feed takes care of it
+                logger.debug("Changed object {} of type {} no longer exists", featureId, featureTypeId);
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    public static class Builder {
+        private final RoadObjectClient client;
+        private final RoadObjectStore store;
+        private RoadObjectRequest request = RoadObjectRequest.DEFAULT;
+        private List<Change.Type> changeTypes = Arrays.asList(Change.Type.CHANGED, Change.Type.DELETED);
+        private int pageSize = 1000;
+        private Duration overlap = Duration.ofMinutes(10);
+        private Clock clock = Clock.system(API_ZONE);
+
+        private Builder(RoadObjectClient client, RoadObjectStore store) {
+            this.client = Objects.requireNonNull(client, "Missing client argument!");
+            this.store = Objects.requireNonNull(store, "Missing store argument!");
+        }
+
+        public RoadObjectMirror build() {
+            return new RoadObjectMirror(this);
+        }
+
+        /**
+         * @param request used for the initial download and when fetching changed objects,
+         *                e.g. to choose which information to include
+         */
+        public Builder withRequest(RoadObjectRequest request) {
+            this.request = Objects.requireNonNull(request, "Missing request argument!");
+            return this;
+        }
+
+        /**
+         * @param changeTypes change feeds to read, in the order they are applied
+         */
+        public Builder withChangeTypes(Change.Type... changeTypes) {
+            if (changeTypes.length == 0) {
+                throw new IllegalArgumentException("At least one change type is required.");
+            }
+            this.changeTypes = Arrays.asList(changeTypes);
+            return this;
+        }
+
+        public Builder withPageSize(int pageSize) {
+            if (pageSize < 1) {
+                throw new IllegalArgumentException("Page size must be greater than 0.");
+            }
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * @param overlap how far back from the start of the initial download the change feeds are read,
+         *                to allow for clock differences between client and server
+         */
+        public Builder withOverlap(Duration overlap) {
+            this.overlap = Objects.requireNonNull(overlap, "Missing overlap argument!");
+            return this;
+        }
+
+        /**
+         * @param clock gives the start time of the initial download. Its zone is ignored, the time is converted
+         *              to Europe/Oslo since the change feeds are read from a timestamp without zone
+         */
+        public Builder withClock(Clock clock) {
+            this.clock = Objects.requireNonNull(clock, "Missing clock argument!");
+            return this;
+        }
+    }
+}
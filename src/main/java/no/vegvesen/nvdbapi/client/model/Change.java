@@ -56,6 +56,10 @@ public class Change {
         return roadObject;
     }
 
+    public Type getType() {
+        return type;
+    }
+
     @Override
     public String toString() {
         return "Change{" +
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Coordinates of a geometry packed into one {@code double[]}, with x, y and (if present) z interleaved.
+ * Multi-geometries are split into parts: one per point, line string or polygon ring, in WKT order.
+ */
+public final class Coordinates implements Serializable {
+    private final SpatialType type;
+    private final int dimension;
+    private final double[] coords;
+    private final int[] parts;
+    private final double minX, minY, maxX, maxY;
+
+    private Coordinates(SpatialType type, int dimension, double[] coords, int[] parts) {
+        this.type = type;
+        this.dimension = dimension;
+        this.coords = coords;
+        this.parts = parts;
+
+        double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < coords.length; i += dimension) {
+            x0 = Math.min(x0, coords[i]);
+            y0 = Math.min(y0, coords[i + 1]);
+            x1 = Math.max(x1, coords[i]);
+            y1 = Math.max(y1, coords[i + 1]);
+        }
+        minX = x0;
+        minY = y0;
+        maxX = x1;
+        maxY = y1;
+    }
+
+    /**
+     * Parses points, line strings, polygons, their multi variants and geometry collections.
+     * Z values are kept and M values dropped.
+     *
+     * @throws IllegalArgumentException if {@code wkt} cannot be parsed
+     */
+    public static Coordinates fromWkt(CharSequence wkt) {
+        return WktReader.read(Objects.requireNonNull(wkt, "Missing wkt argument!"));
+    }
+
+    public static Builder newBuilder(SpatialType type) {
+        return new Builder(type);
+    }
+
+    public SpatialType getType() {
+        return type;
+    }
+
+    /**
+     * @return 3 if the geometry has z values, otherwise 2
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    public boolean hasZ() {
+        return dimension == 3;
+    }
+
+    public boolean isEmpty() {
+        return coords.length == 0;
+    }
+
+    public int getNumPoints() {
+        return coords.length / dimension;
+    }
+
+    public int getNumParts() {
+        return parts.length - 1;
+    }
+
+    /**
+     * @return index of the first point of {@code part}
+     */
+    public int getPartStart(int part) {
+        return parts[part];
+    }
+
+    /**
+     * @return index after the last point of {@code part}
+     */
+    public int getPartEnd(int part) {
+        return parts[part + 1];
+    }
+
+    public double getX(int point) {
+        return coords[point * dimension];
+    }
+
+    public double getY(int point) {
+        return coords[point * dimension + 1];
+    }
+
+    /**
+     * @return z value of the point, or {@code NaN} if it has none
+     */
+    public double getZ(int point) {
+        return dimension == 3 ? coords[point * dimension + 2] : Double.NaN;
+    }
+
+    /**
+     * @return a copy of the packed coordinates, {@link #getDimension()} values per point
+     */
+    public double[] toArray() {
+        return coords.clone();
+    }
+
+    /**
+     * @return bounding box of all points, or {@code null} if the geometry is empty
+     */
+    public Envelope getEnvelope() {
+        return isEmpty() ? null : new Envelope(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * @return the 2D length of all parts. Polygons give the length of their rings, points give 0.
+     */
+    public double getLength() {
+        double length = 0;
+        for (int p = 0; p < getNumParts(); p++) {
+            for (int i = parts[p] + 1; i < parts[p + 1]; i++) {
+                length += distance(i - 1, i);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @return 2D distance between two points
+     */
+    public double distance(int from, int to) {
+        double dx = getX(to) - getX(from);
+        double dy = getY(to) - getY(from);
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * @return 2D distance from the given point to the nearest point or line segment of this geometry.
+     * Polygons are measured to their rings. An empty geometry gives {@code Double.POSITIVE_INFINITY}.
+     */
+    public double distanceTo(double x, double y) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int p = 0; p < getNumParts(); p++) {
+            int start = parts[p], end = parts[p + 1];
+            if (end - start == 1) {
+                min = Math.min(min, squaredDistance(x, y, getX(start), getY(start)));
+            }
+            for (int i = start + 1; i < end; i++) {
+                min = Math.min(min, squaredSegmentDistance(x, y, getX(i - 1), getY(i - 1), getX(i), getY(i)));
+            }
+        }
+        return Math.sqrt(min);
+    }
+
+    static double squaredSegmentDistance(double x, double y, double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1, dy = y2 - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((x - x1) * dx + (y - y1) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        return squaredDistance(x, y, x1 + t * dx, y1 + t * dy);
+    }
+
+    private static double squaredDistance(double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1, dy = y2 - y1;
+        return dx * dx + dy * dy;
+    }
+
+    public void forEachPoint(PointConsumer consumer) {
+        for (int i = 0; i < coords.length; i += dimension) {
+            consumer.accept(coords[i], coords[i + 1], dimension == 3 ? coords[i + 2] : Double.NaN);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Coordinates that = (Coordinates) o;
+        return dimension == that.dimension &&
+                type == that.type &&
+                Arrays.equals(coords, that.coords) &&
+                Arrays.equals(parts, that.parts);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Objects.hash(type, dimension);
+        result = 31 * result + Arrays.hashCode(coords);
+        result = 31 * result + Arrays.hashCode(parts);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Coordinates{" +
+                "type=" + type +
+                ", dimension=" + dimension +
+                ", points=" + getNumPoints() +
+                ", parts=" + getNumParts() +
+                '}';
+    }
+
+    @FunctionalInterface
+    public interface PointConsumer {
+        void accept(double x, double y, double z);
+    }
+
+    /**
+     * Collects points one at a time, so a parser can fill it without building intermediate objects.
+     */
+    public static final class Builder {
+        private final SpatialType type;
+        private double[] coords = new double[48];
+        private int[] parts = new int[4];
+        private int numPoints;
+        private int numParts;
+        private boolean hasZ;
+
+        private Builder(SpatialType type) {
+            this.type = Objects.requireNonNull(type, "Missing type argument!");
+        }
+
+        public Builder addPoint(double x, double y) {
+            return addPoint(x, y, Double.NaN);
+        }
+
+        public Builder addPoint(double x, double y, double z) {
+            if (coords.length < (numPoints + 1) * 3) {
+                coords = Arrays.copyOf(coords, coords.length * 2);
+            }
+            int i = numPoints * 3;
+            coords[i] = x;
+            coords[i + 1] = y;
+            coords[i + 2] = z;
+            hasZ |= !Double.isNaN(z);
+            numPoints++;
+            return this;
+        }
+
+        /**
+         * Ends the current part. Does nothing if no points have been added since the previous part.
+         */
+        public Builder endPart() {
+            if (numPoints > parts[numParts]) {
+                if (parts.length < numParts + 2) {
+                    parts = Arrays.copyOf(parts, parts.length * 2);
+                }
+                parts[++numParts] = numPoints;
+            }
+            return this;
+        }
+
+        public Coordinates build() {
+            endPart();
+            int dimension = hasZ ? 3 : 2;
+            double[] packed;
+            if (hasZ) {
+                packed = Arrays.copyOf(coords, numPoints * 3);
+            } else {
+                packed = new double[numPoints * 2];
+                for (int i = 0; i < numPoints; i++) {
+                    packed[i * 2] = coords[i * 3];
+                    packed[i * 2 + 1] = coords[i * 3 + 1];
+                }
+            }
+            return new Coordinates(type, dimension, packed, Arrays.copyOf(parts, numParts + 1));
+        }
+    }
+}
@@ -33,6 +33,7 @@ public class Geometry {
     private final Quality quality;
     private final boolean isSimplified;
     private final boolean isOwnGeometry;
+    private volatile Coordinates coordinates;
 
     public Geometry(String wkt, Projection projection, boolean isSimplified, boolean isOwnGeometry) {
         this(wkt, projection, null, isSimplified, isOwnGeometry);
@@ -58,6 +59,20 @@ public class Geometry {
         return wkt;
     }
 
+    /**
+     * Parses the WKT the first time it is called and keeps the result.
+     *
+     * @return the coordinates of this geometry, or {@code null} if it has no WKT
+     */
+    public Coordinates getCoordinates() {
+        Coordinates c = coordinates;
+        if (c == null && wkt != null) {
+            c = Coordinates.fromWkt(wkt);
+            coordinates = c;
+        }
+        return c;
+    }
+
     public Projection getProjection() {
         return projection;
     }
@@ -27,20 +27,44 @@ package no.vegvesen.nvdbapi.client.model;
 
 import no.vegvesen.nvdbapi.client.model.roadobjects.RoadRef;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 public class Position {
     private final List<Result> results;
+    private final Optional<RuntimeException> error;
 
     public Position(List<Result> results) {
+        this(results, null);
+    }
+
+    private Position(List<Result> results, RuntimeException error) {
         this.results = results;
+        this.error = Optional.ofNullable(error);
+    }
+
+    /**
+     * @param error why the lookup failed
+     * @return a position without results, carrying the error
+     */
+    public static Position failed(RuntimeException error) {
+        return new Position(Collections.emptyList(), Objects.requireNonNull(error, "Missing error argument!"));
     }
 
     public List<Result> getResults() {
         return results;
     }
 
+    public boolean isFailed() {
+        return error.isPresent();
+    }
+
+    public Optional<RuntimeException> getError() {
+        return error;
+    }
+
     public final static class Result {
         private final RoadPlacement placement;
         private final Double distance;
@@ -98,18 +122,20 @@ public class Position {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Position position = (Position) o;
-        return Objects.equals(results, position.results);
+        return Objects.equals(results, position.results) &&
+                Objects.equals(error, position.error);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(results);
+        return Objects.hash(results, error);
     }
 
     @Override
     public String toString() {
         return "Position{" +
                 "results=" + results +
+                ", error=" + error +
                 '}';
     }
 }
@@ -31,10 +31,25 @@ import java.util.Optional;
 public class RoadPlacementBulkResult {
     private final String key;
     private final Optional<RoadPlacement> result;
+    private final Optional<RuntimeException> error;
 
     public RoadPlacementBulkResult(String key, RoadPlacement result) {
+        this(key, result, null);
+    }
+
+    private RoadPlacementBulkResult(String key, RoadPlacement result, RuntimeException error) {
         this.key = key;
         this.result = Optional.ofNullable(result);
+        this.error = Optional.ofNullable(error);
+    }
+
+    /**
+     * @param key the road ref or ref link that was looked up
+     * @param error why the lookup failed
+     * @return a result without placement, carrying the error
+     */
+    public static RoadPlacementBulkResult failed(String key, RuntimeException error) {
+        return new RoadPlacementBulkResult(key, null, Objects.requireNonNull(error, "Missing error argument!"));
     }
 
     public String getKey() {
@@ -49,17 +64,26 @@ public class RoadPlacementBulkResult {
         return result;
     }
 
+    public boolean isFailed() {
+        return error.isPresent();
+    }
+
+    public Optional<RuntimeException> getError() {
+        return error;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         RoadPlacementBulkResult that = (RoadPlacementBulkResult) o;
         return Objects.equals(key, that.key) &&
-                Objects.equals(result, that.result);
+                Objects.equals(result, that.result) &&
+                Objects.equals(error, that.error);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(key, result);
+        return Objects.hash(key, result, error);
     }
 }
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.model;
+
+/**
+ * Reads WKT straight into a {@link Coordinates.Builder}, without splitting the text into substrings.
+ */
+final class WktReader {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int NO_TAG = 0, Z = 1, M = 2, ZM = 3;
+
+    private final CharSequence wkt;
+    private final double[] values = new double[4];
+    private int pos;
+
+    private WktReader(CharSequence wkt) {
+        this.wkt = wkt;
+    }
+
+    static Coordinates read(CharSequence wkt) {
+        WktReader reader = new WktReader(wkt);
+        SpatialType type = reader.readType();
+        Coordinates.Builder builder = Coordinates.newBuilder(type);
+        reader.readBody(type, builder);
+        reader.skipWhitespace();
+        if (reader.pos < wkt.length()) {
+            throw reader.error("end of text");
+        }
+        return builder.build();
+    }
+
+    private SpatialType readType() {
+        String word = readWord();
+        SpatialType type = SpatialType.from(word);
+        if (type == SpatialType.UNKNOWN || type == SpatialType.COMPLEX) {
+            throw new IllegalArgumentException("Unsupported geometry type " + word + " in WKT: " + abbreviated());
+        }
+        return type;
+    }
+
+    private void readBody(SpatialType type, Coordinates.Builder builder) {
+        int tag = readTag();
+        if (readEmpty()) {
+            return;
+        }
+        switch (type) {
+            case POINT:
+                expect('(');
+                readPoint(builder, tag);
+                expect(')');
+                builder.endPart();
+                break;
+            case LINE_STRING:
+                readSequence(builder, tag);
+                break;
+            case POLYGON:
+                readRings(builder, tag);
+                break;
+            case MULTI_POINT:
+                expect('(');
+                do {
+                    boolean nested = peek('(');
+                    if (nested) expect('(');
+                    readPoint(builder, tag);
+                    if (nested) expect(')');
+                    builder.endPart();
+                } while (consume(','));
+                expect(')');
+                break;
+            case MULTI_LINE_STRING:
+                expect('(');
+                do {
+                    readSequence(builder, tag);
+                } while (consume(','));
+                expect(')');
+                break;
+            case MULTI_POLYGON:
+                expect('(');
+                do {
+                    readRings(builder, tag);
+                } while (consume(','));
+                expect(')');
+                break;
+            case GEOMETRY_COLLECTION:
+                expect('(');
+                do {
+                    readBody(readType(), builder);
+                } while (consume(','));
+                expect(')');
+                break;
+            default:
+                throw new IllegalStateException("Unhandled type " + type);
+        }
+    }
+
+    private void readRings(Coordinates.Builder builder, int tag) {
+        if (readEmpty()) return;
+        expect('(');
+        do {
+            readSequence(builder, tag);
+        } while (consume(','));
+        expect(')');
+    }
+
+    private void readSequence(Coordinates.Builder builder, int tag) {
+        if (readEmpty()) return;
+        expect('(');
+        do {
+            readPoint(builder, tag);
+        } while (consume(','));
+        expect(')');
+        builder.endPart();
+    }
+
+    private void readPoint(Coordinates.Builder builder, int tag) {
+        int n = 0;
+        while (n < values.length && startsNumber()) {
+            values[n++] = readNumber();
+        }
+        if (n < 2) {
+            throw error("coordinate");
+        }
+        double z = Double.NaN;
+        if (n > 2 && tag != M) {
+            z = values[2];
+        }
+        builder.addPoint(values[0], values[1], z);
+    }
+
+    private int readTag() {
+        skipWhitespace();
+        int start = pos;
+        if (pos < wkt.length() && Character.isLetter(wkt.charAt(pos))) {
+            String word = readWord();
+            switch (word.toUpperCase()) {
+                case "Z": return Z;
+                case "M": return M;
+                case "ZM": return ZM;
+                default:
+                    pos = start;
+            }
+        }
+        return NO_TAG;
+    }
+
+    private boolean readEmpty() {
+        skipWhitespace();
+        int start = pos;
+        if (pos < wkt.length() && Character.isLetter(wkt.charAt(pos))) {
+            if ("EMPTY".equalsIgnoreCase(readWord())) {
+                return true;
+            }
+            pos = start;
+        }
+        return false;
+    }
+
+    private String readWord() {
+        skipWhitespace();
+        int start = pos;
+        while (pos < wkt.length() && Character.isLetter(wkt.charAt(pos))) {
+            pos++;
+        }
+        if (start == pos) {
+            throw error("geometry type");
+        }
+        return wkt.subSequence(start, pos).toString();
+    }
+
+    private boolean startsNumber() {
+        skipWhitespace();
+        if (pos >= wkt.length()) return false;
+        char c = wkt.charAt(pos);
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+    }
+
+    /**
+     * Computes the value from the digits when the result is exact, and falls back to {@link Double#parseDouble}
+     * for long mantissas and large exponents.
+     */
+    private double readNumber() {
+        int start = pos;
+        boolean negative = false;
+        char c = wkt.charAt(pos);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+        while (pos < wkt.length() && isDigit(wkt.charAt(pos))) {
+            mantissa = accumulate(mantissa, wkt.charAt(pos++));
+            if (mantissa != 0) digits++;
+            any = true;
+        }
+        if (pos < wkt.length() && wkt.charAt(pos) == '.') {
+            pos++;
+            while (pos < wkt.length() && isDigit(wkt.charAt(pos))) {
+                mantissa = accumulate(mantissa, wkt.charAt(pos++));
+                if (mantissa != 0) digits++;
+                exponent--;
+                any = true;
+            }
+        }
+        if (!any) {
+            throw error("number");
+        }
+        if (pos < wkt.length() && (wkt.charAt(pos) == 'e' || wkt.charAt(pos) == 'E')) {
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < wkt.length() && (wkt.charAt(pos) == '-' || wkt.charAt(pos) == '+')) {
+                negativeExponent = wkt.charAt(pos++) == '-';
+            }
+            int e = 0;
+            int expStart = pos;
+            while (pos < wkt.length() && isDigit(wkt.charAt(pos))) {
+                e = Math.min(e * 10 + (wkt.charAt(pos++) - '0'), 10_000);
+            }
+            if (expStart == pos) {
+                throw error("exponent");
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+
+        // Both operands are exact doubles here, so the single multiplication or division rounds correctly
+        if (digits <= 15 && Math.abs(exponent) < POWERS_OF_TEN.length) {
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(wkt.subSequence(start, pos).toString());
+    }
+
+    private static long accumulate(long mantissa, char digit) {
+        // Digits past what a long holds only matter to the fallback, which re-reads the text
+        return mantissa < 100_000_000_000_000_000L ? mantissa * 10 + (digit - '0') : mantissa;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private void expect(char c) {
+        if (!consume(c)) {
+            throw error("'" + c + "'");
+        }
+    }
+
+    private boolean consume(char c) {
+        if (peek(c)) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean peek(char c) {
+        skipWhitespace();
+        return pos < wkt.length() && wkt.charAt(pos) == c;
+    }
+
+    private void skipWhitespace() {
+        while (pos < wkt.length() && Character.isWhitespace(wkt.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String expected) {
+        return new IllegalArgumentException("Expected " + expected + " at position " + pos + " in WKT: " + abbreviated());
+    }
+
+    private String abbreviated() {
+        return wkt.length() > 80 ? wkt.subSequence(0, 77) + "..." : wkt.toString();
+    }
+}
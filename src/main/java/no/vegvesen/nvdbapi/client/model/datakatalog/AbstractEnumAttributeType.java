@@ -25,6 +25,8 @@
 
 package no.vegvesen.nvdbapi.client.model.datakatalog;
 
+import no.vegvesen.nvdbapi.client.util.IntObjectMap;
+
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -32,11 +34,13 @@ import java.util.stream.Stream;
 public abstract class AbstractEnumAttributeType extends AttributeType implements EnumAttributeType {
 
     private final Set<EnumValue> values;
+    private final IntObjectMap<EnumValue> valueIndex;
 
     protected AbstractEnumAttributeType(AttributeCommonProperties props,
                                         AttributeTypeParameters parameters, Set<EnumValue> values) {
         super(props, parameters);
         this.values = Optional.ofNullable(values).orElse(Collections.emptySet());
+        this.valueIndex = IntObjectMap.index(this.values, EnumValue::getId);
     }
 
     @Override
@@ -51,7 +55,7 @@ public abstract class AbstractEnumAttributeType extends AttributeType implements
 
     @Override
     public EnumValue getValue(Integer id) {
-        return values().filter(v -> v.getId().equals(id)).findAny().orElse(null);
+        return id == null ? null : valueIndex.get(id);
     }
 
     @Override
@@ -25,6 +25,9 @@
 
 package no.vegvesen.nvdbapi.client.model.datakatalog;
 
+import no.vegvesen.nvdbapi.client.util.IntObjectMap;
+
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -36,12 +39,15 @@ public class Datakatalog {
     private final Version version;
     private final List<Unit> units;
     private final Map<Integer, DataType> dataTypes;
+    private final IntObjectMap<FeatureType> featureTypeIndex;
 
     public Datakatalog(Version version, List<FeatureType> featureTypes, List<Unit> units, Map<Integer, DataType> dataTypes) {
         this.version = version;
         this.featureTypes = featureTypes;
         this.units = units;
         this.dataTypes = dataTypes;
+        this.featureTypeIndex = IntObjectMap.index(Optional.ofNullable(featureTypes).orElse(Collections.emptyList()),
+                                                   FeatureType::getId);
     }
 
     public Version getVersion() {
@@ -69,6 +75,6 @@ public class Datakatalog {
     }
 
     public Optional<FeatureType> getType(int id) {
-        return featureTypes().filter(f -> f.getId() == id).findAny();
+        return Optional.ofNullable(featureTypeIndex.get(id));
     }
 }
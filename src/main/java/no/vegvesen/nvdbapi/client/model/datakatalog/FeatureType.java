@@ -25,6 +25,8 @@
 
 package no.vegvesen.nvdbapi.client.model.datakatalog;
 
+import no.vegvesen.nvdbapi.client.util.IntObjectMap;
+
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.util.*;
@@ -45,6 +47,7 @@ public final class FeatureType implements Serializable {
     private final List<AssociationType> parents;
     private final List<AssociationType> children;
     private final FeatureTypeParameters parameters;
+    private final IntObjectMap<AttributeType> attributeTypeIndex;
 
     public FeatureType(Integer id, String name, String description, List<AttributeType> attributeTypes, List<AssociationType> parents, List<AssociationType> children, String instructions, String sosiName, String sosiNvdbName, Integer sortNumber, LocalDate objectListDate, PlacementType placementType, FeatureTypeParameters featureTypeParameters) {
         this.id = id;
@@ -60,6 +63,7 @@ public final class FeatureType implements Serializable {
         this.children = Optional.ofNullable(children).orElse(Collections.emptyList());
         this.parents = Optional.ofNullable(parents).orElse(Collections.emptyList());
         this.attributeTypes = Optional.ofNullable(attributeTypes).orElse(Collections.emptyList());
+        this.attributeTypeIndex = IntObjectMap.index(this.attributeTypes, AttributeType::getId);
     }
 
     public Integer getId() {
@@ -125,7 +129,7 @@ public final class FeatureType implements Serializable {
      * @return the attribute type requested or null if not present
      */
     public AttributeType getAttributeType(Integer id) {
-        return attributeTypes().filter(at -> at.getId().equals(id)).findAny().orElse(null);
+        return id == null ? null : attributeTypeIndex.get(id);
     }
 
     /**
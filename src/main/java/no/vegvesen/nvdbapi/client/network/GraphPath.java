@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.network;
+
+import java.util.Arrays;
+
+/**
+ * A path through a {@link RoadNetGraph}.
+ */
+public final class GraphPath {
+    private final double length;
+    private final int[] links;
+    private final long[] linkIds;
+
+    GraphPath(double length, int[] links, long[] linkIds) {
+        this.length = length;
+        this.links = links;
+        this.linkIds = linkIds;
+    }
+
+    /**
+     * @return length in meters. Paths between link positions only count the travelled part of the first and last link.
+     */
+    public double getLength() {
+        return length;
+    }
+
+    /**
+     * @return graph indices of the links in travel order
+     */
+    public int[] getLinks() {
+        return links.clone();
+    }
+
+    public long[] getLinkIds() {
+        return linkIds.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "GraphPath{" +
+                "length=" + length +
+                ", linkIds=" + Arrays.toString(linkIds) +
+                '}';
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.network;
+
+import no.vegvesen.nvdbapi.client.model.Coordinates;
+import no.vegvesen.nvdbapi.client.model.Geometry;
+import no.vegvesen.nvdbapi.client.model.ResultSet;
+import no.vegvesen.nvdbapi.client.model.SpatialType;
+import no.vegvesen.nvdbapi.client.model.roadnet.Link;
+import no.vegvesen.nvdbapi.client.spatial.Neighbour;
+import no.vegvesen.nvdbapi.client.spatial.SpatialIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Converts between link positions ({@code position@linkId}, as in placements) and coordinates, using link geometries
+ * already downloaded, instead of asking the API.
+ * <p>
+ * Positions are interpolated along the 2D length of the link geometry. Vertices and their cumulative lengths are
+ * packed into one array, and link ids are hashed, so {@link #locate(long, double, double[])} is a hash lookup and a
+ * binary search over the vertices of one link, and allocates nothing.
+ * <p>
+ * Instances are immutable and safe to use from several threads.
+ */
+public final class LinearReferencing {
+    private static final int STRIDE = 4;
+
+    private final long[] linkIds;
+    private final double[] starts;
+    private final double[] ends;
+    private final int[] offsets;
+    private final double[] vertices;
+    private final long[] hashKeys;
+    private final int[] hashParts;
+    private final SpatialIndex index;
+
+    private LinearReferencing(List<Part> parts) {
+        parts.sort(Comparator.<Part>comparingLong(p -> p.linkId).thenComparingDouble(p -> p.start));
+        int n = parts.size();
+        linkIds = new long[n];
+        starts = new double[n];
+        ends = new double[n];
+        offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = offsets[i] + parts.get(i).coordinates.getNumPoints();
+        }
+
+        // x, y, z and length along the link of every vertex, side by side so a lookup touches few cache lines
+        vertices = new double[offsets[n] * STRIDE];
+        SpatialIndex.Builder spatial = SpatialIndex.newBuilder();
+        for (int i = 0; i < n; i++) {
+            Part part = parts.get(i);
+            linkIds[i] = part.linkId;
+            starts[i] = part.start;
+            ends[i] = part.end;
+            Coordinates c = part.coordinates;
+            double measure = 0;
+            for (int p = 0; p < c.getNumParts(); p++) {
+                for (int v = c.getPartStart(p); v < c.getPartEnd(p); v++) {
+                    if (v > c.getPartStart(p)) {
+                        measure += c.distance(v - 1, v);
+                    }
+                    int at = (offsets[i] + v) * STRIDE;
+                    vertices[at] = c.getX(v);
+                    vertices[at + 1] = c.getY(v);
+                    vertices[at + 2] = c.getZ(v);
+                    vertices[at + 3] = measure;
+                }
+            }
+            spatial.add(part.linkId, c);
+        }
+        index = spatial.build();
+
+        // Open addressing from link id to its first part
+        int capacity = Integer.highestOneBit(Math.max(2, n * 2 - 1)) << 1;
+        hashKeys = new long[capacity];
+        hashParts = new int[capacity];
+        Arrays.fill(hashParts, -1);
+        for (int i = 0; i < n; i++) {
+            if (i > 0 && linkIds[i - 1] == linkIds[i]) continue;
+            int slot = slot(linkIds[i]);
+            while (hashParts[slot] >= 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            hashKeys[slot] = linkIds[i];
+            hashParts[slot] = i;
+        }
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Writes the coordinates of {@code position@linkId} to {@code xyz}: x and y, and z if the array has room for it.
+     * Z is {@code NaN} for 2D geometries.
+     *
+     * @return {@code false} if no link part holds the position, leaving {@code xyz} untouched
+     */
+    public boolean locate(long linkId, double position, double[] xyz) {
+        int part = findPart(linkId, position);
+        if (part < 0) return false;
+
+        int first = offsets[part], last = offsets[part + 1] - 1;
+        double target = fraction(part, position) * measure(last);
+
+        // Last vertex at or before the target, leaving room for the segment after it
+        int lo = first, hi = Math.max(first, last - 1);
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (measure(mid) <= target) lo = mid;
+            else hi = mid - 1;
+        }
+        int next = Math.min(lo + 1, last);
+        double length = measure(next) - measure(lo);
+        double t = length > 0 ? Math.min(1, (target - measure(lo)) / length) : 0;
+
+        int a = lo * STRIDE, b = next * STRIDE;
+        xyz[0] = vertices[a] + t * (vertices[b] - vertices[a]);
+        xyz[1] = vertices[a + 1] + t * (vertices[b + 1] - vertices[a + 1]);
+        if (xyz.length > 2) {
+            xyz[2] = vertices[a + 2] + t * (vertices[b + 2] - vertices[a + 2]);
+        }
+        return true;
+    }
+
+    /**
+     * @return the part of the link between two positions, as a line string from {@code from} towards {@code to},
+     * or empty if the positions are not on the same link part
+     */
+    public Optional<Coordinates> subLine(long linkId, double from, double to) {
+        int part = findPart(linkId, from);
+        if (part < 0 || part != findPart(linkId, to)) return Optional.empty();
+
+        int first = offsets[part], last = offsets[part + 1] - 1;
+        double total = measure(last);
+        double fromMeasure = fraction(part, from) * total, toMeasure = fraction(part, to) * total;
+        double low = Math.min(fromMeasure, toMeasure), high = Math.max(fromMeasure, toMeasure);
+
+        double[] xyz = {0, 0, Double.NaN};
+        Coordinates.Builder line = Coordinates.newBuilder(SpatialType.LINE_STRING);
+        locate(linkId, from, xyz);
+        line.addPoint(xyz[0], xyz[1], xyz[2]);
+        for (int k = first; k <= last; k++) {
+            int v = fromMeasure <= toMeasure ? k : first + last - k;
+            if (measure(v) > low && measure(v) < high) {
+                line.addPoint(vertices[v * STRIDE], vertices[v * STRIDE + 1], vertices[v * STRIDE + 2]);
+            }
+        }
+        locate(linkId, to, xyz);
+        line.addPoint(xyz[0], xyz[1], xyz[2]);
+        return Optional.of(line.build());
+    }
+
+    /**
+     * Projects a point onto the given link.
+     *
+     * @return relative position on the link nearest to the point, or {@code NaN} if the link is unknown
+     */
+    public double positionOf(long linkId, double x, double y) {
+        int first = firstPart(linkId);
+        if (first < 0) return Double.NaN;
+
+        double[] projection = new double[3];
+        double bestDistance = Double.POSITIVE_INFINITY, bestPosition = Double.NaN;
+        for (int part = first; part < linkIds.length && linkIds[part] == linkId; part++) {
+            double distance = project(part, x, y, projection);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                bestPosition = projection[0];
+            }
+        }
+        return bestPosition;
+    }
+
+    /**
+     * Finds the link nearest to a point and the position on it closest to the point.
+     *
+     * @param maxDistance links farther away than this are not considered
+     * @return the position, or empty if no link is within {@code maxDistance}
+     */
+    public Optional<LinkPosition> project(double x, double y, double maxDistance) {
+        List<Neighbour> nearest = index.nearest(x, y, 1, maxDistance);
+        if (nearest.isEmpty()) return Optional.empty();
+
+        int part = nearest.get(0).getEntry();
+        double[] projection = new double[3];
+        double distance = Math.sqrt(project(part, x, y, projection));
+        return Optional.of(new LinkPosition(linkIds[part], projection[0], projection[1], projection[2], distance));
+    }
+
+    /**
+     * Writes position, x and y of the point on the part closest to (x, y) to {@code result}.
+     *
+     * @return the squared distance to that point
+     */
+    private double project(int part, double x, double y, double[] result) {
+        int first = offsets[part], last = offsets[part + 1] - 1;
+        double best = Double.POSITIVE_INFINITY;
+        for (int v = first; v <= Math.max(first, last - 1); v++) {
+            int next = Math.min(v + 1, last);
+            int a = v * STRIDE, b = next * STRIDE;
+            double x1 = vertices[a], y1 = vertices[a + 1];
+            double dx = vertices[b] - x1, dy = vertices[b + 1] - y1;
+            double lengthSquared = dx * dx + dy * dy;
+            if (lengthSquared > 0 && vertices[b + 3] == vertices[a + 3]) {
+                // Gap between the parts of a multi-part geometry
+                continue;
+            }
+            double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+            double px = x1 + t * dx, py = y1 + t * dy;
+            double distance = (x - px) * (x - px) + (y - py) * (y - py);
+            if (distance < best) {
+                best = distance;
+                result[0] = toPosition(part, vertices[a + 3] + t * (vertices[b + 3] - vertices[a + 3]));
+                result[1] = px;
+                result[2] = py;
+            }
+        }
+        return best;
+    }
+
+    private double measure(int vertex) {
+        return vertices[vertex * STRIDE + 3];
+    }
+
+    private double toPosition(int part, double measure) {
+        double total = measure(offsets[part + 1] - 1);
+        double fraction = total > 0 ? measure / total : 0;
+        return starts[part] + fraction * (ends[part] - starts[part]);
+    }
+
+    private double fraction(int part, double position) {
+        double span = ends[part] - starts[part];
+        return span <= 0 ? 0 : Math.max(0, Math.min(1, (position - starts[part]) / span));
+    }
+
+    private int findPart(long linkId, double position) {
+        int part = firstPart(linkId);
+        if (part < 0) return -1;
+        while (part + 1 < linkIds.length && linkIds[part + 1] == linkId && starts[part + 1] <= position) {
+            part++;
+        }
+        return starts[part] <= position && position <= ends[part] ? part : -1;
+    }
+
+    private int firstPart(long linkId) {
+        int slot = slot(linkId);
+        while (hashParts[slot] >= 0) {
+            if (hashKeys[slot] == linkId) return hashParts[slot];
+            slot = (slot + 1) & (hashKeys.length - 1);
+        }
+        return -1;
+    }
+
+    private int slot(long linkId) {
+        long h = linkId * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (hashKeys.length - 1);
+    }
+
+    public static class Builder {
+        private final List<Part> parts = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @throws IllegalArgumentException if the link has no geometry
+         */
+        public Builder add(Link link) {
+            Objects.requireNonNull(link, "Missing link argument!");
+            Geometry geometry = link.getGeometry()
+                    .orElseThrow(() -> new IllegalArgumentException("Link " + link.getId() + " has no geometry."));
+            return add(link.getId(), link.getStart(), link.getEnd(), geometry.getCoordinates());
+        }
+
+        /**
+         * Adds the part of a link between two positions, with its geometry running from {@code start} to {@code end}.
+         */
+        public Builder add(long linkId, double start, double end, Coordinates coordinates) {
+            Objects.requireNonNull(coordinates, "Missing coordinates argument!");
+            if (coordinates.isEmpty()) {
+                throw new IllegalArgumentException("Link " + linkId + " has an empty geometry.");
+            }
+            if (start > end) {
+                throw new IllegalArgumentException("Start cannot be greater than end.");
+            }
+            parts.add(new Part(linkId, start, end, coordinates));
+            return this;
+        }
+
+        public Builder addAll(Iterable<Link> links) {
+            links.forEach(this::add);
+            return this;
+        }
+
+        /**
+         * Adds every link of the result, page by page, for instance from {@code RoadNetClient.getLinks()}.
+         */
+        public Builder addAll(ResultSet<Link> links) {
+            while (links.hasNext()) {
+                addAll(links.next());
+            }
+            return this;
+        }
+
+        public LinearReferencing build() {
+            return new LinearReferencing(new ArrayList<>(parts));
+        }
+    }
+
+    private static final class Part {
+        private final long linkId;
+        private final double start;
+        private final double end;
+        private final Coordinates coordinates;
+
+        Part(long linkId, double start, double end, Coordinates coordinates) {
+            this.linkId = linkId;
+            this.start = start;
+            this.end = end;
+            this.coordinates = coordinates;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.network;
+
+/**
+ * A point projected onto a link, found by {@link LinearReferencing#project(double, double, double)}.
+ */
+public final class LinkPosition {
+    private final long linkId;
+    private final double position;
+    private final double x;
+    private final double y;
+    private final double distance;
+
+    LinkPosition(long linkId, double position, double x, double y, double distance) {
+        this.linkId = linkId;
+        this.position = position;
+        this.x = x;
+        this.y = y;
+        this.distance = distance;
+    }
+
+    public long getLinkId() {
+        return linkId;
+    }
+
+    /**
+     * @return relative position on the link, between 0 and 1
+     */
+    public double getPosition() {
+        return position;
+    }
+
+    /**
+     * @return x of the projected point on the link
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * @return y of the projected point on the link
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return distance from the given point to the link
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    @Override
+    public String toString() {
+        return position + "@" + linkId;
+    }
+}
@@ -0,0 +1,628 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.network;
+
+import no.vegvesen.nvdbapi.client.model.Coordinates;
+import no.vegvesen.nvdbapi.client.model.Geometry;
+import no.vegvesen.nvdbapi.client.model.ResultSet;
+import no.vegvesen.nvdbapi.client.model.roadnet.Link;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Undirected topology of road net links, for shortest paths and connectivity without calling the API.
+ * <p>
+ * Node ids are interned to ints, and links and adjacency are kept in primitive arrays in compressed sparse row
+ * form: the links at node {@code n} are {@code adjacency[offsets[n]]} up to {@code adjacency[offsets[n + 1]]}.
+ * A link id can occur several times, once for each part of the link with its own start and end position.
+ * <p>
+ * Instances are immutable and safe to query from several threads. Each querying thread keeps its own search arrays,
+ * sized by the number of nodes, for as long as the graph is in use.
+ */
+public final class RoadNetGraph {
+    private final String[] nodeIds;
+    private final Map<String, Integer> nodeIndex;
+    private final long[] linkIds;
+    private final double[] starts;
+    private final double[] ends;
+    private final double[] lengths;
+    private final int[] fromNodes;
+    private final int[] toNodes;
+    private final double[] nodeX;
+    private final double[] nodeY;
+    private final boolean euclidean;
+    private final int[] offsets;
+    private final int[] adjacency;
+    private final int[] linksById;
+    private final ThreadLocal<Search> searches;
+    private volatile int[] components;
+
+    private RoadNetGraph(Builder b) {
+        int numLinks = b.numLinks;
+        nodeIds = b.nodeIds.toArray(new String[0]);
+        nodeIndex = b.nodeIndex;
+        linkIds = Arrays.copyOf(b.linkIds, numLinks);
+        starts = Arrays.copyOf(b.starts, numLinks);
+        ends = Arrays.copyOf(b.ends, numLinks);
+        lengths = Arrays.copyOf(b.lengths, numLinks);
+        fromNodes = Arrays.copyOf(b.fromNodes, numLinks);
+        toNodes = Arrays.copyOf(b.toNodes, numLinks);
+        nodeX = Arrays.copyOf(b.nodeX, nodeIds.length);
+        nodeY = Arrays.copyOf(b.nodeY, nodeIds.length);
+        euclidean = isEuclidean();
+
+        offsets = new int[nodeIds.length + 1];
+        for (int i = 0; i < numLinks; i++) {
+            offsets[fromNodes[i] + 1]++;
+            offsets[toNodes[i] + 1]++;
+        }
+        for (int n = 0; n < nodeIds.length; n++) {
+            offsets[n + 1] += offsets[n];
+        }
+        adjacency = new int[numLinks * 2];
+        int[] fill = Arrays.copyOf(offsets, nodeIds.length);
+        for (int i = 0; i < numLinks; i++) {
+            adjacency[fill[fromNodes[i]]++] = i;
+            adjacency[fill[toNodes[i]]++] = i;
+        }
+
+        // Links sorted by id, then start, for finding the link part holding a position
+        linksById = sortedByIdAndStart(linkIds, starts);
+        searches = ThreadLocal.withInitial(() -> new Search(nodeIds.length));
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public int getNumNodes() {
+        return nodeIds.length;
+    }
+
+    public int getNumLinks() {
+        return linkIds.length;
+    }
+
+    /**
+     * @return index of the node, or -1 if no link touches it
+     */
+    public int getNode(String nodeId) {
+        Integer node = nodeIndex.get(nodeId);
+        return node == null ? -1 : node;
+    }
+
+    public String getNodeId(int node) {
+        return nodeIds[node];
+    }
+
+    /**
+     * @return indices of the links at the node
+     */
+    public int[] getLinksAt(int node) {
+        return Arrays.copyOfRange(adjacency, offsets[node], offsets[node + 1]);
+    }
+
+    public long getLinkId(int link) {
+        return linkIds[link];
+    }
+
+    public double getLinkStart(int link) {
+        return starts[link];
+    }
+
+    public double getLinkEnd(int link) {
+        return ends[link];
+    }
+
+    public double getLinkLength(int link) {
+        return lengths[link];
+    }
+
+    public int getStartNode(int link) {
+        return fromNodes[link];
+    }
+
+    public int getEndNode(int link) {
+        return toNodes[link];
+    }
+
+    /**
+     * @return index of the link part that holds {@code position} on link {@code linkId}, or -1 if there is none
+     */
+    public int findLink(long linkId, double position) {
+        int lo = 0, hi = linksById.length - 1, found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int link = linksById[mid];
+            if (linkIds[link] < linkId || (linkIds[link] == linkId && starts[link] <= position)) {
+                found = link;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found >= 0 && linkIds[found] == linkId && position <= ends[found] ? found : -1;
+    }
+
+    /**
+     * @return the shortest path between two nodes, or empty if they are not connected
+     * @throws IllegalArgumentException if a node is not in the graph
+     */
+    public Optional<GraphPath> shortestPath(String fromNode, String toNode) {
+        int from = requireNode(fromNode), to = requireNode(toNode);
+
+        Search search = searches.get();
+        search.reset();
+        search.reach(from, 0, -1, heuristic(from, to, 0, to, 0));
+        run(search, Double.POSITIVE_INFINITY, to, 0, to, 0);
+        if (search.bestNode < 0) {
+            return Optional.empty();
+        }
+        IntList links = new IntList();
+        search.collectPath(search.bestNode, links, this);
+        return Optional.of(path(search.best, links.reversed()));
+    }
+
+    /**
+     * Finds the shortest path between two positions given as link id and relative position, as in placements
+     * returned by the API. Only the travelled part of the first and last link is counted.
+     *
+     * @return the shortest path, or empty if the positions are not connected
+     * @throws IllegalArgumentException if a position is not on any link in the graph
+     */
+    public Optional<GraphPath> shortestPath(long fromLinkId, double fromPosition, long toLinkId, double toPosition) {
+        int fromLink = requireLink(fromLinkId, fromPosition), toLink = requireLink(toLinkId, toPosition);
+        double fromFraction = fraction(fromLink, fromPosition), toFraction = fraction(toLink, toPosition);
+
+        int target1 = fromNodes[toLink], target2 = toNodes[toLink];
+        double remaining1 = toFraction * lengths[toLink], remaining2 = (1 - toFraction) * lengths[toLink];
+        Search search = searches.get();
+        search.reset();
+        int source1 = fromNodes[fromLink], source2 = toNodes[fromLink];
+        double distance1 = fromFraction * lengths[fromLink], distance2 = (1 - fromFraction) * lengths[fromLink];
+        search.reach(source1, distance1, -1, distance1 + heuristic(source1, target1, remaining1, target2, remaining2));
+        search.reach(source2, distance2, -1, distance2 + heuristic(source2, target1, remaining1, target2, remaining2));
+
+        double direct = fromLink == toLink ? Math.abs(toFraction - fromFraction) * lengths[fromLink] : Double.POSITIVE_INFINITY;
+        run(search, direct, target1, remaining1, target2, remaining2);
+        if (search.best == Double.POSITIVE_INFINITY) {
+            return Optional.empty();
+        }
+
+        IntList links = new IntList();
+        if (search.bestNode >= 0) {
+            links.add(toLink);
+            search.collectPath(search.bestNode, links, this);
+        }
+        links.add(fromLink);
+        return Optional.of(path(search.best, links.reversed()));
+    }
+
+    /**
+     * Runs A* from the nodes already reached until no path can beat the best one found. A path may end at
+     * {@code target1} or {@code target2}, with the given distance remaining from each.
+     */
+    private void run(Search search, double best, int target1, double remaining1, int target2, double remaining2) {
+        search.best = best;
+        search.bestNode = -1;
+        while (!search.queue.isEmpty()) {
+            if (search.queue.peekDistance() >= search.best) break;
+            int node = search.queue.pop();
+            if (!search.settle(node)) continue;
+
+            double distance = search.distance(node);
+            double remaining = node == target1 ? remaining1 : node == target2 ? remaining2 : Double.NaN;
+            if (node == target1 && node == target2) remaining = Math.min(remaining1, remaining2);
+            if (distance + remaining < search.best) {
+                search.best = distance + remaining;
+                search.bestNode = node;
+            }
+
+            for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                int link = adjacency[i];
+                int other = otherNode(link, node);
+                double candidate = distance + lengths[link];
+                if (candidate < search.distance(other)) {
+                    search.reach(other, candidate, link,
+                                 candidate + heuristic(other, target1, remaining1, target2, remaining2));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a lower bound for the distance from {@code node} to the nearest target, or 0 if there is none
+     */
+    private double heuristic(int node, int target1, double remaining1, int target2, double remaining2) {
+        if (!euclidean) return 0;
+        double h = Math.min(straightLine(node, target1) + remaining1, straightLine(node, target2) + remaining2);
+        // Shaved slightly so rounding cannot make it exceed the true distance
+        return h * (1 - 1e-9);
+    }
+
+    private double straightLine(int a, int b) {
+        double dx = nodeX[a] - nodeX[b], dy = nodeY[a] - nodeY[b];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Straight-line distance is a valid A* heuristic if every node has a position and no link is shorter than the
+     * straight line between its nodes. That holds when all links were measured from their geometry.
+     */
+    boolean isEuclidean() {
+        for (int n = 0; n < nodeIds.length; n++) {
+            if (Double.isNaN(nodeX[n])) return false;
+        }
+        for (int i = 0; i < linkIds.length; i++) {
+            if (straightLine(fromNodes[i], toNodes[i]) > lengths[i] * (1 + 1e-9) + 1e-9) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return number of connected components, counting nodes only
+     */
+    public int getNumComponents() {
+        int[] c = components();
+        int max = -1;
+        for (int component : c) {
+            max = Math.max(max, component);
+        }
+        return max + 1;
+    }
+
+    /**
+     * @return the connected component of the node, numbered from 0
+     */
+    public int getComponent(int node) {
+        return components()[node];
+    }
+
+    public boolean isConnected(String nodeA, String nodeB) {
+        return getComponent(requireNode(nodeA)) == getComponent(requireNode(nodeB));
+    }
+
+    private int[] components() {
+        int[] c = components;
+        if (c == null) {
+            c = new int[nodeIds.length];
+            Arrays.fill(c, -1);
+            int[] stack = new int[nodeIds.length];
+            int next = 0;
+            for (int start = 0; start < c.length; start++) {
+                if (c[start] >= 0) continue;
+                int top = 0;
+                stack[top++] = start;
+                c[start] = next;
+                while (top > 0) {
+                    int node = stack[--top];
+                    for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                        int other = otherNode(adjacency[i], node);
+                        if (c[other] < 0) {
+                            c[other] = next;
+                            stack[top++] = other;
+                        }
+                    }
+                }
+                next++;
+            }
+            components = c;
+        }
+        return c;
+    }
+
+    int otherNode(int link, int node) {
+        return fromNodes[link] == node ? toNodes[link] : fromNodes[link];
+    }
+
+    private double fraction(int link, double position) {
+        double span = ends[link] - starts[link];
+        return span <= 0 ? 0 : (position - starts[link]) / span;
+    }
+
+    private GraphPath path(double length, int[] links) {
+        long[] ids = new long[links.length];
+        for (int i = 0; i < links.length; i++) {
+            ids[i] = linkIds[links[i]];
+        }
+        return new GraphPath(length, links, ids);
+    }
+
+    private int requireNode(String nodeId) {
+        int node = getNode(Objects.requireNonNull(nodeId, "Missing node argument!"));
+        if (node < 0) {
+            throw new IllegalArgumentException("Unknown node " + nodeId);
+        }
+        return node;
+    }
+
+    private int requireLink(long linkId, double position) {
+        int link = findLink(linkId, position);
+        if (link < 0) {
+            throw new IllegalArgumentException("No link in graph for position " + position + "@" + linkId);
+        }
+        return link;
+    }
+
+    private static int[] sortedByIdAndStart(long[] ids, double[] starts) {
+        Integer[] order = new Integer[ids.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> ids[a] != ids[b] ? Long.compare(ids[a], ids[b]) : Double.compare(starts[a], starts[b]));
+        int[] sorted = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = order[i];
+        }
+        return sorted;
+    }
+
+    public static class Builder {
+        private final List<String> nodeIds = new ArrayList<>();
+        private final Map<String, Integer> nodeIndex = new HashMap<>();
+        private long[] linkIds = new long[1024];
+        private double[] starts = new double[1024];
+        private double[] ends = new double[1024];
+        private double[] lengths = new double[1024];
+        private int[] fromNodes = new int[1024];
+        private int[] toNodes = new int[1024];
+        private double[] nodeX = new double[0];
+        private double[] nodeY = new double[0];
+        private int numLinks;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds the link with the 2D length of its geometry. The end points of the geometry also place its nodes,
+         * which speeds up shortest path searches if all links are added this way.
+         *
+         * @throws IllegalArgumentException if the link has no geometry
+         */
+        public Builder add(Link link) {
+            Geometry geometry = link.getGeometry()
+                    .orElseThrow(() -> new IllegalArgumentException("Link " + link.getId() + " has no geometry to measure."));
+            Coordinates coordinates = geometry.getCoordinates();
+            add(link, coordinates.getLength());
+            if (!coordinates.isEmpty()) {
+                int last = coordinates.getNumPoints() - 1;
+                place(fromNodes[numLinks - 1], coordinates.getX(0), coordinates.getY(0));
+                place(toNodes[numLinks - 1], coordinates.getX(last), coordinates.getY(last));
+            }
+            return this;
+        }
+
+        public Builder add(Link link, double length) {
+            Objects.requireNonNull(link, "Missing link argument!");
+            if (link.getStartNode() == null || link.getEndNode() == null) {
+                throw new IllegalArgumentException("Link " + link.getId() + " is missing start or end node.");
+            }
+            if (numLinks == linkIds.length) {
+                int capacity = numLinks * 2;
+                linkIds = Arrays.copyOf(linkIds, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                fromNodes = Arrays.copyOf(fromNodes, capacity);
+                toNodes = Arrays.copyOf(toNodes, capacity);
+            }
+            linkIds[numLinks] = link.getId();
+            starts[numLinks] = link.getStart();
+            ends[numLinks] = link.getEnd();
+            lengths[numLinks] = length;
+            fromNodes[numLinks] = intern(link.getStartNode());
+            toNodes[numLinks] = intern(link.getEndNode());
+            numLinks++;
+            return this;
+        }
+
+        public Builder addAll(Iterable<Link> links) {
+            links.forEach(this::add);
+            return this;
+        }
+
+        /**
+         * Adds every link of the result, page by page, for instance from {@code RoadNetClient.getLinks()}.
+         */
+        public Builder addAll(ResultSet<Link> links) {
+            while (links.hasNext()) {
+                addAll(links.next());
+            }
+            return this;
+        }
+
+        public RoadNetGraph build() {
+            return new RoadNetGraph(this);
+        }
+
+        private int intern(String nodeId) {
+            Integer node = nodeIndex.get(nodeId);
+            if (node == null) {
+                node = nodeIds.size();
+                nodeIndex.put(nodeId, node);
+                nodeIds.add(nodeId);
+                if (node == nodeX.length) {
+                    int capacity = Math.max(1024, node * 2);
+                    nodeX = Arrays.copyOf(nodeX, capacity);
+                    nodeY = Arrays.copyOf(nodeY, capacity);
+                    Arrays.fill(nodeX, node, capacity, Double.NaN);
+                    Arrays.fill(nodeY, node, capacity, Double.NaN);
+                }
+            }
+            return node;
+        }
+
+        private void place(int node, double x, double y) {
+            if (Double.isNaN(nodeX[node])) {
+                nodeX[node] = x;
+                nodeY[node] = y;
+            }
+        }
+    }
+
+    /**
+     * Per-thread search state. Entries are valid only for nodes stamped in the current search, so the arrays
+     * need not be cleared between searches.
+     */
+    private static final class Search {
+        private final double[] distances;
+        private final int[] previous;
+        private final int[] reached;
+        private final int[] settled;
+        private final NodeQueue queue = new NodeQueue();
+        private int stamp;
+        private double best;
+        private int bestNode;
+
+        Search(int numNodes) {
+            distances = new double[numNodes];
+            previous = new int[numNodes];
+            reached = new int[numNodes];
+            settled = new int[numNodes];
+        }
+
+        void reset() {
+            queue.clear();
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(reached, 0);
+                Arrays.fill(settled, 0);
+                stamp = 1;
+            }
+        }
+
+        double distance(int node) {
+            return reached[node] == stamp ? distances[node] : Double.POSITIVE_INFINITY;
+        }
+
+        void reach(int node, double distance, int viaLink, double priority) {
+            if (distance >= distance(node)) return;
+            reached[node] = stamp;
+            distances[node] = distance;
+            previous[node] = viaLink;
+            queue.push(node, priority);
+        }
+
+        /**
+         * @return {@code false} if the node was already settled, and this is a stale queue entry
+         */
+        boolean settle(int node) {
+            if (settled[node] == stamp) return false;
+            settled[node] = stamp;
+            return true;
+        }
+
+        void collectPath(int node, IntList links, RoadNetGraph graph) {
+            while (previous[node] >= 0) {
+                int link = previous[node];
+                links.add(link);
+                node = graph.otherNode(link, node);
+            }
+        }
+    }
+
+    private static final class NodeQueue {
+        private int[] nodes = new int[64];
+        private double[] distances = new double[64];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        double peekDistance() {
+            return distances[0];
+        }
+
+        void push(int node, double distance) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (distances[parent] <= distance) break;
+                nodes[i] = nodes[parent];
+                distances[i] = distances[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            distances[i] = distance;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            if (size > 0) {
+                int node = nodes[size];
+                double distance = distances[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && distances[child + 1] < distances[child]) child++;
+                    if (distances[child] >= distance) break;
+                    nodes[i] = nodes[child];
+                    distances[i] = distances[child];
+                    i = child;
+                }
+                nodes[i] = node;
+                distances[i] = distance;
+            }
+            return top;
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] reversed() {
+            int[] result = new int[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = values[size - 1 - i];
+            }
+            return result;
+        }
+    }
+}
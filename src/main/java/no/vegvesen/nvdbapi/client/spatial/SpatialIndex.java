@@ -0,0 +1,461 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.spatial;
+
+import no.vegvesen.nvdbapi.client.model.Coordinates;
+import no.vegvesen.nvdbapi.client.model.Envelope;
+import no.vegvesen.nvdbapi.client.model.Geometry;
+import no.vegvesen.nvdbapi.client.model.roadnet.Link;
+import no.vegvesen.nvdbapi.client.model.roadobjects.RoadObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+/**
+ * Read-only R-tree over the envelopes of harvested geometries, for local window and nearest-neighbour queries.
+ * <p>
+ * The tree is bulk loaded: entries are sorted along a Hilbert curve and packed into nodes of fixed size, level by
+ * level. Nodes live in primitive arrays, so the index costs about 50 bytes per entry in addition to the geometries.
+ * Entries are numbered in the order they were added. Entries without geometry keep their number but are never found.
+ * <p>
+ * Instances are immutable and safe to query from several threads.
+ */
+public final class SpatialIndex {
+    private static final int HILBERT_SIZE = 1 << 16;
+    private static final int EXACT = -1;
+
+    private final int nodeSize;
+    private final long[] ids;
+    private final Coordinates[] geometries;
+    private final double[] boxes;
+    private final int[] indices;
+    private final int[] levelBounds;
+
+    private SpatialIndex(int nodeSize, long[] ids, Coordinates[] geometries,
+                         double[] boxes, int[] indices, int[] levelBounds) {
+        this.nodeSize = nodeSize;
+        this.ids = ids;
+        this.geometries = geometries;
+        this.boxes = boxes;
+        this.indices = indices;
+        this.levelBounds = levelBounds;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Indexes road objects by their own geometry. Entry numbers follow the iteration order of {@code objects}.
+     */
+    public static SpatialIndex ofRoadObjects(Collection<RoadObject> objects) {
+        Builder builder = newBuilder();
+        objects.forEach(o -> builder.add(o.getId(), o.getGeometry()));
+        return builder.build();
+    }
+
+    /**
+     * Indexes links by their geometry. Entry numbers follow the iteration order of {@code links}, which tells apart
+     * links that share an id.
+     */
+    public static SpatialIndex ofLinks(Collection<Link> links) {
+        Builder builder = newBuilder();
+        links.forEach(l -> builder.add(l.getId(), l.getGeometry().orElse(null)));
+        return builder.build();
+    }
+
+    /**
+     * @return number of entries, including those without geometry
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    public long getId(int entry) {
+        return ids[entry];
+    }
+
+    /**
+     * @return coordinates of the entry, or {@code null} if it was added with an envelope only or without geometry
+     */
+    public Coordinates getCoordinates(int entry) {
+        return geometries[entry];
+    }
+
+    /**
+     * @return entries whose envelope intersects {@code window}, in no particular order
+     */
+    public int[] search(Envelope window) {
+        IntList found = new IntList();
+        search(window, found::add);
+        return found.toArray();
+    }
+
+    /**
+     * Passes each entry whose envelope intersects {@code window} to {@code consumer}, without collecting them.
+     */
+    public void search(Envelope window, IntConsumer consumer) {
+        Objects.requireNonNull(window, "Missing window argument!");
+        if (boxes.length == 0) return;
+
+        double minX = window.getMinX(), minY = window.getMinY(), maxX = window.getMaxX(), maxY = window.getMaxY();
+        IntList stack = new IntList();
+        stack.add(root());
+        stack.add(levelBounds.length - 1);
+        while (stack.size() > 0) {
+            int level = stack.pop();
+            int node = stack.pop();
+            int b = node * 4;
+            if (boxes[b] > maxX || boxes[b + 1] > maxY || boxes[b + 2] < minX || boxes[b + 3] < minY) {
+                continue;
+            }
+            if (level == 0) {
+                consumer.accept(indices[node]);
+                continue;
+            }
+            int end = Math.min(indices[node] + nodeSize, levelBounds[level - 1]);
+            for (int child = indices[node]; child < end; child++) {
+                stack.add(child);
+                stack.add(level - 1);
+            }
+        }
+    }
+
+    /**
+     * @return the {@code k} entries nearest to the point, closest first
+     */
+    public List<Neighbour> nearest(double x, double y, int k) {
+        return nearest(x, y, k, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Finds the entries nearest to the point, measured to their line segments and points. Entries added with an
+     * envelope only are measured to the envelope.
+     *
+     * @param k           max number of entries to return
+     * @param maxDistance entries farther away than this are left out
+     * @return up to {@code k} entries, closest first
+     */
+    public List<Neighbour> nearest(double x, double y, int k, double maxDistance) {
+        if (k < 1) {
+            throw new IllegalArgumentException("K must be greater than 0.");
+        }
+        if (boxes.length == 0) return Collections.emptyList();
+
+        List<Neighbour> result = new ArrayList<>(Math.min(k, 16));
+        NodeQueue queue = new NodeQueue();
+        queue.push(root(), levelBounds.length - 1, boxDistance(root(), x, y));
+        while (queue.size > 0 && result.size() < k) {
+            double distance = queue.peekDistance();
+            if (distance > maxDistance) break;
+            int level = queue.peekLevel();
+            int node = queue.pop();
+            if (level == EXACT) {
+                int entry = indices[node];
+                result.add(new Neighbour(entry, ids[entry], distance));
+            } else if (level == 0) {
+                // The envelope distance is a lower bound, the exact distance is only needed once the entry comes first
+                queue.push(node, EXACT, entryDistance(node, x, y));
+            } else {
+                int end = Math.min(indices[node] + nodeSize, levelBounds[level - 1]);
+                for (int child = indices[node]; child < end; child++) {
+                    queue.push(child, level - 1, boxDistance(child, x, y));
+                }
+            }
+        }
+        return result;
+    }
+
+    private int root() {
+        return levelBounds[levelBounds.length - 1] - 1;
+    }
+
+    private double entryDistance(int node, double x, double y) {
+        Coordinates geometry = geometries[indices[node]];
+        return geometry == null ? boxDistance(node, x, y) : geometry.distanceTo(x, y);
+    }
+
+    private double boxDistance(int node, double x, double y) {
+        int b = node * 4;
+        double dx = Math.max(0, Math.max(boxes[b] - x, x - boxes[b + 2]));
+        double dy = Math.max(0, Math.max(boxes[b + 1] - y, y - boxes[b + 3]));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * @return index along a Hilbert curve of order 16 for a cell on the curve's grid
+     */
+    static long hilbert(int x, int y) {
+        long d = 0;
+        for (int s = HILBERT_SIZE / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = HILBERT_SIZE - 1 - x;
+                    y = HILBERT_SIZE - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    public static class Builder {
+        private int nodeSize = 16;
+        private long[] ids = new long[64];
+        private Coordinates[] geometries = new Coordinates[64];
+        private double[] boxes = new double[256];
+        private int size;
+
+        private Builder() {
+        }
+
+        public Builder withNodeSize(int nodeSize) {
+            if (nodeSize < 2) {
+                throw new IllegalArgumentException("Node size must be greater than 1.");
+            }
+            this.nodeSize = nodeSize;
+            return this;
+        }
+
+        /**
+         * Adds an entry for the geometry. The WKT is parsed if it has not been already.
+         *
+         * @param geometry the geometry, or {@code null} to reserve an entry that is never found
+         */
+        public Builder add(long id, Geometry geometry) {
+            return add(id, geometry == null ? null : geometry.getCoordinates());
+        }
+
+        public Builder add(long id, Coordinates coordinates) {
+            Envelope envelope = coordinates == null ? null : coordinates.getEnvelope();
+            return add(id, coordinates, envelope);
+        }
+
+        /**
+         * Adds an entry known only by its envelope. Nearest-neighbour queries measure to the envelope.
+         */
+        public Builder add(long id, Envelope envelope) {
+            return add(id, null, envelope);
+        }
+
+        private Builder add(long id, Coordinates coordinates, Envelope envelope) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                geometries = Arrays.copyOf(geometries, size * 2);
+                boxes = Arrays.copyOf(boxes, size * 8);
+            }
+            ids[size] = id;
+            geometries[size] = coordinates;
+            int b = size * 4;
+            if (envelope == null) {
+                Arrays.fill(boxes, b, b + 4, Double.NaN);
+            } else {
+                boxes[b] = envelope.getMinX();
+                boxes[b + 1] = envelope.getMinY();
+                boxes[b + 2] = envelope.getMaxX();
+                boxes[b + 3] = envelope.getMaxY();
+            }
+            size++;
+            return this;
+        }
+
+        public SpatialIndex build() {
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            int indexed = 0;
+            for (int i = 0; i < size; i++) {
+                int b = i * 4;
+                if (Double.isNaN(boxes[b])) continue;
+                minX = Math.min(minX, boxes[b]);
+                minY = Math.min(minY, boxes[b + 1]);
+                maxX = Math.max(maxX, boxes[b + 2]);
+                maxY = Math.max(maxY, boxes[b + 3]);
+                indexed++;
+            }
+
+            long[] entryIds = Arrays.copyOf(ids, size);
+            Coordinates[] entryGeometries = Arrays.copyOf(geometries, size);
+            if (indexed == 0) {
+                return new SpatialIndex(nodeSize, entryIds, entryGeometries, new double[0], new int[0], new int[0]);
+            }
+
+            // Sort entries by the Hilbert index of their centre; the entry number goes in the low bits
+            double width = Math.max(maxX - minX, Double.MIN_NORMAL), height = Math.max(maxY - minY, Double.MIN_NORMAL);
+            long[] keys = new long[indexed];
+            int k = 0;
+            for (int i = 0; i < size; i++) {
+                int b = i * 4;
+                if (Double.isNaN(boxes[b])) continue;
+                int hx = (int) ((HILBERT_SIZE - 1) * ((boxes[b] + boxes[b + 2]) / 2 - minX) / width);
+                int hy = (int) ((HILBERT_SIZE - 1) * ((boxes[b + 1] + boxes[b + 3]) / 2 - minY) / height);
+                keys[k++] = hilbert(hx, hy) << 31 | i;
+            }
+            Arrays.sort(keys);
+
+            IntList bounds = new IntList();
+            int numNodes = indexed;
+            int count = indexed;
+            bounds.add(numNodes);
+            do {
+                count = (count + nodeSize - 1) / nodeSize;
+                numNodes += count;
+                bounds.add(numNodes);
+            } while (count > 1);
+            int[] levelBounds = bounds.toArray();
+
+            double[] nodeBoxes = new double[numNodes * 4];
+            int[] indices = new int[numNodes];
+            for (int n = 0; n < indexed; n++) {
+                int entry = (int) (keys[n] & Integer.MAX_VALUE);
+                System.arraycopy(boxes, entry * 4, nodeBoxes, n * 4, 4);
+                indices[n] = entry;
+            }
+
+            int node = indexed;
+            for (int level = 1; level < levelBounds.length; level++) {
+                int start = level == 1 ? 0 : levelBounds[level - 2];
+                int end = levelBounds[level - 1];
+                for (int first = start; first < end; first += nodeSize) {
+                    int last = Math.min(first + nodeSize, end);
+                    double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+                    double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+                    for (int child = first; child < last; child++) {
+                        int b = child * 4;
+                        x0 = Math.min(x0, nodeBoxes[b]);
+                        y0 = Math.min(y0, nodeBoxes[b + 1]);
+                        x1 = Math.max(x1, nodeBoxes[b + 2]);
+                        y1 = Math.max(y1, nodeBoxes[b + 3]);
+                    }
+                    int b = node * 4;
+                    nodeBoxes[b] = x0;
+                    nodeBoxes[b + 1] = y0;
+                    nodeBoxes[b + 2] = x1;
+                    nodeBoxes[b + 3] = y1;
+                    indices[node++] = first;
+                }
+            }
+            return new SpatialIndex(nodeSize, entryIds, entryGeometries, nodeBoxes, indices, levelBounds);
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[32];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int pop() {
+            return values[--size];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Binary min-heap of nodes by distance, kept in parallel arrays.
+     */
+    private static final class NodeQueue {
+        private int[] nodes = new int[64];
+        private int[] levels = new int[64];
+        private double[] distances = new double[64];
+        private int size;
+
+        void push(int node, int level, double distance) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                levels = Arrays.copyOf(levels, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (distances[parent] <= distance) break;
+                set(i, parent);
+                i = parent;
+            }
+            nodes[i] = node;
+            levels[i] = level;
+            distances[i] = distance;
+        }
+
+        double peekDistance() {
+            return distances[0];
+        }
+
+        int peekLevel() {
+            return levels[0];
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            if (size > 0) {
+                int node = nodes[size], level = levels[size];
+                double distance = distances[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && distances[child + 1] < distances[child]) child++;
+                    if (distances[child] >= distance) break;
+                    set(i, child);
+                    i = child;
+                }
+                nodes[i] = node;
+                levels[i] = level;
+                distances[i] = distance;
+            }
+            return top;
+        }
+
+        private void set(int to, int from) {
+            nodes[to] = nodes[from];
+            levels[to] = levels[from];
+            distances[to] = distances[from];
+        }
+    }
+}
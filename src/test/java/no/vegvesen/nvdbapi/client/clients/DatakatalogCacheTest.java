@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.vegvesen.nvdbapi.client.clients;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import no.vegvesen.nvdbapi.client.model.datakatalog.Datakatalog;
+import no.vegvesen.nvdbapi.client.model.datakatalog.Version;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class DatakatalogCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DatakatalogCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new DatakatalogCache(folder.getRoot().toPath().resolve("cache"));
+    }
+
+    @Test
+    public void storedVersionIsLoaded() {
+        cache.store(datakatalog(2, "2.13"));
+
+        Datakatalog loaded = cache.load(version(2, "2.13")).get();
+
+        assertEquals(2, loaded.getVersion().getId());
+        assertEquals("2.13", loaded.getVersion().getVersion());
+        assertEquals(LocalDate.of(2018, 10, 1), loaded.getVersion().getDate());
+        assertEquals("Fartsgrense", loaded.getType(105).get().getName());
+        assertEquals("Tekst", loaded.getDataTypeMap().get(1).getName());
+        assertEquals("meter", loaded.getUnits().get(0).getName());
+    }
+
+    @Test
+    public void uncachedVersionIsAMiss() {
+        assertFalse(cache.load(version(2, "2.13")).isPresent());
+
+        cache.store(datakatalog(2, "2.13"));
+
+        assertFalse(cache.load(version(2, "2.14")).isPresent());
+        assertFalse(cache.load(version(3, "2.13")).isPresent());
+    }
+
+    @Test
+    public void newVersionIsStoredNextToTheOld() {
+        cache.store(datakatalog(2, "2.13"));
+        cache.store(datakatalog(2, "2.14"));
+
+        assertEquals("2.13", cache.load(version(2, "2.13")).get().getVersion().getVersion());
+        assertEquals("2.14", cache.load(version(2, "2.14")).get().getVersion().getVersion());
+    }
+
+    @Test
+    public void fileWithOtherVersionIsIgnored() throws IOException {
+        cache.store(datakatalog(2, "2.13"));
+        Files.copy(cache.fileFor(version(2, "2.13")), cache.fileFor(version(2, "2.14")));
+
+        assertFalse(cache.load(version(2, "2.14")).isPresent());
+    }
+
+    @Test
+    public void corruptFileIsAMiss() throws IOException {
+        Version version = version(2, "2.13");
+        Files.createDirectories(cache.getDirectory());
+
+        Files.write(cache.fileFor(version), "not gzip".getBytes(StandardCharsets.UTF_8));
+        assertFalse(cache.load(version).isPresent());
+
+        cache.store(datakatalog(2, "2.13"));
+        byte[] stored = Files.readAllBytes(cache.fileFor(version));
+        Files.write(cache.fileFor(version), Arrays.copyOf(stored, stored.length / 2));
+        assertFalse(cache.load(version).isPresent());
+
+        gzip(cache.fileFor(version), "{\"versjon\":{\"id\":2,\"versjon\":\"2.13\"}");
+        assertFalse(cache.load(version).isPresent());
+
+        gzip(cache.fileFor(version), "{\"versjon\":{\"id\":2,\"versjon\":\"2.13\"},\"enheter\":{}}");
+        assertFalse(cache.load(version).isPresent());
+
+        // Storing again replaces the broken file
+        cache.store(datakatalog(2, "2.13"));
+        assertTrue(cache.load(version).isPresent());
+    }
+
+    @Test
+    public void unwritableDirectoryIsIgnored() throws IOException {
+        Path file = folder.newFile("not-a-directory").toPath();
+        DatakatalogCache broken = new DatakatalogCache(file);
+
+        broken.store(datakatalog(2, "2.13"));
+
+        assertEquals(Optional.empty(), broken.load(version(2, "2.13")));
+    }
+
+    private static Version version(int id, String version) {
+        return new Version(id, version, LocalDate.of(2018, 10, 1));
+    }
+
+    private static JsonObject datakatalog(int id, String version) {
+        String json = "{"
+            + "\"versjon\":{\"id\":" + id + ",\"versjon\":\"" + version + "\",\"dato\":\"2018-10-01\"},"
+            + "\"enheter\":[{\"id\":1,\"navn\":\"meter\",\"kortnavn\":\"m\"}],"
+            + "\"datatyper\":[{\"id\":1,\"navn\":\"Tekst\",\"kortnavn\":\"Tekst\"}],"
+            + "\"vegobjekttyper\":[{\"id\":105,\"navn\":\"Fartsgrense\",\"stedfesting\":\"LINJE\"}]"
+            + "}";
+        return new JsonParser().parse(json).getAsJsonObject();
+    }
+
+    private static void gzip(Path file, String content) throws IOException {
+        Path tmp = file.resolveSibling("gzip.tmp");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.clients;
+
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.sun.net.httpserver.HttpServer;
+import no.vegvesen.nvdbapi.client.gson.LinkParser;
+import no.vegvesen.nvdbapi.client.model.Page;
+import no.vegvesen.nvdbapi.client.model.roadnet.Link;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.UriBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class GenericResultSetTest {
+
+    private static final String LINK = "{\"veglenkeid\":%d,\"startposisjon\":0.0,\"sluttposisjon\":1.0,\"konnekteringslenke\":false}";
+
+    private HttpServer server;
+    private Client client;
+    private final List<String> queries = Collections.synchronizedList(new ArrayList<>());
+    // Pages served from /pages, each holding one link whose id is the page number
+    private volatile int lastPage = 4;
+    private volatile int failingPage = -1;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/pages", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            queries.add(query);
+            int number = query.contains("start=") ? Integer.parseInt(query.replaceAll(".*start=(\\d+).*", "$1")) : 0;
+            int status = 200;
+            String page;
+            if (number == failingPage) {
+                failingPage = -1;
+                status = 503;
+                page = "[]";
+            } else {
+                String next = number < lastPage ? ",\"neste\":{\"start\":\"" + (number + 1) + "\"}" : "";
+                page = "{\"objekter\":[" + String.format(LINK, number) + "],\"metadata\":{\"returnert\":1" + next + "}}";
+            }
+            byte[] body = page.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        client = ClientBuilder.newClient();
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void readsObjectsAndNextToken() {
+        String page = "{\"objekter\":[" + String.format(LINK, 1) + "," + String.format(LINK, 2) + "]," +
+                "\"metadata\":{\"antall\":5,\"returnert\":2,\"neste\":{\"start\":\"abc123\",\"href\":\"https://x/?start=abc123\"}}}";
+        List<Link> links = new ArrayList<>();
+
+        GenericResultSet.PageMetadata metadata = GenericResultSet.readPage(new StringReader(page), LinkParser::parse, links::add);
+
+        assertEquals(2, links.size());
+        assertEquals(2, links.get(1).getId());
+        assertEquals(Integer.valueOf(2), metadata.returned);
+        assertEquals("abc123", metadata.nextToken);
+    }
+
+    @Test
+    public void metadataMayComeFirst() {
+        String page = "{\"metadata\":{\"returnert\":1,\"neste\":{\"start\":\"t\"}},\"objekter\":[" + String.format(LINK, 7) + "]}";
+        List<Link> links = new ArrayList<>();
+
+        GenericResultSet.PageMetadata metadata = GenericResultSet.readPage(new StringReader(page), LinkParser::parse, links::add);
+
+        assertEquals(7, links.get(0).getId());
+        assertEquals("t", metadata.nextToken);
+    }
+
+    @Test
+    public void lastPageHasNoNextToken() {
+        String withNull = "{\"objekter\":[],\"metadata\":{\"returnert\":0,\"neste\":null}}";
+        String without = "{\"objekter\":[],\"metadata\":{\"returnert\":0}}";
+
+        for (String page : new String[] { withNull, without }) {
+            GenericResultSet.PageMetadata metadata = GenericResultSet.readPage(new StringReader(page), LinkParser::parse, l -> fail());
+            assertNull(metadata.nextToken);
+            assertEquals(Integer.valueOf(0), metadata.returned);
+        }
+    }
+
+    @Test
+    public void cursorSurvivesSerialization() throws IOException, ClassNotFoundException {
+        server.createContext("/vegnett/lenker", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            queries.add(query);
+            String page = query.contains("start=abc")
+                    ? "{\"objekter\":[" + String.format(LINK, 2) + "],\"metadata\":{\"returnert\":1}}"
+                    : "{\"objekter\":[" + String.format(LINK, 1) + "],\"metadata\":{\"returnert\":1,\"neste\":{\"start\":\"abc\"}}}";
+            byte[] body = page.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+
+        String url = "http://localhost:" + server.getAddress().getPort() + "/vegnett/lenker?kommune=5001";
+        GenericResultSet<Link> first = new GenericResultSet<>(client.target(url), Optional.of(Page.count(1)), (JsonReader r) -> LinkParser.parse(r));
+        first.next();
+
+        Cursor cursor = roundTrip(first.getCursor());
+
+        assertEquals(first.getCursor(), cursor);
+        assertEquals(1L, ObjectStreamClass.lookup(Cursor.class).getSerialVersionUID());
+        assertEquals(Optional.of("abc"), cursor.nextPage().getStart());
+        assertEquals(Integer.valueOf(1), cursor.nextPage().getCount());
+        assertEquals(1, cursor.getEmitted());
+        assertEquals(URI.create("https://mirror.example/api/v2/vegnett/lenker?kommune=5001"),
+                     cursor.rebase(UriBuilder.fromUri("https://mirror.example/api/v2"), "vegnett/lenker"));
+        try {
+            cursor.rebase(UriBuilder.fromUri(url), "vegobjekter/\\d+");
+            fail("Cursor for links accepted as road object cursor");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        URI rebased = cursor.rebase(UriBuilder.fromUri("http://localhost:" + server.getAddress().getPort()), "vegnett/lenker");
+        GenericResultSet<Link> resumed = new GenericResultSet<>(client.target(rebased), cursor, LinkParser::parse);
+        assertEquals(2, resumed.next().get(0).getId());
+        assertFalse(resumed.hasNext());
+        assertTrue(queries.get(1).contains("kommune=5001"));
+        assertTrue(queries.get(1).contains("start=abc"));
+    }
+
+    @Test
+    public void prefetchedPagesArriveInOrder() {
+        GenericResultSet<Link> result = pages().withPrefetch(2);
+
+        List<Long> ids = new ArrayList<>();
+        while (result.hasNext()) {
+            result.next().forEach(l -> ids.add(l.getId()));
+        }
+
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), ids);
+        assertNoPrefetchThread();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void treeParserConstructorStillWorks() {
+        String url = "http://localhost:" + server.getAddress().getPort() + "/pages";
+        GenericResultSet<Link> result =
+            new GenericResultSet<>(client.target(url), Optional.of(Page.count(1)), (JsonObject o) -> LinkParser.parse(o));
+
+        List<Long> ids = new ArrayList<>();
+        while (result.hasNext()) {
+            result.next().forEach(l -> ids.add(l.getId()));
+        }
+
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), ids);
+    }
+
+    @Test
+    public void failedPageIsFetchedAgainOnNextCall() {
+        failingPage = 2;
+        GenericResultSet<Link> result = pages().withPrefetch(3);
+
+        assertEquals(0, result.next().get(0).getId());
+        assertEquals(1, result.next().get(0).getId());
+        try {
+            result.next();
+            fail("Failed page was not reported");
+        } catch (RuntimeException expected) {
+        }
+
+        assertEquals(2, result.next().get(0).getId());
+        assertEquals(3, result.next().get(0).getId());
+        assertEquals(4, result.next().get(0).getId());
+        assertFalse(result.hasNext());
+        assertEquals(2, queries.stream().filter(q -> q.contains("start=2")).count());
+    }
+
+    @Test
+    public void closingStreamStopsPrefetching() throws InterruptedException {
+        lastPage = Integer.MAX_VALUE;
+
+        try (Stream<Link> links = pages().withPrefetch(2).stream()) {
+            assertEquals(3, links.limit(3).count());
+        }
+
+        assertNoPrefetchThread();
+        int requests = queries.size();
+        Thread.sleep(100);
+        assertEquals(requests, queries.size());
+    }
+
+    @Test
+    public void closeStopsPrefetching() {
+        lastPage = Integer.MAX_VALUE;
+        GenericResultSet<Link> result = pages().withPrefetch(2);
+        result.next();
+
+        result.close();
+
+        assertFalse(result.hasNext());
+        assertNoPrefetchThread();
+    }
+
+    private GenericResultSet<Link> pages() {
+        String url = "http://localhost:" + server.getAddress().getPort() + "/pages";
+        return new GenericResultSet<>(client.target(url), Optional.of(Page.count(1)), (JsonReader r) -> LinkParser.parse(r));
+    }
+
+    private static void assertNoPrefetchThread() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (System.nanoTime() < deadline) {
+            Set<String> threads = Thread.getAllStackTraces().keySet().stream()
+                                        .filter(Thread::isAlive)
+                                        .map(Thread::getName)
+                                        .collect(Collectors.toSet());
+            if (!threads.contains("nvdb-prefetch")) {
+                return;
+            }
+            Thread.yield();
+        }
+        fail("Prefetch thread still running");
+    }
+
+    private static Cursor roundTrip(Cursor cursor) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(cursor);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (Cursor) in.readObject();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.vegvesen.nvdbapi.client.clients;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import no.vegvesen.nvdbapi.client.exceptions.ClientException;
+import no.vegvesen.nvdbapi.client.model.Position;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class PositionClientTest {
+    private HttpServer server;
+    private ExecutorService executor;
+    private Client client;
+    private PositionClient positions;
+    private final Map<Integer, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/posisjon", this::respond);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        client = ClientBuilder.newClient();
+        positions = new PositionClient("http://localhost:" + server.getAddress().getPort(), client);
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void duplicatesAreLookedUpOnce() {
+        List<Position> result = lookup(Flux.just(1, 2, 1, 3, 2), 4);
+
+        assertEquals(Arrays.asList(1, 2, 1, 3, 2), refLinkIds(result));
+        assertEquals(3, requests.size());
+        assertTrue(requests.values().stream().allMatch(c -> c.get() == 1));
+    }
+
+    @Test
+    public void nearbyPointsAreRoundedToOneLookup() {
+        Flux<PositionRequest> points = Flux.just(101.2, 99.0, 104.9, 116.0)
+                                           .map(n -> PositionRequest.utm33(n, 200.0).build());
+
+        List<Position> result = positions.getPlacements(points, 4, 10.0).collectList().block();
+
+        assertEquals(Arrays.asList(100, 100, 100, 120), refLinkIds(result));
+        assertEquals(1, requests.get(100).get());
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void resultsKeepInputOrder() {
+        List<Integer> ids = IntStream.range(1, 50).boxed().collect(Collectors.toList());
+
+        List<Position> result = lookup(Flux.fromIterable(ids), 8);
+
+        assertEquals(ids, refLinkIds(result));
+    }
+
+    @Test
+    public void failedLookupDoesNotEndTheStream() {
+        List<Position> result = lookup(Flux.just(1, 404, 503, 2, 503), 1);
+
+        assertEquals(5, result.size());
+        assertEquals(Integer.valueOf(1), refLinkIds(result).get(0));
+
+        // No road nearby is an answer, not a failure
+        assertFalse(result.get(1).isFailed());
+        assertTrue(result.get(1).getResults().isEmpty());
+
+        RuntimeException error = result.get(2).getError().get();
+        assertTrue(error.toString(), error instanceof ClientException);
+        assertEquals(503, ((ClientException) error).getStatusCode());
+
+        assertEquals(Integer.valueOf(2), refLinkIds(result).get(3));
+
+        // The failed lookup is not shared with the later duplicate
+        assertFalse(result.get(4).isFailed());
+        assertEquals(Integer.valueOf(503), refLinkIds(result).get(4));
+        assertEquals(2, requests.get(503).get());
+    }
+
+    private List<Position> lookup(Flux<Integer> norths, int concurrency) {
+        return positions.getPlacements(norths.map(n -> PositionRequest.utm33(n, 200.0).build()), concurrency)
+                        .collectList()
+                        .block();
+    }
+
+    private static List<Integer> refLinkIds(List<Position> positions) {
+        return positions.stream()
+                        .map(p -> p.getResults().isEmpty() ? null : p.getResults().get(0).getRefLink().getId())
+                        .collect(Collectors.toList());
+    }
+
+    /**
+     * Answers with a ref link whose id is the requested northing. Northing 404 has no road nearby,
+     * and the first lookup of northing 503 fails.
+     */
+    private void respond(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        for (String param : exchange.getRequestURI().getQuery().split("&")) {
+            String[] kv = param.split("=", 2);
+            params.put(kv[0], kv[1]);
+        }
+        int north = (int) Double.parseDouble(params.get("nord"));
+        int count = requests.computeIfAbsent(north, n -> new AtomicInteger()).incrementAndGet();
+        try {
+            // Later requests tend to finish first
+            Thread.sleep((50 - north % 50) % 10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int status = north == 404 ? 404 : north == 503 && count == 1 ? 503 : 200;
+        String json = status != 200 ? "[]" : "[{\"vegreferanse\":{\"fylke\":50,\"kommune\":5001,\"kategori\":\"E\","
+            + "\"status\":\"V\",\"nummer\":6,\"hp\":1,\"meter\":" + north + ",\"kortform\":\"5001 EV6 hp1 m" + north + "\"},"
+            + "\"veglenke\":{\"id\":" + north + ",\"posisjon\":0.5,\"kortform\":\"0.5@" + north + "\"},"
+            + "\"avstand\":" + params.get("ost") + "}]";
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.clients;
+
+import org.junit.Test;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ResponseCacheFilterTest {
+    private final ResponseCache cache = ResponseCache.newBuilder().withMaxBytes(1000).withMaxEntryBytes(100).build();
+    private final ResponseCacheFilter filter = new ResponseCacheFilter(cache);
+
+    @Test
+    public void notModifiedIsAnsweredFromCache() throws IOException {
+        StubRequest first = new StubRequest("GET");
+        filter.filter(first.context());
+        StubResponse ok = new StubResponse(200, "{\"id\":1}");
+        ok.headers.putSingle(HttpHeaders.ETAG, "\"v1\"");
+        ok.headers.putSingle(HttpHeaders.CONTENT_TYPE, "application/json");
+        filter.filter(first.context(), ok.context());
+        assertEquals("{\"id\":1}", read(ok.entity));
+        assertEquals(1, cache.getMisses());
+
+        StubRequest second = new StubRequest("GET");
+        filter.filter(second.context());
+        assertEquals("\"v1\"", second.headers.getFirst(HttpHeaders.IF_NONE_MATCH));
+
+        StubResponse notModified = new StubResponse(304, "");
+        filter.filter(second.context(), notModified.context());
+
+        assertEquals(200, notModified.status);
+        assertEquals("{\"id\":1}", read(notModified.entity));
+        assertEquals("application/json", notModified.headers.getFirst(HttpHeaders.CONTENT_TYPE));
+        assertEquals("8", notModified.headers.getFirst(HttpHeaders.CONTENT_LENGTH));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void oversizedBodyIsPassedThroughWhole() throws IOException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; body.length() < 10000; i++) {
+            body.append(i).append(',');
+        }
+        StubRequest request = new StubRequest("GET");
+        filter.filter(request.context());
+        StubResponse response = new StubResponse(200, body.toString());
+        response.headers.putSingle(HttpHeaders.ETAG, "\"v1\"");
+
+        filter.filter(request.context(), response.context());
+
+        assertEquals(body.toString(), read(response.entity));
+        assertEquals(0, cache.getMemoryBytes());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void responsesWithoutValidatorOrWithNoStoreAreNotCached() throws IOException {
+        StubRequest request = new StubRequest("GET");
+        filter.filter(request.context());
+        filter.filter(request.context(), new StubResponse(200, "{}").context());
+
+        StubResponse noStore = new StubResponse(200, "{}");
+        noStore.headers.putSingle(HttpHeaders.ETAG, "\"v1\"");
+        noStore.headers.putSingle(HttpHeaders.CACHE_CONTROL, "no-store");
+        filter.filter(request.context(), noStore.context());
+
+        assertEquals(0, cache.getMemoryBytes());
+    }
+
+    @Test
+    public void onlyGetIsCached() throws IOException {
+        StubRequest request = new StubRequest("POST");
+        filter.filter(request.context());
+        StubResponse response = new StubResponse(200, "{}");
+        response.headers.putSingle(HttpHeaders.ETAG, "\"v1\"");
+        filter.filter(request.context(), response.context());
+
+        assertEquals(0, cache.getMemoryBytes());
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static final class StubRequest {
+        final String method;
+        final MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        final Map<String, Object> properties = new HashMap<>();
+
+        StubRequest(String method) {
+            this.method = method;
+            headers.putSingle(HttpHeaders.ACCEPT, "application/vnd.vegvesen.nvdb-v2+json");
+        }
+
+        ClientRequestContext context() {
+            return (ClientRequestContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ClientRequestContext.class }, (proxy, m, args) -> {
+                switch (m.getName()) {
+                    case "getMethod":
+                        return method;
+                    case "getUri":
+                        return URI.create("https://nvdbapiles-v2.atlas.vegvesen.no/omrader/fylker");
+                    case "getHeaders":
+                        return headers;
+                    case "getHeaderString":
+                        Object value = headers.getFirst((String) args[0]);
+                        return value == null ? null : value.toString();
+                    case "getProperty":
+                        return properties.get(args[0]);
+                    case "setProperty":
+                        return properties.put((String) args[0], args[1]);
+                    default:
+                        throw new UnsupportedOperationException(m.getName());
+                }
+            });
+        }
+    }
+
+    private static final class StubResponse {
+        int status;
+        final MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+        InputStream entity;
+
+        StubResponse(int status, String body) {
+            this.status = status;
+            this.entity = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        ClientResponseContext context() {
+            return (ClientResponseContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ClientResponseContext.class }, (proxy, m, args) -> {
+                switch (m.getName()) {
+                    case "getStatus":
+                        return status;
+                    case "setStatus":
+                        status = (Integer) args[0];
+                        return null;
+                    case "getHeaders":
+                        return headers;
+                    case "getHeaderString":
+                        return headers.getFirst((String) args[0]);
+                    case "getEntityStream":
+                        return entity;
+                    case "setEntityStream":
+                        entity = (InputStream) args[0];
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(m.getName());
+                }
+            });
+        }
+    }
+}
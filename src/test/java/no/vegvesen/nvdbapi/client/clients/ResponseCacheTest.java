@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.clients;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ResponseCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void memoryBytesFollowPutsAndEvictions() {
+        ResponseCache cache = ResponseCache.newBuilder().withMaxBytes(100).withMaxEntryBytes(60).build();
+
+        cache.put("a", entry(40));
+        cache.put("b", entry(40));
+        assertEquals(80, cache.getMemoryBytes());
+
+        // Replacing counts the new body only, and makes "a" the most recently used
+        cache.put("a", entry(30));
+        assertEquals(70, cache.getMemoryBytes());
+
+        cache.put("c", entry(50));
+        assertEquals(80, cache.getMemoryBytes());
+        assertFalse(cache.get("b").isPresent());
+        assertTrue(cache.get("a").isPresent());
+
+        cache.put("d", entry(61));
+        assertFalse(cache.get("d").isPresent());
+        assertEquals(80, cache.getMemoryBytes());
+        assertEquals(0, cache.getDiskBytes());
+    }
+
+    @Test
+    public void evictedEntriesAreReadBackFromDisk() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        ResponseCache cache = ResponseCache.newBuilder().withMaxBytes(100).withMaxEntryBytes(60).withDiskDirectory(dir).build();
+
+        cache.put("a", entry(60));
+        cache.put("b", entry(60));
+        assertEquals(60, cache.getMemoryBytes());
+        assertEquals(1, files(dir).size());
+        assertEquals(totalSize(dir), cache.getDiskBytes());
+
+        ResponseCache.Entry a = cache.get("a").get();
+        assertEquals(60, a.getBody().length);
+        assertEquals("etag-60", a.getEtag().get());
+        // "b" was evicted to make room, "a" is still on disk
+        assertEquals(60, cache.getMemoryBytes());
+        assertEquals(2, files(dir).size());
+        assertEquals(totalSize(dir), cache.getDiskBytes());
+    }
+
+    @Test
+    public void diskIsBoundedOldestFirst() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        ResponseCache.Builder builder = ResponseCache.newBuilder().withMaxBytes(60).withMaxEntryBytes(60).withDiskDirectory(dir);
+        // Size of one stored entry with a one character key
+        ResponseCache probe = builder.build();
+        probe.put("x", entry(60));
+        probe.put("y", entry(60));
+        long fileSize = probe.getDiskBytes();
+        probe.clear();
+
+        ResponseCache cache = builder.withMaxDiskBytes(fileSize * 2).build();
+        cache.put("a", entry(60));
+        cache.put("b", entry(60));
+        cache.put("c", entry(60));
+        cache.put("d", entry(60));
+
+        assertEquals(2, files(dir).size());
+        assertEquals(totalSize(dir), cache.getDiskBytes());
+        assertEquals(fileSize * 2, cache.getDiskBytes());
+        assertFalse(cache.get("a").isPresent());
+        assertTrue(cache.get("b").isPresent());
+    }
+
+    @Test
+    public void diskIsIndexedOnStartup() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        ResponseCache first = ResponseCache.newBuilder().withMaxBytes(60).withMaxEntryBytes(60).withDiskDirectory(dir).build();
+        first.put("a", entry(50));
+        first.put("b", entry(50));
+        first.put("c", entry(50));
+
+        ResponseCache second = ResponseCache.newBuilder().withMaxBytes(60).withMaxEntryBytes(60).withDiskDirectory(dir).build();
+
+        assertEquals(first.getDiskBytes(), second.getDiskBytes());
+        assertEquals(0, second.getMemoryBytes());
+        assertTrue(second.get("a").isPresent());
+        assertTrue(second.get("b").isPresent());
+        assertFalse(second.get("c").isPresent());
+    }
+
+    @Test
+    public void clearEmptiesMemoryAndDisk() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        ResponseCache cache = ResponseCache.newBuilder().withMaxBytes(60).withMaxEntryBytes(60).withDiskDirectory(dir).build();
+        cache.put("a", entry(50));
+        cache.put("b", entry(50));
+
+        cache.clear();
+
+        assertEquals(0, cache.getMemoryBytes());
+        assertEquals(0, cache.getDiskBytes());
+        assertTrue(files(dir).isEmpty());
+        assertFalse(cache.get("a").isPresent());
+    }
+
+    @Test
+    public void headersSurviveDisk() {
+        Path dir = folder.getRoot().toPath();
+        ResponseCache cache = ResponseCache.newBuilder().withMaxBytes(60).withMaxEntryBytes(60).withDiskDirectory(dir).build();
+        byte[] body = "{\"æøå\":1}".getBytes(StandardCharsets.UTF_8);
+        cache.put("full", new ResponseCache.Entry("\"v1\"", "Wed, 21 Oct 2015 07:28:00 GMT", "application/json", "gzip", body));
+        cache.put("bare", new ResponseCache.Entry(null, null, null, null, new byte[0]));
+        cache.put("c", entry(60));
+
+        ResponseCache.Entry full = cache.get("full").get();
+        assertEquals(Optional.of("\"v1\""), full.getEtag());
+        assertEquals(Optional.of("Wed, 21 Oct 2015 07:28:00 GMT"), full.getLastModified());
+        assertEquals(Optional.of("application/json"), full.getContentType());
+        assertEquals(Optional.of("gzip"), full.getContentEncoding());
+        assertArrayEquals(body, full.getBody());
+
+        ResponseCache.Entry bare = cache.get("bare").get();
+        assertEquals(Optional.empty(), bare.getEtag());
+        assertEquals(Optional.empty(), bare.getLastModified());
+        assertEquals(Optional.empty(), bare.getContentType());
+        assertEquals(Optional.empty(), bare.getContentEncoding());
+        assertEquals(0, bare.getBody().length);
+    }
+
+    @Test
+    public void unreadableFileIsDropped() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        ResponseCache.Builder builder = ResponseCache.newBuilder().withMaxBytes(60).withMaxEntryBytes(60).withDiskDirectory(dir);
+        ResponseCache first = builder.build();
+        first.put("a", entry(60));
+        first.put("b", entry(60));
+        Path file = files(dir).get(0);
+        byte[] stored = Files.readAllBytes(file);
+
+        Files.write(file, Arrays.copyOf(stored, stored.length - 10));
+        ResponseCache truncated = builder.build();
+        assertFalse(truncated.get("a").isPresent());
+        assertFalse(Files.exists(file));
+        assertEquals(0, truncated.getDiskBytes());
+
+        // Files from before the current format
+        stored[0] ^= 1;
+        Files.write(file, stored);
+        assertFalse(builder.build().get("a").isPresent());
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void concurrentUseKeepsDiskInLineWithIndex() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        ResponseCache cache = ResponseCache.newBuilder()
+                                           .withMaxBytes(200)
+                                           .withMaxEntryBytes(60)
+                                           .withDiskDirectory(dir)
+                                           .withMaxDiskBytes(1000)
+                                           .build();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int seed = t;
+            tasks.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 500; i++) {
+                    String key = "k" + random.nextInt(30);
+                    if (random.nextBoolean()) {
+                        cache.put(key, entry(20 + random.nextInt(41)));
+                    } else {
+                        cache.get(key).ifPresent(e -> assertEquals("etag-" + e.getBody().length, e.getEtag().get()));
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertTrue(cache.getMemoryBytes() <= 200);
+        assertTrue(cache.getDiskBytes() <= 1000);
+        assertEquals(totalSize(dir), cache.getDiskBytes());
+    }
+
+    private static ResponseCache.Entry entry(int size) {
+        return new ResponseCache.Entry("etag-" + size, null, "application/json", null, new byte[size]);
+    }
+
+    private static List<Path> files(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+
+    private static long totalSize(Path dir) throws IOException {
+        long size = 0;
+        for (Path file : files(dir)) {
+            size += Files.size(file);
+        }
+        return size;
+    }
+}
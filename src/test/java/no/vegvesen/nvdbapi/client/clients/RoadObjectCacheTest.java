@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.vegvesen.nvdbapi.client.clients;
+
+import com.sun.net.httpserver.HttpServer;
+import no.vegvesen.nvdbapi.client.model.Change;
+import no.vegvesen.nvdbapi.client.model.datakatalog.DataType;
+import no.vegvesen.nvdbapi.client.model.datakatalog.Datakatalog;
+import no.vegvesen.nvdbapi.client.model.datakatalog.JavaType;
+import no.vegvesen.nvdbapi.client.model.datakatalog.Version;
+import no.vegvesen.nvdbapi.client.model.roadobjects.Attribute;
+import no.vegvesen.nvdbapi.client.model.roadobjects.RoadObject;
+import org.junit.Test;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class RoadObjectCacheTest {
+    private static final int TYPE = 105;
+    private static final DataType TEXT = new DataType(1, "Tekst", "Tekst", "Tekst", JavaType.TEXT);
+
+    @Test
+    public void evictsLeastRecentlyUsedByCount() {
+        RoadObjectCache cache = RoadObjectCache.newBuilder().withMaxObjects(2).withStripes(1).build();
+        List<Long> loaded = new ArrayList<>();
+
+        get(cache, 1, "", loaded);
+        get(cache, 2, "", loaded);
+        get(cache, 1, "", loaded);
+        get(cache, 3, "", loaded);
+        get(cache, 1, "", loaded);
+        get(cache, 2, "", loaded);
+
+        // 2 was the least recently used when 3 came in
+        assertEquals(asList(1, 2, 3, 2), loaded);
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedByWeight() {
+        long weight = RoadObjectCache.weigh(roadObject(1, 1));
+        RoadObjectCache cache = RoadObjectCache.newBuilder().withMaxWeight(weight * 2 + weight / 2).withStripes(1).build();
+        List<Long> loaded = new ArrayList<>();
+
+        get(cache, 1, "", loaded);
+        get(cache, 2, "", loaded);
+        get(cache, 3, "", loaded);
+
+        assertEquals(2, cache.size());
+        assertEquals(weight * 2, cache.getWeight());
+        get(cache, 1, "", loaded);
+        assertEquals(asList(1, 2, 3, 1), loaded);
+
+        // An object heavier than the limit is still cached, alone
+        RoadObject heavy = roadObject(4, 1, Collections.nCopies(100, "tung"));
+        cache.get(TYPE, 4, "", () -> heavy);
+        assertEquals(1, cache.size());
+        assertEquals(RoadObjectCache.weigh(heavy), cache.getWeight());
+        assertSame(heavy, cache.get(TYPE, 4, "", () -> null));
+    }
+
+    @Test
+    public void variantsShareOneEntry() {
+        RoadObjectCache cache = RoadObjectCache.newBuilder().withStripes(1).build();
+        RoadObject plain = roadObject(1, 1);
+        RoadObject withAttributes = roadObject(1, 1, Collections.singletonList("verdi"));
+
+        cache.get(TYPE, 1, "plain", () -> plain);
+        cache.get(TYPE, 1, "attributes", () -> withAttributes);
+
+        assertEquals(1, cache.size());
+        assertEquals(RoadObjectCache.weigh(plain) + RoadObjectCache.weigh(withAttributes), cache.getWeight());
+        assertSame(plain, cache.get(TYPE, 1, "plain", () -> null));
+        assertSame(withAttributes, cache.get(TYPE, 1, "attributes", () -> null));
+    }
+
+    @Test
+    public void replacingVariantAdjustsWeight() {
+        RoadObjectCache cache = RoadObjectCache.newBuilder().withStripes(1).build();
+        RoadObject first = roadObject(1, 1);
+        RoadObject second = roadObject(1, 1, Collections.nCopies(10, "verdi"));
+
+        // A second miss for the same variant while the first is loading, as with concurrent callers
+        RoadObject result = cache.get(TYPE, 1, "", () -> {
+            cache.get(TYPE, 1, "", () -> first);
+            return second;
+        });
+
+        assertSame(second, result);
+        assertEquals(1, cache.size());
+        assertEquals(RoadObjectCache.weigh(second), cache.getWeight());
+        assertSame(second, cache.get(TYPE, 1, "", () -> null));
+    }
+
+    @Test
+    public void invalidateByChange() {
+        RoadObjectCache cache = RoadObjectCache.newBuilder().withStripes(1).build();
+        for (long id = 1; id <= 4; id++) {
+            long featureId = id;
+            cache.get(TYPE, featureId, "", () -> roadObject(featureId, 2));
+        }
+
+        cache.invalidate(new Change(TYPE, 1, Change.Type.DELETED, roadObject(1, 2)));
+        cache.invalidate(new Change(TYPE, 2, Change.Type.CHANGED, roadObject(2, 2)));
+        cache.invalidate(new Change(TYPE, 3, Change.Type.CHANGED, roadObject(3, 3)));
+        cache.invalidate(new Change(TYPE, 4, Change.Type.CHANGED, null));
+        // Other types are left alone
+        cache.invalidate(new Change(TYPE + 1, 2, Change.Type.DELETED, null));
+
+        assertEquals(1, cache.size());
+        assertEquals(RoadObjectCache.weigh(roadObject(2, 2)), cache.getWeight());
+        assertNull(cache.get(TYPE, 1, "", () -> null));
+        assertNotNull(cache.get(TYPE, 2, "", () -> null));
+        assertNull(cache.get(TYPE, 3, "", () -> null));
+        assertNull(cache.get(TYPE, 4, "", () -> null));
+    }
+
+    @Test
+    public void clientServesIdenticalRequestsFromCache() throws Exception {
+        List<String> queries = Collections.synchronizedList(new ArrayList<>());
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/vegobjekter/" + TYPE + "/1", exchange -> {
+            queries.add(String.valueOf(exchange.getRequestURI().getQuery()));
+            byte[] body = ("{\"id\":1,\"metadata\":{\"type\":{\"id\":" + TYPE + "},\"versjon\":2},\"egenskaper\":[]}")
+                .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        Client client = ClientBuilder.newClient();
+        try {
+            Datakatalog datakatalog = new Datakatalog(new Version(2, "2.13", LocalDate.of(2018, 10, 1)),
+                                                      Collections.emptyList(), Collections.emptyList(), new HashMap<>());
+            RoadObjectClient roadObjects =
+                new RoadObjectClient("http://localhost:" + server.getAddress().getPort(), client, datakatalog);
+            RoadObjectCache cache = RoadObjectCache.newBuilder().build();
+            roadObjects.setCache(cache);
+
+            RoadObjectRequest attributes = RoadObjectRequest.newBuilder().withIncludes(RoadObjectClient.Include.ATTRIBUTES).build();
+            RoadObjectRequest all = RoadObjectRequest.newBuilder().withIncludes(RoadObjectClient.Include.ALL).build();
+
+            RoadObject first = roadObjects.getRoadObject(TYPE, 1, attributes);
+            RoadObject again = roadObjects.getRoadObject(TYPE, 1,
+                RoadObjectRequest.newBuilder().withIncludes(RoadObjectClient.Include.ATTRIBUTES).build());
+            roadObjects.getRoadObject(TYPE, 1, all);
+
+            assertSame(first, again);
+            assertEquals(2, queries.size());
+            assertEquals(1, cache.getHits());
+            assertEquals(2, cache.getMisses());
+            assertEquals(1, cache.size());
+
+            roadObjects.setCache(null);
+            roadObjects.getRoadObject(TYPE, 1, attributes);
+            assertEquals(3, queries.size());
+        } finally {
+            client.close();
+            server.stop(0);
+        }
+    }
+
+    private static void get(RoadObjectCache cache, long featureId, String variant, List<Long> loaded) {
+        RoadObject ro = cache.get(TYPE, featureId, variant, () -> {
+            loaded.add(featureId);
+            return roadObject(featureId, 1);
+        });
+        assertEquals(featureId, ro.getId());
+    }
+
+    private static List<Long> asList(long... ids) {
+        List<Long> list = new ArrayList<>();
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    private static RoadObject roadObject(long id, int version) {
+        return roadObject(id, version, null);
+    }
+
+    private static RoadObject roadObject(long id, int version, List<String> values) {
+        List<Attribute> attributes = null;
+        if (values != null) {
+            attributes = new ArrayList<>();
+            for (String value : values) {
+                attributes.add(new Attribute(1, "Navn", TEXT, value, Optional.empty(), Optional.empty()));
+            }
+        }
+        return new RoadObject(id, TYPE, version, null, null, null, null, null, null, null, attributes, null, null);
+    }
+}
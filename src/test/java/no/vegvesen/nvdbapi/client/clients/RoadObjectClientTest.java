@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.vegvesen.nvdbapi.client.clients;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import no.vegvesen.nvdbapi.client.exceptions.ClientException;
+import no.vegvesen.nvdbapi.client.model.datakatalog.DataType;
+import no.vegvesen.nvdbapi.client.model.datakatalog.Datakatalog;
+import no.vegvesen.nvdbapi.client.model.datakatalog.JavaType;
+import no.vegvesen.nvdbapi.client.model.datakatalog.Version;
+import no.vegvesen.nvdbapi.client.model.roadobjects.Attribute;
+import no.vegvesen.nvdbapi.client.model.roadobjects.RoadObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class RoadObjectClientTest {
+    private static final int TYPE = 105;
+    private static final int ATTRIBUTE = 2021;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private Client client;
+    private RoadObjectClient roadObjects;
+    private final List<String> queries = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/vegobjekter/" + TYPE, this::respond);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        client = ClientBuilder.newClient();
+
+        Map<Integer, DataType> dataTypes = new HashMap<>();
+        dataTypes.put(2, new DataType(2, "Tall", "Tall", "Tall", JavaType.NUMBER));
+        Datakatalog datakatalog = new Datakatalog(new Version(2, "2.13", LocalDate.of(2018, 10, 1)),
+                                                  Collections.emptyList(), Collections.emptyList(), dataTypes);
+        roadObjects = new RoadObjectClient("http://localhost:" + server.getAddress().getPort(), client, datakatalog,
+                                           Schedulers.elastic());
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void missingObjectsAreLeftOut() {
+        List<Tuple2<Long, Attribute>> attributes =
+            roadObjects.getAttributes(TYPE, Flux.just(1L, 404L, 2L), ATTRIBUTE, 2, true).collectList().block();
+
+        assertEquals(Arrays.asList(1L, 2L), ids(attributes));
+        assertEquals(Arrays.asList(10, 20), values(attributes));
+    }
+
+    @Test
+    public void otherErrorsEndTheStream() {
+        try {
+            roadObjects.getAttributes(TYPE, Flux.just(1L, 500L), ATTRIBUTE, 2, true).collectList().block();
+            fail("Server error was swallowed");
+        } catch (ClientException e) {
+            assertEquals(500, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void orderedFollowsInputAndUnorderedFollowsArrival() {
+        // Object 1 is answered last
+        Flux<Long> ids = Flux.just(1L, 2L, 3L, 4L);
+
+        List<Tuple2<Long, Attribute>> ordered = roadObjects.getAttributes(TYPE, ids, ATTRIBUTE, 4, true).collectList().block();
+        List<Tuple2<Long, Attribute>> unordered = roadObjects.getAttributes(TYPE, ids, ATTRIBUTE, 4, false).collectList().block();
+
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L), ids(ordered));
+        assertEquals(Arrays.asList(10, 20, 30, 40), values(ordered));
+        assertEquals(Long.valueOf(1L), ids(unordered).get(3));
+        assertEquals(10, unordered.get(3).getT2().intValue());
+    }
+
+    @Test
+    public void coalescedAttributesAreMatchedToIds() {
+        Flux<Long> ids = Flux.just(1L, 2L, 3L, 404L, 5L, 6L, 7L, 8L, 9L);
+
+        List<Tuple2<Long, Attribute>> attributes =
+            roadObjects.getAttributesCoalesced(TYPE, ids, ATTRIBUTE, 4, 3).collectList().block();
+
+        // 404 does not exist and 7 lacks the attribute
+        assertEquals(Arrays.asList(1L, 2L, 3L, 5L, 6L, 8L, 9L), ids(attributes));
+        assertEquals(Arrays.asList(10, 20, 30, 50, 60, 80, 90), values(attributes));
+        assertEquals(3, queries.size());
+        assertTrue(queries.stream().allMatch(q -> q.contains("inkluder=egenskaper")));
+    }
+
+    @Test
+    public void resumeUsesBaseUrlOfThisClient() {
+        // Saved by a client for another host and API path
+        Cursor cursor = new Cursor(URI.create("https://nvdb.example/nvdb/api/v2/vegobjekter/" + TYPE + "?ids=1%2C2&inkluder=egenskaper"),
+                                   10, "abc", 5, false);
+
+        List<Long> ids = new ArrayList<>();
+        try (RoadObjectClient.RoadObjectsResult result = roadObjects.resumeRoadObjects(cursor)) {
+            result.stream().forEach(ro -> ids.add(ro.getId()));
+        }
+        List<Long> async = roadObjects.resumeRoadObjectsAsync(cursor).getNonBlocking().map(RoadObject::getId).collectList().block();
+
+        assertEquals(Arrays.asList(2L, 1L), ids);
+        assertEquals(Arrays.asList(2L, 1L), async);
+        assertEquals(2, queries.size());
+        for (String query : queries) {
+            assertTrue(query, query.contains("ids=1,2"));
+            assertTrue(query, query.contains("start=abc"));
+        }
+    }
+
+    @Test
+    public void resumeRejectsCursorsForOtherResources() {
+        for (String path : Arrays.asList("/vegobjekter/" + TYPE + "/endringer", "/vegobjekter/" + TYPE + "/statistikk",
+                                         "/vegobjekter", "/vegnett/lenker", "/vegobjekter/" + TYPE + "/1")) {
+            Cursor cursor = new Cursor(URI.create("http://localhost" + path), null, null, 0, false);
+            try {
+                roadObjects.resumeRoadObjects(cursor);
+                fail("Accepted " + path);
+            } catch (IllegalArgumentException expected) {
+            }
+            try {
+                roadObjects.resumeRoadObjectsAsync(cursor);
+                fail("Accepted " + path);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    private static List<Long> ids(List<Tuple2<Long, Attribute>> attributes) {
+        return attributes.stream().map(Tuple2::getT1).collect(Collectors.toList());
+    }
+
+    private static List<Integer> values(List<Tuple2<Long, Attribute>> attributes) {
+        return attributes.stream().map(t -> t.getT2().intValue()).collect(Collectors.toList());
+    }
+
+    /**
+     * Serves single attributes and id queries. Object n has attribute value 10 * n, except that object 404 does not
+     * exist, object 7 lacks the attribute, and object 500 fails. Object 1 is slow, and queries answer in reverse order.
+     */
+    private void respond(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getQuery();
+        String[] segments = path.split("/");
+        int status = 200;
+        String json;
+        if (segments.length == 6 && segments[4].equals("egenskaper")) {
+            long id = Long.parseLong(segments[3]);
+            if (id == 1) {
+                sleep(300);
+            }
+            status = id == 404 ? 404 : id == 500 ? 500 : 200;
+            json = status == 200 ? attribute(id) : "[]";
+        } else {
+            queries.add(query);
+            String ids = Arrays.stream(query.split("&"))
+                               .filter(p -> p.startsWith("ids="))
+                               .map(p -> p.substring("ids=".length()))
+                               .findFirst()
+                               .get();
+            List<Long> requested = Arrays.stream(ids.split(",")).map(Long::valueOf).collect(Collectors.toList());
+            Collections.reverse(requested);
+            json = requested.stream()
+                            .filter(id -> id != 404)
+                            .map(id -> "{\"id\":" + id + ",\"metadata\":{\"type\":{\"id\":" + TYPE + "},\"versjon\":1},"
+                                       + "\"egenskaper\":[" + (id == 7 ? "" : attribute(id)) + "]}")
+                            .collect(Collectors.joining(",", "{\"objekter\":[", "],\"metadata\":{\"returnert\":"
+                                                                                  + requested.size() + "}}"));
+        }
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String attribute(long id) {
+        return "{\"id\":" + ATTRIBUTE + ",\"navn\":\"Fartsgrense\",\"datatype\":2,\"verdi\":" + (id * 10) + "}";
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
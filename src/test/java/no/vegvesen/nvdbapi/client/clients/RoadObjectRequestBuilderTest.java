@@ -29,6 +29,8 @@ package no.vegvesen.nvdbapi.client.clients;
 import org.junit.Test;
 
 import javax.ws.rs.core.MultivaluedMap;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -40,4 +42,41 @@ public class RoadObjectRequestBuilderTest {
         MultivaluedMap<String, String> actual = RoadObjectRequestBuilder.convert(req);
         assertEquals(0, actual.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void partitionByCountiesKeepsOtherParameters() {
+        RoadObjectRequest req = RoadObjectRequest.newBuilder()
+                .withAttributeFilter("egenskap(2021)=80")
+                .withContractArea("9302 Haugesund 2014-2019")
+                .build();
+
+        List<RoadObjectRequest> partitions = req.partitionByCounties(Arrays.asList(3, 11, 3));
+
+        assertEquals(2, partitions.size());
+        MultivaluedMap<String, String> first = RoadObjectRequestBuilder.convert(partitions.get(0));
+        assertEquals("3", first.getFirst("fylke"));
+        assertEquals("egenskap(2021)=80", first.getFirst("egenskap"));
+        assertEquals("9302 Haugesund 2014-2019", first.getFirst("kontraktsomrade"));
+        assertEquals("11", RoadObjectRequestBuilder.convert(partitions.get(1)).getFirst("fylke"));
+    }
+
+    @Test
+    public void partitionByCountiesRespectsExistingCountyFilter() {
+        RoadObjectRequest req = RoadObjectRequest.newBuilder().withCounties(3, 11).build();
+
+        List<RoadObjectRequest> partitions = req.partitionByCounties(Arrays.asList(1, 3, 11, 12));
+
+        assertEquals(2, partitions.size());
+        assertEquals(Arrays.asList(3), partitions.get(0).getCounties());
+        assertEquals(Arrays.asList(11), partitions.get(1).getCounties());
+    }
+
+    @Test
+    public void idsAreJoined() {
+        RoadObjectRequest req = RoadObjectRequest.newBuilder().withIds(85751212L, 85751213L).build();
+
+        MultivaluedMap<String, String> actual = RoadObjectRequestBuilder.convert(req.toMutable().build());
+
+        assertEquals("85751212,85751213", actual.getFirst("ids"));
+    }
+}
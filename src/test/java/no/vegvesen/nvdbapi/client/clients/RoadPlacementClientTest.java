@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.clients;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import no.vegvesen.nvdbapi.client.exceptions.ClientException;
+import no.vegvesen.nvdbapi.client.model.RoadPlacementBulkResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.scheduler.Schedulers;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class RoadPlacementClientTest {
+    private HttpServer server;
+    private Client client;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int errorStatus;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/veg/batch", this::respond);
+        server.start();
+        client = ClientBuilder.newClient();
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void chunksStayWithinMaxLength() {
+        List<String> keys = IntStream.range(0, 100).mapToObj(i -> "0.5@" + i).collect(Collectors.toList());
+
+        List<List<String>> chunks = RoadPlacementClient.chunk(keys, 50);
+
+        assertEquals(keys, chunks.stream().flatMap(List::stream).collect(Collectors.toList()));
+        for (List<String> chunk : chunks) {
+            assertTrue(chunk.toString(), encoded(String.join(",", chunk)).length() <= 50);
+        }
+        assertTrue(chunks.size() > 1);
+    }
+
+    @Test
+    public void keysAreMeasuredEncoded() {
+        // "Fv" + 20 x "æ" is 2 + 20 * 6 characters once encoded
+        String key = "Fv" + String.join("", Collections.nCopies(20, "æ"));
+
+        assertEquals(2, RoadPlacementClient.chunk(Arrays.asList(key, key), 2 * 122 + 2).size());
+        assertEquals(1, RoadPlacementClient.chunk(Arrays.asList(key, key), 2 * 122 + 3).size());
+    }
+
+    @Test
+    public void longKeyGetsChunkOfItsOwn() {
+        List<List<String>> chunks = RoadPlacementClient.chunk(Arrays.asList("a", "bbbbbbbbbb", "c"), 5);
+
+        assertEquals(Arrays.asList(Collections.singletonList("a"), Collections.singletonList("bbbbbbbbbb"),
+                                   Collections.singletonList("c")), chunks);
+        assertTrue(RoadPlacementClient.chunk(Collections.emptyList(), 5).isEmpty());
+    }
+
+    @Test
+    public void resultsAreMatchedToKeys() {
+        List<Integer> ids = IntStream.range(1, 40).boxed().collect(Collectors.toList());
+        ids.set(10, 404);
+
+        List<RoadPlacementBulkResult> results = lookup(ids, 4, 60);
+
+        assertTrue(requests.get() > 1);
+        assertEquals(ids.size(), results.size());
+        for (int i = 0; i < ids.size(); i++) {
+            RoadPlacementBulkResult result = results.get(i);
+            assertEquals("0.5@" + ids.get(i), result.getKey());
+            assertFalse(result.isFailed());
+            if (ids.get(i) == 404) {
+                assertFalse(result.hasResult());
+            } else {
+                assertEquals(ids.get(i).intValue(), result.getResult().get().getRefLinkPosition().getId());
+            }
+        }
+    }
+
+    @Test
+    public void badRequestIsSplitToIsolateKey() {
+        List<RoadPlacementBulkResult> results = lookup(1, 2, 666, 3);
+
+        assertEquals(Arrays.asList("0.5@1", "0.5@2", "0.5@666", "0.5@3"),
+                     results.stream().map(RoadPlacementBulkResult::getKey).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(false, false, true, false),
+                     results.stream().map(RoadPlacementBulkResult::isFailed).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(1, 2, 3),
+                     results.stream()
+                            .filter(RoadPlacementBulkResult::hasResult)
+                            .map(r -> r.getResult().get().getRefLinkPosition().getId())
+                            .collect(Collectors.toList()));
+
+        RuntimeException error = results.get(2).getError().get();
+        assertTrue(error.toString(), error instanceof ClientException);
+        assertEquals(400, ((ClientException) error).getStatusCode());
+        assertFalse(results.get(2).hasResult());
+        assertFalse(results.get(3).getError().isPresent());
+    }
+
+    @Test
+    public void throttledRequestIsNotSplit() {
+        errorStatus = 429;
+
+        List<RoadPlacementBulkResult> results = lookup(1, 2, 3, 4);
+
+        assertEquals(1, requests.get());
+        assertTrue(results.stream().allMatch(RoadPlacementBulkResult::isFailed));
+    }
+
+    @Test
+    public void serverErrorIsNotSplit() {
+        errorStatus = 503;
+
+        lookup(1, 2, 3, 4);
+
+        assertEquals(1, requests.get());
+    }
+
+    private List<RoadPlacementBulkResult> lookup(int... ids) {
+        return lookup(IntStream.of(ids).boxed().collect(Collectors.toList()), 1, RoadPlacementClient.DEFAULT_MAX_URL_LENGTH);
+    }
+
+    private List<RoadPlacementBulkResult> lookup(List<Integer> ids, int parallelism, int maxUrlLength) {
+        RoadPlacementClient placements = new RoadPlacementClient("http://localhost:" + server.getAddress().getPort(),
+                                                                 client, Schedulers.elastic());
+        List<RefLinkRequest> refLinks = new ArrayList<>();
+        for (int id : ids) {
+            refLinks.add(new RefLinkRequest(id, 0.5));
+        }
+        return placements.findPlacementsInBulkFromReflinks(refLinks, null, parallelism, maxUrlLength);
+    }
+
+    /**
+     * Answers with the requested keys in reverse order. Ref link 404 has no placement.
+     */
+    private void respond(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String query = exchange.getRequestURI().getQuery();
+        int status = errorStatus != 0 ? errorStatus : query.contains("@666") ? 400 : 200;
+        String json = "[]";
+        if (status == 200) {
+            List<String> keys = new ArrayList<>(Arrays.asList(query.replaceFirst("^veglenker=", "").split(",")));
+            Collections.reverse(keys);
+            json = keys.stream().map(RoadPlacementClientTest::placement).collect(Collectors.joining(",", "{", "}"));
+        }
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String placement(String key) {
+        String id = key.substring(key.indexOf('@') + 1);
+        if (id.equals("404")) {
+            return "\"" + key + "\":null";
+        }
+        return "\"" + key + "\":{\"vegreferanse\":{\"fylke\":50,\"kommune\":5001,\"kategori\":\"E\",\"status\":\"V\","
+               + "\"nummer\":6,\"hp\":1,\"meter\":" + id + ",\"kortform\":\"5001 EV6 hp1 m" + id + "\"},"
+               + "\"veglenke\":{\"id\":" + id + ",\"posisjon\":0.5,\"kortform\":\"" + key + "\"}}";
+    }
+
+    private static String encoded(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
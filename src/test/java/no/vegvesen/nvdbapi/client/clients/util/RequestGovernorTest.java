@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.clients.util;
+
+import no.vegvesen.nvdbapi.client.clients.RateLimitConfig;
+import org.junit.Test;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class RequestGovernorTest {
+
+    @Test
+    public void asyncCallersQueueForPermits() {
+        RequestGovernor governor = new RequestGovernor(RateLimitConfig.newBuilder().withMaxInFlight(1).build());
+        RequestGovernor.Permit first = governor.acquireAsync().block(Duration.ofSeconds(1));
+
+        AtomicReference<RequestGovernor.Permit> second = new AtomicReference<>();
+        Disposable waiting = governor.acquireAsync().subscribe(second::set);
+        assertNull(second.get());
+
+        first.release();
+        assertNotNull(second.get());
+        assertTrue(waiting.isDisposed());
+    }
+
+    @Test
+    public void cancelledWaiterDoesNotTakePermit() {
+        RequestGovernor governor = new RequestGovernor(RateLimitConfig.newBuilder().withMaxInFlight(1).build());
+        RequestGovernor.Permit first = governor.acquireAsync().block(Duration.ofSeconds(1));
+
+        AtomicReference<RequestGovernor.Permit> cancelled = new AtomicReference<>();
+        governor.acquireAsync().subscribe(cancelled::set).dispose();
+        first.release();
+        // Releasing twice has no effect, so only one permit is free
+        first.release();
+
+        assertNull(cancelled.get());
+        assertNotNull(governor.acquireAsync().block(Duration.ofSeconds(1)));
+        AtomicReference<RequestGovernor.Permit> third = new AtomicReference<>();
+        governor.acquireAsync().subscribe(third::set);
+        assertNull(third.get());
+    }
+
+    @Test
+    public void blockingAndAsyncCallersShareLimit() throws InterruptedException {
+        RequestGovernor governor = new RequestGovernor(RateLimitConfig.newBuilder().withMaxInFlight(1).build());
+        RequestGovernor.Permit async = governor.acquireAsync().block(Duration.ofSeconds(1));
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread blocked = new Thread(() -> {
+            governor.acquire().release();
+            acquired.countDown();
+        });
+        blocked.start();
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+
+        async.release();
+        assertTrue(acquired.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void rateLimitDelaysWithoutBlocking() {
+        RequestGovernor governor = new RequestGovernor(
+                RateLimitConfig.newBuilder().withRequestsPerSecond(10).withBurst(1).build());
+        governor.acquireAsync().block(Duration.ofSeconds(1)).release();
+
+        long start = System.nanoTime();
+        AtomicReference<RequestGovernor.Permit> delayed = new AtomicReference<>();
+        governor.acquireAsync().subscribe(delayed::set);
+        // subscribe returns before the token is there
+        assertNull(delayed.get());
+
+        governor.acquireAsync().block(Duration.ofSeconds(1));
+        assertNotNull(delayed.get());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.vegvesen.nvdbapi.client.clients.util;
+
+import no.vegvesen.nvdbapi.client.clients.RetryPolicy;
+import no.vegvesen.nvdbapi.client.exceptions.CircuitOpenException;
+import no.vegvesen.nvdbapi.client.exceptions.ClientException;
+import org.junit.Test;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class RetryHandlerTest {
+
+    @Test
+    public void backoffGrowsUpToMax() {
+        RetryPolicy policy = RetryPolicy.newBuilder()
+                                         .withInitialBackoff(Duration.ofMillis(100))
+                                         .withMaxBackoff(Duration.ofMillis(300))
+                                         .withJitter(0.5)
+                                         .build();
+
+        assertEquals(Duration.ofMillis(100), policy.backoff(1, 0));
+        assertEquals(Duration.ofMillis(200), policy.backoff(2, 0));
+        assertEquals(Duration.ofMillis(300), policy.backoff(3, 0));
+        assertEquals(Duration.ofMillis(300), policy.backoff(10, 0));
+        assertEquals(Duration.ofMillis(100), policy.backoff(2, 1));
+    }
+
+    @Test
+    public void transientErrorsAreRetriedUpToMaxAttempts() {
+        RetryHandler handler = new RetryHandler(policy(3, 100));
+        AtomicInteger attempts = new AtomicInteger();
+
+        try {
+            handler.call(() -> {
+                attempts.incrementAndGet();
+                throw error(503);
+            });
+            fail("Error was swallowed");
+        } catch (ClientException e) {
+            assertEquals(503, e.getStatusCode());
+        }
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void throttlingUnavailableAndConnectionErrorsAreRetried() {
+        RetryHandler handler = new RetryHandler(policy(5, 100));
+        Calls calls = new Calls(error(429), error(503), new ProcessingException(new ConnectException("refused")));
+
+        assertEquals("ok", handler.call(calls));
+        assertEquals(4, calls.attempts);
+    }
+
+    @Test
+    public void notImplementedAndClientErrorsAreNotRetried() {
+        RetryHandler handler = new RetryHandler(policy(5, 100));
+
+        for (int status : Arrays.asList(400, 404, 414, 501)) {
+            Calls calls = new Calls(error(status));
+            try {
+                handler.call(calls);
+                fail("Status " + status + " was swallowed");
+            } catch (ClientException e) {
+                assertEquals(status, e.getStatusCode());
+            }
+            assertEquals("Attempts for status " + status, 1, calls.attempts);
+        }
+    }
+
+    @Test
+    public void circuitOpensAfterThresholdAndLetsProbeThroughLater() throws InterruptedException {
+        RetryPolicy policy = RetryPolicy.newBuilder()
+                                        .withMaxAttempts(10)
+                                        .withInitialBackoff(Duration.ofMillis(1))
+                                        .withFailureThreshold(3)
+                                        .withOpenDuration(Duration.ofMillis(200))
+                                        .build();
+        RetryHandler handler = new RetryHandler(policy);
+
+        Calls failing = new Calls(error(503), error(503), error(503), error(503));
+        try {
+            handler.call(failing);
+            fail("Error was swallowed");
+        } catch (ClientException expected) {
+        }
+        assertEquals(3, failing.attempts);
+
+        Calls blocked = new Calls();
+        try {
+            handler.call(blocked);
+            fail("Circuit did not open");
+        } catch (CircuitOpenException e) {
+            assertTrue(e.getRetryAfter().compareTo(Duration.ofMillis(200)) <= 0);
+        }
+        assertEquals(0, blocked.attempts);
+
+        // A failed probe opens the circuit again at once
+        Thread.sleep(250);
+        Calls failedProbe = new Calls(error(503), error(503));
+        try {
+            handler.call(failedProbe);
+            fail("Error was swallowed");
+        } catch (ClientException expected) {
+        }
+        assertEquals(1, failedProbe.attempts);
+        try {
+            handler.checkCircuit();
+            fail("Circuit did not open again");
+        } catch (CircuitOpenException expected) {
+        }
+
+        // A successful probe closes it
+        Thread.sleep(250);
+        assertEquals("ok", handler.call(new Calls()));
+        Calls afterwards = new Calls(error(503));
+        assertEquals("ok", handler.call(afterwards));
+        assertEquals(2, afterwards.attempts);
+    }
+
+    @Test
+    public void answerFromApiResetsFailureCount() {
+        RetryPolicy policy = RetryPolicy.newBuilder()
+                                        .withMaxAttempts(1)
+                                        .withFailureThreshold(3)
+                                        .withOpenDuration(Duration.ofMinutes(1))
+                                        .build();
+        RetryHandler handler = new RetryHandler(policy);
+
+        for (int status : Arrays.asList(503, 503, 404, 503, 503)) {
+            try {
+                handler.call(new Calls(error(status)));
+                fail("Error was swallowed");
+            } catch (ClientException expected) {
+            }
+        }
+
+        handler.checkCircuit();
+    }
+
+    @Test
+    public void noneMakesExactlyOneAttempt() {
+        RetryHandler handler = new RetryHandler(RetryPolicy.NONE);
+
+        for (int i = 0; i < 100; i++) {
+            Calls calls = new Calls(error(503));
+            try {
+                handler.call(calls);
+                fail("Error was swallowed");
+            } catch (ClientException expected) {
+            }
+            assertEquals(1, calls.attempts);
+        }
+        // Never opens the circuit either
+        handler.checkCircuit();
+    }
+
+    @Test
+    public void jerseyHelperUsesHandlerOfClient() {
+        RetryHandler handler = new RetryHandler(policy(3, 100));
+        Client client = ClientBuilder.newClient().property(RetryHandler.PROPERTY, handler);
+        try {
+            Calls calls = new Calls(error(503));
+
+            assertEquals("ok", JerseyHelper.execute(client.target("http://localhost/"), calls));
+            assertEquals(2, calls.attempts);
+        } finally {
+            client.close();
+        }
+    }
+
+    private static RetryPolicy policy(int maxAttempts, int failureThreshold) {
+        return RetryPolicy.newBuilder()
+                          .withMaxAttempts(maxAttempts)
+                          .withInitialBackoff(Duration.ofMillis(1))
+                          .withFailureThreshold(failureThreshold)
+                          .build();
+    }
+
+    private static ClientException error(int status) {
+        return new ClientException(status, Collections.emptyList());
+    }
+
+    /**
+     * Throws the given errors in turn, then answers "ok".
+     */
+    private static class Calls implements Supplier<String> {
+        private final Deque<RuntimeException> errors;
+        int attempts;
+
+        Calls(RuntimeException... errors) {
+            this.errors = new ArrayDeque<>(Arrays.asList(errors));
+        }
+
+        @Override
+        public String get() {
+            attempts++;
+            RuntimeException error = errors.poll();
+            if (error != null) {
+                throw error;
+            }
+            return "ok";
+        }
+    }
+}
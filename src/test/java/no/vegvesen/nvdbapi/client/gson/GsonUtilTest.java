@@ -30,6 +30,11 @@ import com.google.gson.JsonParser;
 import no.vegvesen.nvdbapi.client.model.Quality;
 import org.junit.Test;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
 import static org.junit.Assert.*;
 
 public class GsonUtilTest {
@@ -59,4 +64,54 @@ public class GsonUtilTest {
 
     }
 
+    @Test
+    public void testJsonPathLookup() {
+        JsonObject obj = new JsonParser().parse(jsonResponse).getAsJsonObject();
+
+        assertEquals(Integer.valueOf(83), GsonUtil.parseIntMember(obj, JsonPath.of("metadata.type.id")));
+        assertEquals("Kum", GsonUtil.parseStringMember(obj, JsonPath.of("metadata.type.navn")));
+        assertEquals(Integer.valueOf(615921663), GsonUtil.parseIntMember(obj, JsonPath.of("id")));
+        assertNull(GsonUtil.parseIntMember(obj, JsonPath.of("metadata.type.mangler")));
+        assertNull(GsonUtil.parseIntMember(obj, JsonPath.of("mangler.type.id")));
+    }
+
+    @Test
+    public void testJsonPathTreatsJsonNullAsMissing() {
+        JsonObject obj = new JsonParser().parse("{\"metadata\":{\"neste\":null}}").getAsJsonObject();
+
+        assertNull(JsonPath.of("metadata.neste").find(obj));
+        assertNull(JsonPath.of("metadata.neste.start").find(obj));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJsonPathRejectsWrongType() {
+        JsonObject obj = new JsonParser().parse(jsonResponse).getAsJsonObject();
+
+        GsonUtil.parseIntMember(obj, JsonPath.of("metadata.type.navn"));
+    }
+
+    @Test
+    public void testDateParsingMatchesFormatter() {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        for (String value : new String[] { "2015-07-30", "2016-02-29", "2019-02-30", "2019-12-31", "0001-01-01" }) {
+            assertEquals(value, LocalDate.parse(value, formatter), GsonUtil.toDate(value, "yyyy-MM-dd"));
+        }
+        assertEquals(LocalDate.of(2015, 7, 30), GsonUtil.toDate("30.07.2015", "dd.MM.yyyy"));
+    }
+
+    @Test
+    public void testDateTimeParsingMatchesFormatter() {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        for (String value : new String[] { "2018-01-01 01:11:53", "2016-02-29 23:59:59", "2019-02-30 12:00:00" }) {
+            assertEquals(value, LocalDateTime.parse(value, formatter), GsonUtil.toDateTime(value));
+        }
+        for (String value : new String[] { "2018-01-01T01:11:53", "2018-01-01T01:11:53.250", "2018-01-01T01:11" }) {
+            assertEquals(value, LocalDateTime.parse(value), GsonUtil.toDateTime(value));
+        }
+    }
+
+    @Test(expected = DateTimeParseException.class)
+    public void testDateParsingRejectsInvalidInput() {
+        GsonUtil.toDate("2015-13-01", "yyyy-MM-dd");
+    }
 }
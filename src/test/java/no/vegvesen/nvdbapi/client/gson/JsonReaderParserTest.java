@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.gson;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import no.vegvesen.nvdbapi.client.model.Change;
+import no.vegvesen.nvdbapi.client.model.datakatalog.DataType;
+import no.vegvesen.nvdbapi.client.model.datakatalog.JavaType;
+import no.vegvesen.nvdbapi.client.model.roadnet.Link;
+import no.vegvesen.nvdbapi.client.model.roadobjects.RoadObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * The streaming parsers used for paged results must give the same result as the tree parsers.
+ */
+public class JsonReaderParserTest {
+
+    private static final Map<Integer, DataType> DATA_TYPES = new HashMap<>();
+
+    static {
+        DATA_TYPES.put(1, new DataType(1, "Tekst", "Tekst", "Tekst", JavaType.TEXT));
+        DATA_TYPES.put(2, new DataType(2, "Tall", "Tall", "Tall", JavaType.NUMBER));
+        DATA_TYPES.put(8, new DataType(8, "Dato", "Dato", "Dato", JavaType.LOCAL_DATE));
+        DATA_TYPES.put(17, new DataType(17, "GeomPunkt", "GeomPunkt", "GeomPunkt", JavaType.SPATIAL));
+        DATA_TYPES.put(30, new DataType(30, "FlerverdiAttributt, Tekst", "Tekst", "Tekst", JavaType.TEXT));
+    }
+
+    static final String ROAD_OBJECT = json(
+        "{'id':85751392,'href':'https://www.vegvesen.no/nvdb/api/v2/vegobjekter/105/85751392'," +
+        "'metadata':{'type':{'id':105,'navn':'Fartsgrense'},'versjon':3,'startdato':'2015-07-30','sluttdato':'2019-02-01'," +
+        "'sist_modifisert':'2018-01-01T01:11:53'}," +
+        "'egenskaper':[" +
+        "{'id':2021,'navn':'Fartsgrense','datatype':30,'datatype_tekst':'FlerverdiAttributt, Tekst','verdi':'80','enum_id':2738}," +
+        "{'id':1586,'navn':'Dybde','datatype':2,'datatype_tekst':'Tall','verdi':3.1,'enhet':{'id':1,'navn':'Meter','kortnavn':'m'}}," +
+        "{'id':10278,'navn':'Vedtaksnummer','datatype':1,'datatype_tekst':'Tekst','verdi':'2015/1234'}," +
+        "{'id':10279,'navn':'Vedtaksdato','datatype':8,'datatype_tekst':'Dato','verdi':'2015-06-01'}," +
+        "{'id':4784,'navn':'Geometri, punkt','datatype':17,'datatype_tekst':'GeomPunkt','verdi':'POINT (258127.12 7034288.74 106.66)'," +
+        "'kvalitet':{'målemetode':11,'nøyaktighet':15,'synbarhet':0,'målemetodeHøyde':11,'nøyaktighetHøyde':15}}]," +
+        "'geometri':{'wkt':'LINESTRING Z (258127.1 7034288.7 106.6, 258130.2 7034290.3 106.9)','srid':5973,'forenklet':false," +
+        "'egengeometri':true,'kvalitet':{'målemetode':96,'nøyaktighet':300,'synbarhet':0}}," +
+        "'lokasjon':{'kommuner':[5001],'fylker':[50],'regioner':[4],'vegavdelinger':[50]," +
+        "'kontraktsområder':[{'nummer':1609,'navn':'1609 Trondheim ytre 2015-2020'}]," +
+        "'riksvegruter':[{'nummer':'1','navn':'Rute 1','periode':'2014-2023'}]," +
+        "'vegreferanser':[{'fylke':50,'kommune':0,'kategori':'F','status':'V','nummer':6652,'hp':1,'fra_meter':13998,'til_meter':14050," +
+        "'kortform':'5000 Fv6652 hp1 m13998-14050'}]," +
+        "'stedfestinger':[{'veglenkeid':42830,'fra_posisjon':0.25,'til_posisjon':0.5,'kortform':'0.25-0.5@42830','retning':'MED'," +
+        "'sideposisjon':'H','felt':'1#2'}]," +
+        "'strekningslengde':52.0," +
+        "'geometri':{'wkt':'LINESTRING (258126.1 7034291.0, 258130.2 7034290.3)','srid':5973}}," +
+        "'segmentering':{'kommuner':[5001],'fylker':[50],'vegreferanser':[{'fylke':50,'kommune':0,'kategori':'F','status':'V','nummer':6652,'hp':1}]}," +
+        "'vegsegmenter':[" +
+        "{'stedfesting':{'veglenkeid':42830,'fra_posisjon':0.25,'til_posisjon':0.4,'retning':'MED','sideposisjon':'H'}," +
+        "'geometri':{'wkt':'LINESTRING (258126.1 7034291.0, 258128.0 7034290.6)','srid':5973}," +
+        "'kommune':5001,'fylke':50,'region':4,'vegavdeling':50,'strekningslengde':30," +
+        "'vegreferanse':{'fylke':50,'kommune':0,'kategori':'F','status':'V','nummer':6652,'hp':1,'fra_meter':13998,'til_meter':14028}}," +
+        "{'stedfesting':{'veglenkeid':42831,'posisjon':0.9,'retning':'MOT'}," +
+        "'geometri':{'wkt':'POINT (258130.2 7034290.3)','srid':5973},'kommune':5001,'fylke':50,'region':4,'vegavdeling':50}]," +
+        "'relasjoner':{" +
+        "'barn':[{'type':{'id':821,'navn':'Gyldighetsperiode'},'vegobjekter':[85751400,85751399]}," +
+        "{'type':{'id':83,'navn':'Kum'},'vegobjekter':[{'id':615921663,'metadata':{'type':{'id':83,'navn':'Kum'},'versjon':1," +
+        "'startdato':'2015-07-30'},'egenskaper':[{'id':1586,'navn':'Dybde','datatype':2,'verdi':2}]}]}]," +
+        "'foreldre':[{'type':{'id':5,'navn':'Kjørebane'},'vegobjekter':[42]}]}}");
+
+    static final String LINK = json(
+        "{'veglenkeid':42830,'startposisjon':0.0,'sluttposisjon':1.0,'startnode':'1008','sluttnode':'1009'," +
+        "'konnekteringslenke':false,'medium':'T','temakode':7001,'topologinivå':1," +
+        "'metadata':{'startdato':'2014-01-01','sluttdato':'2019-12-31'}," +
+        "'kommune':5001,'region':4,'fylke':50,'vegavdeling':50,'foreldrelenkeid':1234," +
+        "'geometri':{'wkt':'LINESTRING Z (258126.1 7034291.0 10.0, 258130.2 7034290.3 11.5)','srid':5973}," +
+        "'vegreferanse':{'fylke':50,'kommune':0,'kategori':'F','status':'V','nummer':6652,'fra_hp':1,'til_hp':2," +
+        "'fra_meter':0,'til_meter':400,'kortform':'5000 Fv6652 hp1 m0-hp2 m400'}}");
+
+    @Test
+    public void roadObjectsAreEqual() throws IOException {
+        RoadObject tree = RoadObjectParser.parse(DATA_TYPES, tree(ROAD_OBJECT));
+        RoadObject streamed = RoadObjectParser.parse(DATA_TYPES, reader(ROAD_OBJECT));
+
+        assertEquals(2, tree.getSegments().size());
+        assertEquals(2, tree.getChildren().size());
+        assertEquals(1, tree.getParents().size());
+        assertNotNull(tree.getLocation());
+        assertEquals(tree, streamed);
+    }
+
+    @Test
+    public void skippedGeometryIsOnlyDifference() throws IOException {
+        RoadObject streamed = RoadObjectParser.parse(DATA_TYPES, reader(ROAD_OBJECT), true);
+
+        assertNull(streamed.getGeometry());
+        assertEquals(RoadObjectParser.parse(DATA_TYPES, tree(ROAD_OBJECT)).getAttributes(), streamed.getAttributes());
+    }
+
+    @Test
+    public void linksAreEqual() throws IOException {
+        Link tree = LinkParser.parse(tree(LINK));
+
+        assertNotNull(tree.getRoadRef());
+        assertEquals(tree, LinkParser.parse(reader(LINK)));
+    }
+
+    @Test
+    public void changesAreEqual() throws IOException {
+        String withObject = json("{'type':'ENDRET','vegobjekt':" + ROAD_OBJECT + "}");
+        String withId = json("{'type':'SLETTET','vegobjekt':85751392}");
+
+        for (String change : new String[] { withObject, withId }) {
+            Change tree = ChangesParser.parse(DATA_TYPES, tree(change), 105);
+            assertEquals(tree, ChangesParser.parse(DATA_TYPES, reader(change), 105));
+        }
+    }
+
+    @Test
+    public void nullMembersAreTreatedAsMissing() throws IOException {
+        String withNulls = json("{'id':1,'metadata':{'type':{'id':105},'versjon':1,'sluttdato':null,'sist_modifisert':null}}");
+
+        assertEquals(RoadObjectParser.parse(DATA_TYPES, tree(withNulls)), RoadObjectParser.parse(DATA_TYPES, reader(withNulls)));
+    }
+
+    static String json(String singleQuoted) {
+        return singleQuoted.replace('\'', '"');
+    }
+
+    private static JsonObject tree(String json) {
+        return new JsonParser().parse(json).getAsJsonObject();
+    }
+
+    private static JsonReader reader(String json) {
+        return new JsonReader(new StringReader(json));
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.mirror;
+
+import no.vegvesen.nvdbapi.client.clients.RoadObjectClient;
+import no.vegvesen.nvdbapi.client.clients.RoadObjectRequest;
+import no.vegvesen.nvdbapi.client.exceptions.ClientException;
+import no.vegvesen.nvdbapi.client.model.Change;
+import no.vegvesen.nvdbapi.client.model.Page;
+import no.vegvesen.nvdbapi.client.model.roadobjects.RoadObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class RoadObjectMirrorTest {
+    private static final int TYPE = 105;
+    private static final LocalDateTime SINCE = LocalDateTime.of(2019, 3, 1, 10, 50);
+
+    @Test
+    public void bootstrapDownloadsAllObjectsAndStartsFeedsInApiZone() {
+        StubClient client = new StubClient();
+        client.objects.addAll(Arrays.asList(roadObject(1), roadObject(2)));
+        MemoryStore store = new MemoryStore();
+
+        // 10:00 UTC is 11:00 in Oslo and 13:00 in Moscow
+        Clock clock = Clock.fixed(Instant.parse("2019-03-01T10:00:00Z"), ZoneId.of("Europe/Moscow"));
+        long count = RoadObjectMirror.newBuilder(client, store).withClock(clock).build().sync(TYPE);
+
+        assertEquals(2, count);
+        assertEquals(2, store.objects.size());
+        assertEquals(Optional.of(MirrorState.initial(TYPE, SINCE)), store.getState(TYPE));
+        assertTrue(client.changeRequests.isEmpty());
+    }
+
+    @Test
+    public void appliesChangesAndSavesTokens() {
+        StubClient client = new StubClient();
+        client.remote.put(3L, roadObject(3));
+        client.feed(Change.Type.NEW, "n1", new Change(TYPE, 4, Change.Type.NEW, roadObject(4)));
+        client.feed(Change.Type.CHANGED, "c1", new Change(TYPE, 3, Change.Type.CHANGED, null),
+                    new Change(TYPE, 5, Change.Type.CHANGED, null));
+        client.feed(Change.Type.DELETED, "d1", new Change(TYPE, 1, Change.Type.DELETED, null));
+        MemoryStore store = new MemoryStore();
+        store.put(roadObject(1));
+        store.saveState(MirrorState.initial(TYPE, SINCE));
+
+        long count = RoadObjectMirror.newBuilder(client, store)
+                                     .withChangeTypes(Change.Type.NEW, Change.Type.CHANGED, Change.Type.DELETED)
+                                     .build()
+                                     .sync(TYPE);
+
+        // Object 5 no longer exists and is skipped
+        assertEquals(3, count);
+        assertEquals(Arrays.asList(3L, 4L), new ArrayList<>(store.objects.keySet()));
+        assertEquals(Collections.nCopies(3, SINCE), client.changeSince);
+
+        Map<Change.Type, String> tokens = new EnumMap<>(Change.Type.class);
+        tokens.put(Change.Type.NEW, "n1");
+        tokens.put(Change.Type.CHANGED, "c1");
+        tokens.put(Change.Type.DELETED, "d1");
+        assertEquals(new MirrorState(TYPE, SINCE, tokens), store.getState(TYPE).get());
+    }
+
+    @Test
+    public void continuesFromSavedToken() {
+        StubClient client = new StubClient();
+        client.feed(Change.Type.CHANGED, "c2");
+        client.feed(Change.Type.DELETED, "d1");
+        MemoryStore store = new MemoryStore();
+        store.saveState(MirrorState.initial(TYPE, SINCE).withToken(Change.Type.CHANGED, "c1"));
+
+        RoadObjectMirror.newBuilder(client, store).withPageSize(50).build().sync(TYPE);
+
+        assertEquals(Optional.of("c1"), client.changeRequests.get(0).getStart());
+        assertEquals(Integer.valueOf(50), client.changeRequests.get(0).getCount());
+        assertEquals(Optional.empty(), client.changeRequests.get(1).getStart());
+        assertEquals(Optional.of("c2"), store.getState(TYPE).get().getToken(Change.Type.CHANGED));
+        assertEquals(Optional.of("d1"), store.getState(TYPE).get().getToken(Change.Type.DELETED));
+    }
+
+    @Test
+    public void stateSurvivesSerialization() throws Exception {
+        MirrorState state = MirrorState.initial(TYPE, SINCE).withToken(Change.Type.CHANGED, "c1");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(state);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(state, in.readObject());
+        }
+        assertEquals(1L, ObjectStreamClass.lookup(MirrorState.class).getSerialVersionUID());
+    }
+
+    private static RoadObject roadObject(long id) {
+        return new RoadObject(id, TYPE, 1, null, null, null, null, null, null, null, null, null, null);
+    }
+
+    private static class MemoryStore implements RoadObjectStore {
+        final Map<Long, RoadObject> objects = new TreeMap<>();
+        final Map<Integer, MirrorState> states = new HashMap<>();
+
+        @Override
+        public void put(RoadObject roadObject) {
+            objects.put(roadObject.getId(), roadObject);
+        }
+
+        @Override
+        public void delete(int featureTypeId, long featureId) {
+            objects.remove(featureId);
+        }
+
+        @Override
+        public Optional<MirrorState> getState(int featureTypeId) {
+            return Optional.ofNullable(states.get(featureTypeId));
+        }
+
+        @Override
+        public void saveState(MirrorState state) {
+            states.put(state.getFeatureTypeId(), state);
+        }
+    }
+
+    private static class StubClient extends RoadObjectClient {
+        final List<RoadObject> objects = new ArrayList<>();
+        final Map<Long, RoadObject> remote = new HashMap<>();
+        final Map<Change.Type, List<Change>> changes = new EnumMap<>(Change.Type.class);
+        final Map<Change.Type, String> tokens = new EnumMap<>(Change.Type.class);
+        final List<LocalDateTime> changeSince = new ArrayList<>();
+        final List<Page> changeRequests = new ArrayList<>();
+
+        StubClient() {
+            super("http://localhost", null, null);
+        }
+
+        /**
+         * One page of changes, ending with {@code token}.
+         */
+        void feed(Change.Type type, String token, Change... changes) {
+            this.changes.put(type, Arrays.asList(changes));
+            this.tokens.put(type, token);
+        }
+
+        @Override
+        public RoadObjectsResult getRoadObjects(int featureTypeId, RoadObjectRequest request) {
+            return new RoadObjectsResult(null, Optional.empty(), null) {
+                private boolean hasNext = true;
+
+                @Override
+                public boolean hasNext() {
+                    return hasNext;
+                }
+
+                @Override
+                public List<RoadObject> next() {
+                    hasNext = false;
+                    return objects;
+                }
+            };
+        }
+
+        @Override
+        public RoadObject getRoadObject(int featureTypeId, long featureId, RoadObjectRequest request) {
+            RoadObject roadObject = remote.get(featureId);
+            if (roadObject == null) {
+                throw new ClientException(404, Collections.emptyList());
+            }
+            return roadObject;
+        }
+
+        @Override
+        public ChangesResult getChanges(int typeId, LocalDateTime from, Page page, Change.Type type) {
+            changeSince.add(from);
+            changeRequests.add(page);
+            return new ChangesResult(null, typeId, null, Optional.of(page)) {
+                private boolean hasNext = changes.containsKey(type);
+
+                @Override
+                public boolean hasNext() {
+                    return hasNext;
+                }
+
+                @Override
+                public List<Change> next() {
+                    hasNext = false;
+                    return changes.get(type);
+                }
+
+                @Override
+                public String nextToken() {
+                    return tokens.get(type);
+                }
+            };
+        }
+    }
+}
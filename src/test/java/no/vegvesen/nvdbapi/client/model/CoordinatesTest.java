@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CoordinatesTest {
+
+    @Test
+    public void parsesPointWithZ() {
+        Coordinates c = Coordinates.fromWkt("POINT Z (258127.12 7034288.74 106.66)");
+
+        assertEquals(SpatialType.POINT, c.getType());
+        assertTrue(c.hasZ());
+        assertEquals(1, c.getNumPoints());
+        assertEquals(258127.12, c.getX(0), 0);
+        assertEquals(7034288.74, c.getY(0), 0);
+        assertEquals(106.66, c.getZ(0), 0);
+        assertEquals(0, c.getLength(), 0);
+    }
+
+    @Test
+    public void infersZFromCoordinateCount() {
+        Coordinates c = Coordinates.fromWkt("POINT (258127.12 7034288.74 106.66)");
+
+        assertEquals(3, c.getDimension());
+        assertEquals(106.66, c.getZ(0), 0);
+    }
+
+    @Test
+    public void dropsM() {
+        Coordinates c = Coordinates.fromWkt("LINESTRING M (0 0 5, 3 4 6)");
+
+        assertEquals(2, c.getDimension());
+        assertTrue(Double.isNaN(c.getZ(1)));
+        assertEquals(5, c.getLength(), 0);
+    }
+
+    @Test
+    public void numbersMatchDoubleParsing() {
+        String[] numbers = {"196272.4629380733", "6640216.227388193", "-0.5", "1e3", "2.5E-4", "0.000000000000000001", "123456789012345678901"};
+        StringBuilder wkt = new StringBuilder("LINESTRING (");
+        for (int i = 0; i < numbers.length; i++) {
+            wkt.append(i == 0 ? "" : ", ").append(numbers[i]).append(' ').append(numbers[i]);
+        }
+        Coordinates c = Coordinates.fromWkt(wkt.append(')'));
+
+        for (int i = 0; i < numbers.length; i++) {
+            assertEquals(Double.parseDouble(numbers[i]), c.getX(i), 0);
+        }
+    }
+
+    @Test
+    public void splitsMultiLineStringIntoParts() {
+        Coordinates c = Coordinates.fromWkt("MULTILINESTRING ((0 0, 0 10), (10 10, 13 14, 13 20))");
+
+        assertEquals(2, c.getNumParts());
+        assertEquals(0, c.getPartStart(0));
+        assertEquals(2, c.getPartEnd(0));
+        assertEquals(5, c.getPartEnd(1));
+        assertEquals(10 + 5 + 6, c.getLength(), 1e-9);
+        assertEquals(new Envelope(0, 0, 13, 20), c.getEnvelope());
+    }
+
+    @Test
+    public void readsPolygonRingsAndCollections() {
+        Coordinates polygon = Coordinates.fromWkt("MULTIPOLYGON (((0 0, 4 0, 4 4, 0 0)), ((10 10, 11 10, 10 11, 10 10), (1 1, 2 2, 1 2, 1 1)))");
+        assertEquals(3, polygon.getNumParts());
+        assertEquals(12, polygon.getNumPoints());
+
+        Coordinates collection = Coordinates.fromWkt("GEOMETRYCOLLECTION (POINT (1 2), LINESTRING EMPTY, MULTIPOINT ((3 4), 5 6))");
+        assertEquals(SpatialType.GEOMETRY_COLLECTION, collection.getType());
+        assertEquals(3, collection.getNumParts());
+
+        List<Double> xs = new ArrayList<>();
+        collection.forEachPoint((x, y, z) -> xs.add(x));
+        assertEquals(3, xs.size());
+        assertEquals(5, xs.get(2), 0);
+    }
+
+    @Test
+    public void emptyGeometryHasNoEnvelope() {
+        Coordinates c = Coordinates.fromWkt("LINESTRING EMPTY");
+
+        assertTrue(c.isEmpty());
+        assertNull(c.getEnvelope());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMalformedWkt() {
+        Coordinates.fromWkt("LINESTRING (0 0, 1)");
+    }
+
+    @Test
+    public void geometryParsesLazily() {
+        Geometry geometry = new Geometry("LINESTRING (0 0, 3 4)", Projection.UTM33, false, false);
+
+        assertSame(geometry.getCoordinates(), geometry.getCoordinates());
+        assertEquals(5, geometry.getCoordinates().getLength(), 0);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.network;
+
+import no.vegvesen.nvdbapi.client.model.Coordinates;
+import no.vegvesen.nvdbapi.client.model.Geometry;
+import no.vegvesen.nvdbapi.client.model.Projection;
+import no.vegvesen.nvdbapi.client.model.roadnet.Link;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LinearReferencingTest {
+
+    // Link 1 is split in two parts; the first runs 0-100 m along x, the second turns and runs 50 m along y
+    private final LinearReferencing referencing = LinearReferencing.newBuilder()
+            .add(link(1, 0, 0.5, "LINESTRING Z (0 0 10, 40 0 12, 100 0 20)"))
+            .add(link(1, 0.5, 1, "LINESTRING Z (100 0 20, 100 50 30)"))
+            .add(link(2, 0, 1, "LINESTRING (0 10, 0 60)"))
+            .build();
+
+    @Test
+    public void locatesPositionsAlongThePolyline() {
+        double[] xyz = new double[3];
+
+        assertTrue(referencing.locate(1, 0.2, xyz));
+        assertArrayEquals(new double[] {40, 0, 12}, xyz, 1e-9);
+
+        assertTrue(referencing.locate(1, 0.35, xyz));
+        assertArrayEquals(new double[] {70, 0, 16}, xyz, 1e-9);
+
+        assertTrue(referencing.locate(1, 0.75, xyz));
+        assertArrayEquals(new double[] {100, 25, 25}, xyz, 1e-9);
+
+        assertTrue(referencing.locate(2, 1, xyz));
+        assertEquals(60, xyz[1], 1e-9);
+        assertTrue(Double.isNaN(xyz[2]));
+
+        assertFalse(referencing.locate(3, 0.5, xyz));
+    }
+
+    @Test
+    public void projectsPointsBackToPositions() {
+        assertEquals(0.35, referencing.positionOf(1, 70, 3), 1e-9);
+        assertEquals(0.75, referencing.positionOf(1, 104, 25), 1e-9);
+        assertTrue(Double.isNaN(referencing.positionOf(3, 0, 0)));
+
+        LinkPosition nearest = referencing.project(2, 40, 10).get();
+        assertEquals(2, nearest.getLinkId());
+        assertEquals(0.6, nearest.getPosition(), 1e-9);
+        assertEquals(2, nearest.getDistance(), 1e-9);
+
+        assertFalse(referencing.project(50, 40, 10).isPresent());
+    }
+
+    @Test
+    public void roundTripsPositions() {
+        double[] xyz = new double[2];
+        for (double position = 0; position <= 1; position += 0.01) {
+            referencing.locate(1, position, xyz);
+            assertEquals(position, referencing.positionOf(1, xyz[0], xyz[1]), 1e-9);
+        }
+    }
+
+    @Test
+    public void extractsSubLines() {
+        Coordinates line = referencing.subLine(1, 0.1, 0.4).get();
+
+        assertEquals(3, line.getNumPoints());
+        assertEquals(20, line.getX(0), 1e-9);
+        assertEquals(40, line.getX(1), 1e-9);
+        assertEquals(80, line.getX(2), 1e-9);
+        assertFalse(referencing.subLine(1, 0.4, 0.6).isPresent());
+    }
+
+    private static Link link(long id, double start, double end, String wkt) {
+        return new Link(id, null, start, end, "a", "b", null, null, null, null, null, null, null, null, null,
+                        new Geometry(wkt, Projection.UTM33, false, false), null, false);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.network;
+
+import no.vegvesen.nvdbapi.client.model.Geometry;
+import no.vegvesen.nvdbapi.client.model.Projection;
+import no.vegvesen.nvdbapi.client.model.roadnet.Link;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RoadNetGraphTest {
+
+    @Test
+    public void findsShortestPathBetweenNodes() {
+        RoadNetGraph graph = RoadNetGraph.newBuilder()
+                .add(link(1, 0, 1, "A", "B"), 10)
+                .add(link(2, 0, 1, "B", "C"), 10)
+                .add(link(3, 0, 1, "A", "C"), 25)
+                .add(link(4, 0, 1, "D", "C"), 5)
+                .add(link(5, 0, 1, "E", "F"), 1)
+                .build();
+
+        GraphPath path = graph.shortestPath("A", "D").get();
+        assertEquals(25, path.getLength(), 0);
+        assertArrayEquals(new long[] {1, 2, 4}, path.getLinkIds());
+
+        assertFalse(graph.shortestPath("A", "E").isPresent());
+        assertEquals(2, graph.getNumComponents());
+        assertTrue(graph.isConnected("D", "A"));
+        assertFalse(graph.isConnected("F", "A"));
+    }
+
+    @Test
+    public void findsShortestPathBetweenLinkPositions() {
+        RoadNetGraph graph = RoadNetGraph.newBuilder()
+                .add(link(1, 0, 0.5, "A", "M"), 50)
+                .add(link(1, 0.5, 1, "M", "B"), 50)
+                .add(link(2, 0, 1, "B", "C"), 40)
+                .add(link(3, 0, 1, "C", "A"), 200)
+                .build();
+
+        assertEquals(1, graph.findLink(1, 0.75));
+        assertEquals(-1, graph.findLink(1, 1.5));
+
+        // 0.25@1 is 25 m from A and 75 m from B; 0.5@2 is 20 m from B
+        GraphPath path = graph.shortestPath(1, 0.25, 2, 0.5).get();
+        assertEquals(75 + 20, path.getLength(), 1e-9);
+        assertArrayEquals(new long[] {1, 1, 2}, path.getLinkIds());
+
+        GraphPath sameLink = graph.shortestPath(2, 0.1, 2, 0.6).get();
+        assertEquals(20, sameLink.getLength(), 1e-9);
+        assertArrayEquals(new long[] {2}, sameLink.getLinkIds());
+    }
+
+    @Test
+    public void matchesFloydWarshallOnRandomGraph() {
+        Random random = new Random(7);
+        int n = 40;
+        double[][] expected = new double[n][n];
+        for (double[] row : expected) Arrays.fill(row, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < n; i++) expected[i][i] = 0;
+
+        RoadNetGraph.Builder builder = RoadNetGraph.newBuilder();
+        for (int i = 0; i < 90; i++) {
+            int a = random.nextInt(n), b = random.nextInt(n);
+            double length = 1 + random.nextInt(100);
+            builder.add(link(i, 0, 1, "n" + a, "n" + b), length);
+            expected[a][b] = expected[b][a] = Math.min(expected[a][b], length);
+        }
+        for (int k = 0; k < n; k++)
+            for (int i = 0; i < n; i++)
+                for (int j = 0; j < n; j++)
+                    expected[i][j] = Math.min(expected[i][j], expected[i][k] + expected[k][j]);
+        RoadNetGraph graph = builder.build();
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (graph.getNode("n" + i) < 0 || graph.getNode("n" + j) < 0) continue;
+                double actual = graph.shortestPath("n" + i, "n" + j).map(GraphPath::getLength).orElse(Double.POSITIVE_INFINITY);
+                assertEquals(expected[i][j], actual, 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void heuristicSearchMatchesDijkstraOnGeometryGraph() {
+        Random random = new Random(11);
+        int n = 60;
+        double[] x = new double[n], y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = 250000 + random.nextDouble() * 1000;
+            y[i] = 7030000 + random.nextDouble() * 1000;
+        }
+
+        // Same links in both graphs, but only the first one knows where the nodes are
+        RoadNetGraph.Builder withGeometry = RoadNetGraph.newBuilder();
+        RoadNetGraph.Builder withLengths = RoadNetGraph.newBuilder();
+        int numLinks = 0;
+        while (numLinks < 150) {
+            int a = random.nextInt(n), b = random.nextInt(n);
+            if (a == b) continue;
+            String wkt = random.nextBoolean()
+                    ? "LINESTRING (" + x[a] + " " + y[a] + ", " + x[b] + " " + y[b] + ")"
+                    : "LINESTRING (" + x[a] + " " + y[a] + ", " + (x[a] + x[b]) / 2 + " " + (y[a] + random.nextDouble() * 300) + ", " + x[b] + " " + y[b] + ")";
+            Geometry geometry = new Geometry(wkt, Projection.UTM33, false, false);
+            withGeometry.add(new Link(numLinks, null, 0, 1, "n" + a, "n" + b, null, null, null, null, null, null, null, null, null,
+                                      geometry, null, false));
+            withLengths.add(link(numLinks, 0, 1, "n" + a, "n" + b), geometry.getCoordinates().getLength());
+            numLinks++;
+        }
+        RoadNetGraph astar = withGeometry.build();
+        RoadNetGraph dijkstra = withLengths.build();
+        assertTrue(astar.isEuclidean());
+        assertFalse(dijkstra.isEuclidean());
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (astar.getNode("n" + i) < 0 || astar.getNode("n" + j) < 0) continue;
+                assertSamePath(dijkstra.shortestPath("n" + i, "n" + j), astar.shortestPath("n" + i, "n" + j));
+            }
+        }
+        for (int i = 0; i < 500; i++) {
+            long fromLink = random.nextInt(numLinks), toLink = random.nextInt(numLinks);
+            double fromPosition = random.nextDouble(), toPosition = random.nextDouble();
+            assertSamePath(dijkstra.shortestPath(fromLink, fromPosition, toLink, toPosition),
+                           astar.shortestPath(fromLink, fromPosition, toLink, toPosition));
+        }
+    }
+
+    @Test
+    public void measuresLinksByGeometry() {
+        Link link = new Link(9, null, 0, 1, "A", "B", null, null, null, null, null, null, null, null, null,
+                             new Geometry("LINESTRING Z (0 0 10, 30 40 12)", Projection.UTM33, false, false), null, false);
+
+        RoadNetGraph graph = RoadNetGraph.newBuilder().add(link).build();
+
+        assertEquals(50, graph.getLinkLength(0), 0);
+    }
+
+    private static void assertSamePath(Optional<GraphPath> expected, Optional<GraphPath> actual) {
+        assertEquals(expected.isPresent(), actual.isPresent());
+        if (expected.isPresent()) {
+            assertEquals(expected.get().getLength(), actual.get().getLength(), 1e-6);
+            assertArrayEquals(expected.get().getLinkIds(), actual.get().getLinkIds());
+        }
+    }
+
+    private static Link link(long id, double start, double end, String from, String to) {
+        return new Link(id, null, start, end, from, to, null, null, null, null, null, null, null, null, null, null, null, false);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2015-2017, Statens vegvesen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.vegvesen.nvdbapi.client.spatial;
+
+import no.vegvesen.nvdbapi.client.model.Coordinates;
+import no.vegvesen.nvdbapi.client.model.Envelope;
+import no.vegvesen.nvdbapi.client.model.SpatialType;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class SpatialIndexTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void windowQueryMatchesBruteForce() {
+        Coordinates[] lines = randomLines(5000);
+        SpatialIndex index = build(lines);
+
+        for (int q = 0; q < 100; q++) {
+            double x = random.nextDouble() * 10_000, y = random.nextDouble() * 10_000;
+            Envelope window = new Envelope(x, y, x + 500, y + 300);
+
+            int[] expected = IntStream.range(0, lines.length)
+                    .filter(i -> lines[i].getEnvelope().intersects(window))
+                    .toArray();
+            int[] actual = index.search(window);
+            Arrays.sort(actual);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void nearestMatchesBruteForce() {
+        Coordinates[] lines = randomLines(5000);
+        SpatialIndex index = build(lines);
+
+        for (int q = 0; q < 100; q++) {
+            double x = random.nextDouble() * 10_000, y = random.nextDouble() * 10_000;
+
+            int[] expected = IntStream.range(0, lines.length).boxed()
+                    .sorted(Comparator.comparingDouble(i -> lines[i].distanceTo(x, y)))
+                    .limit(5)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            List<Neighbour> actual = index.nearest(x, y, 5);
+
+            assertEquals(5, actual.size());
+            for (int i = 0; i < 5; i++) {
+                assertEquals(lines[expected[i]].distanceTo(x, y), actual.get(i).getDistance(), 1e-9);
+            }
+            assertEquals(expected[0], actual.get(0).getEntry());
+        }
+    }
+
+    @Test
+    public void entriesWithoutGeometryKeepTheirNumber() {
+        SpatialIndex index = SpatialIndex.newBuilder()
+                .add(10, (Coordinates) null)
+                .add(11, Coordinates.fromWkt("POINT (5 5)"))
+                .build();
+
+        assertEquals(2, index.size());
+        assertArrayEquals(new int[] {1}, index.search(new Envelope(0, 0, 10, 10)));
+
+        Neighbour nearest = index.nearest(8, 9, 3).get(0);
+        assertEquals(11, nearest.getId());
+        assertEquals(5, nearest.getDistance(), 0);
+        assertTrue(index.nearest(8, 9, 3, 4.9).isEmpty());
+    }
+
+    private Coordinates[] randomLines(int count) {
+        Coordinates[] lines = new Coordinates[count];
+        for (int i = 0; i < count; i++) {
+            Coordinates.Builder b = Coordinates.newBuilder(SpatialType.LINE_STRING);
+            double x = random.nextDouble() * 10_000, y = random.nextDouble() * 10_000;
+            for (int p = 0; p < 1 + random.nextInt(5); p++) {
+                b.addPoint(x, y);
+                x += random.nextDouble() * 200 - 100;
+                y += random.nextDouble() * 200 - 100;
+            }
+            lines[i] = b.build();
+        }
+        return lines;
+    }
+
+    private static SpatialIndex build(Coordinates[] lines) {
+        SpatialIndex.Builder builder = SpatialIndex.newBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            builder.add(1000 + i, lines[i]);
+        }
+        return builder.build();
+    }
+}